@@ -0,0 +1,45 @@
+package bench;
+
+import org.apache.avro.generic.GenericData;
+import org.openjdk.jmh.annotations.*;
+import utils.AvroParser;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Avro decoding of every bundled schema, full and projected to {@code metadata.eventName}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeBenchmark {
+    @Param({"PORTFOLIO", "RATES_LIST", "SAVING_ORDER", "SURVEY_RESULT", "TRADE", "EXECUTION_REPORT",
+            "CORPORATE_ACTION_V3", "CORPORATE_ACTION_V4", "CAMPAIGN", "OTHER_TRANSACTION", "TASK", "CALL",
+            "OPPORTUNITY", "CAMPAIGN_MEMBER", "BASE_OFFER", "LEAD", "PERSON_AS_PARTY", "CUSTOMER"})
+    public String alias;
+
+    private SchemaState state;
+    private AvroParser.RecordDecoder full;
+    private AvroParser.RecordDecoder projected;
+
+    @Setup
+    public void setUp() {
+        state = new SchemaState(alias);
+        full = AvroParser.decoder(state.pojoSchema);
+        projected = AvroParser.decoder(state.pojoSchema, List.of("metadata.eventName"));
+    }
+
+    @Benchmark
+    public GenericData.Record decode() {
+        return full.decode(state.nextPayload());
+    }
+
+    @Benchmark
+    public GenericData.Record decodeProjected() {
+        return projected.decode(state.nextPayload());
+    }
+}
@@ -0,0 +1,99 @@
+package bench;
+
+import filter.FieldAccessor;
+import filter.FilterCompiler;
+import filter.PayloadPrefilter;
+import org.openjdk.jmh.annotations.*;
+import pulsar.MessageProcessor;
+import utils.AvroJsonSerializer;
+import utils.AvroParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * End-to-end {@link MessageProcessor} cost per payload for a selective query on {@code metadata.eventId}
+ * (a single record out of {@value SchemaState#RECORDS} matches), expressed as a regex and as a field filter,
+ * with and without the raw-byte prefilter and projection.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBenchmark {
+    @Param({"PORTFOLIO", "PERSON_AS_PARTY"})
+    public String alias;
+
+    private SchemaState state;
+    private MessageProcessor regex;
+    private MessageProcessor regexPrefiltered;
+    private MessageProcessor fieldFilter;
+    private MessageProcessor fieldFilterPrefiltered;
+    private MessageProcessor fieldFilterProjected;
+
+    @Setup
+    public void setUp() {
+        state = new SchemaState(alias);
+        // a long random id, so the regex literal is selective and usable by the prefilter
+        FieldAccessor eventIdField = FieldAccessor.compile("metadata.eventId", state.schema);
+        String eventId = "";
+        for (int i = 0; i < state.records.size() && eventId.length() < 12; i++) {
+            eventId = String.valueOf(eventIdField.first(state.records.get(i)));
+        }
+        AvroJsonSerializer serializer = new AvroJsonSerializer(false);
+        AvroParser.RecordDecoder full = AvroParser.decoder(state.pojoSchema);
+
+        // escaped per character: the literal analysis behind the prefilter does not look into \Q...\E
+        String quoted = eventId.replaceAll("[^A-Za-z0-9]", "\\\\$0");
+        regex = new MessageProcessor(Pattern.compile(quoted), full, null, List.of(), serializer);
+        regexPrefiltered = new MessageProcessor(Pattern.compile(quoted), full, null,
+                prefilters(PayloadPrefilter.forRegex(quoted, state.schema)), serializer);
+
+        String expression = "metadata.eventId == '" + eventId + "'";
+        FilterCompiler.CompiledFilter compiled = FilterCompiler.compile(expression, state.schema);
+        fieldFilter = new MessageProcessor(null, full, compiled.getExpression(), List.of(), serializer);
+        PayloadPrefilter literals = PayloadPrefilter.forLiterals(compiled.getRequiredLiterals());
+        fieldFilterPrefiltered = new MessageProcessor(null, full, compiled.getExpression(), prefilters(literals), serializer);
+
+        AvroParser.RecordDecoder projected = AvroParser.decoder(state.pojoSchema, compiled.getFieldPaths());
+        fieldFilterProjected = new MessageProcessor(null, projected,
+                FilterCompiler.compile(expression, projected.getReaderSchema()).getExpression(), List.of(), serializer);
+    }
+
+    private static List<PayloadPrefilter> prefilters(PayloadPrefilter prefilter) {
+        List<PayloadPrefilter> prefilters = new ArrayList<>();
+        if (prefilter != null) {
+            prefilters.add(prefilter);
+        }
+        return prefilters;
+    }
+
+    @Benchmark
+    public String regex() throws Exception {
+        return regex.process(state.nextPayload());
+    }
+
+    @Benchmark
+    public String regexPrefiltered() throws Exception {
+        return regexPrefiltered.process(state.nextPayload());
+    }
+
+    @Benchmark
+    public String fieldFilter() throws Exception {
+        return fieldFilter.process(state.nextPayload());
+    }
+
+    @Benchmark
+    public String fieldFilterPrefiltered() throws Exception {
+        return fieldFilterPrefiltered.process(state.nextPayload());
+    }
+
+    @Benchmark
+    public String fieldFilterProjected() throws Exception {
+        return fieldFilterProjected.process(state.nextPayload());
+    }
+}
@@ -0,0 +1,59 @@
+package bench;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.avro.generic.GenericRecord;
+import org.openjdk.jmh.annotations.*;
+import utils.AvroJsonSerializer;
+import utils.TextBuffer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering a decoded record: {@code GenericData.toString()} against streaming through {@link AvroJsonSerializer},
+ * into a reused text buffer (regex path) and into a byte stream (output path).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+    @Param({"PORTFOLIO", "CALL", "PERSON_AS_PARTY"})
+    public String alias;
+
+    private SchemaState state;
+    private final AvroJsonSerializer serializer = new AvroJsonSerializer(false);
+    private TextBuffer text;
+    private JsonGenerator textGenerator;
+    private JsonGenerator streamGenerator;
+
+    @Setup
+    public void setUp() throws IOException {
+        state = new SchemaState(alias);
+        text = new TextBuffer();
+        textGenerator = AvroJsonSerializer.createGenerator(text);
+        streamGenerator = AvroJsonSerializer.createGenerator(OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public String toStringRendering() {
+        return state.nextRecord().toString();
+    }
+
+    @Benchmark
+    public int streamingToText() throws IOException {
+        GenericRecord record = state.nextRecord();
+        text.reset();
+        serializer.write(record, textGenerator);
+        textGenerator.flush();
+        return text.length();
+    }
+
+    @Benchmark
+    public void streamingToStream() throws IOException {
+        serializer.write(state.nextRecord(), streamGenerator);
+    }
+}
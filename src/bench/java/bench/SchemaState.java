@@ -0,0 +1,45 @@
+package bench;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import utils.AvroParser;
+import utils.SchemaLoader;
+import utils.SyntheticData;
+
+import java.util.List;
+
+/**
+ * Deterministic payloads of one bundled schema, shared by the benchmarks of a fork.
+ */
+final class SchemaState {
+    static final int RECORDS = 1024;
+    static final long SEED = 42L;
+
+    final String pojoSchema;
+    final Schema schema;
+    final List<GenericRecord> records;
+    final byte[][] payloads;
+    private int next;
+
+    SchemaState(String alias) {
+        pojoSchema = SchemaLoader.loadSchema(alias);
+        schema = AvroParser.schema(pojoSchema);
+        records = SyntheticData.records(schema, RECORDS, SEED);
+        payloads = SyntheticData.payloads(schema, RECORDS, SEED).toArray(new byte[0][]);
+    }
+
+    /**
+     * Cycles through the payloads so a benchmark does not measure one cached record.
+     */
+    byte[] nextPayload() {
+        byte[] payload = payloads[next];
+        next = (next + 1) & (RECORDS - 1);
+        return payload;
+    }
+
+    GenericRecord nextRecord() {
+        GenericRecord record = records.get(next);
+        next = (next + 1) & (RECORDS - 1);
+        return record;
+    }
+}
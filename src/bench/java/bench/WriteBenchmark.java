@@ -0,0 +1,67 @@
+package bench;
+
+import org.apache.avro.generic.GenericRecord;
+import org.openjdk.jmh.annotations.*;
+import utils.MessageWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Output writing through {@link MessageWriter}: pre-rendered strings (pipeline path) against records streamed
+ * straight into the file (sequential path), for both output formats.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteBenchmark {
+    @Param({"CALL"})
+    public String alias;
+
+    @Param({"JSON", "NDJSON"})
+    public MessageWriter.Format format;
+
+    private SchemaState state;
+    private String[] rendered;
+    private File file;
+    private MessageWriter writer;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        state = new SchemaState(alias);
+        rendered = new String[SchemaState.RECORDS];
+        for (int i = 0; i < rendered.length; i++) {
+            rendered[i] = state.records.get(i).toString();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void openWriter() throws IOException {
+        file = File.createTempFile("bench-", format.getFileSuffix());
+        writer = new MessageWriter(file.getPath(), format, 100, false);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeWriter() throws IOException {
+        writer.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public boolean writeRendered() throws IOException {
+        String message = rendered[next];
+        next = (next + 1) & (SchemaState.RECORDS - 1);
+        return writer.write(message);
+    }
+
+    @Benchmark
+    public boolean writeRecord() throws IOException {
+        GenericRecord record = state.nextRecord();
+        return writer.write(record);
+    }
+}
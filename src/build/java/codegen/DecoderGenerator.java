@@ -0,0 +1,326 @@
+package codegen;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Generates a {@code utils.GeneratedDecoder} for every schema of {@code schema-aliases.properties} (including
+ * the {@code .versions} lists), plus {@code decoders.GeneratedDecoders} which picks one by parsing fingerprint.
+ * Run by the build at {@code generate-sources} as a single-file program:
+ * <pre>
+ * java -cp &lt;avro&gt; DecoderGenerator.java src/main/resources target/generated-sources/decoders
+ * </pre>
+ * Each decoder is straight-line code per field with the schema walk done here, once: a method per record,
+ * enum and fixed type, array, map and union, reading the values the way {@code GenericDatumReader} does
+ * without schema resolution.
+ */
+public final class DecoderGenerator {
+    private static final String PACKAGE = "decoders";
+
+    public static void main(String[] args) throws IOException {
+        Path resources = Path.of(args[0]);
+        Path output = Path.of(args[1]).resolve(PACKAGE);
+        Files.createDirectories(output);
+
+        Properties aliases = new Properties();
+        try (Reader reader = Files.newBufferedReader(resources.resolve("schema-aliases.properties"), StandardCharsets.UTF_8)) {
+            aliases.load(reader);
+        }
+        TreeSet<String> files = new TreeSet<>();
+        for (String key : aliases.stringPropertyNames()) {
+            for (String file : aliases.getProperty(key).split(",")) {
+                if (!file.isBlank()) {
+                    files.add(file.trim());
+                }
+            }
+        }
+
+        Map<Long, String> decoders = new TreeMap<>();
+        for (String file : files) {
+            Schema schema = new Schema.Parser().parse(resources.resolve("avro").resolve(file).toFile());
+            if (schema.getType() != Schema.Type.RECORD) {
+                continue;
+            }
+            long fingerprint = SchemaNormalization.parsingFingerprint64(schema);
+            if (decoders.containsKey(fingerprint)) {
+                continue;
+            }
+            String className = file.replaceAll("\\.avsc$", "").replaceAll("[^A-Za-z0-9]", "_") + "Decoder";
+            Files.writeString(output.resolve(className + ".java"),
+                    new DecoderWriter(className, file, schema).write(), StandardCharsets.UTF_8);
+            decoders.put(fingerprint, className);
+        }
+        Files.writeString(output.resolve("GeneratedDecoders.java"), registry(decoders), StandardCharsets.UTF_8);
+        System.out.println("Vygenerovaných " + decoders.size() + " dekóderov do " + output);
+    }
+
+    private static String registry(Map<Long, String> decoders) {
+        StringBuilder source = new StringBuilder();
+        source.append("package ").append(PACKAGE).append(";\n\n")
+                .append("import org.apache.avro.Schema;\n")
+                .append("import utils.GeneratedDecoder;\n\n")
+                .append("/**\n * Generated by DecoderGenerator from schema-aliases.properties, do not edit.\n */\n")
+                .append("public final class GeneratedDecoders {\n")
+                .append("    private GeneratedDecoders() {\n    }\n\n")
+                .append("    /**\n     * Decoder generated for the schema with this parsing fingerprint, or {@code null}.\n     */\n")
+                .append("    public static GeneratedDecoder forSchema(long fingerprint, Schema schema) {\n");
+        for (Map.Entry<Long, String> decoder : decoders.entrySet()) {
+            source.append("        if (fingerprint == ").append(decoder.getKey()).append("L) {\n")
+                    .append("            return new ").append(decoder.getValue()).append("(schema);\n")
+                    .append("        }\n");
+        }
+        source.append("        return null;\n    }\n}\n");
+        return source.toString();
+    }
+
+    /**
+     * Source of the decoder of one schema. Schemas the generated code needs at run time (to create records,
+     * arrays, fixed values and enum symbols) are fields navigated from the root schema in the constructor, so
+     * the records carry the very schema instances the rest of the application compiled its accessors against.
+     */
+    private static final class DecoderWriter {
+        private final String className;
+        private final String file;
+        private final Schema schema;
+        private final StringBuilder fields = new StringBuilder();
+        private final StringBuilder constructor = new StringBuilder();
+        private final List<String> methods = new ArrayList<>();
+        private final Map<String, String> namedSchemas = new HashMap<>();
+        private final Map<String, String> namedMethods = new HashMap<>();
+        private final Map<Schema, String> anonymousMethods = new IdentityHashMap<>();
+        private int next;
+
+        private DecoderWriter(String className, String file, Schema schema) {
+            this.className = className;
+            this.file = file;
+            this.schema = schema;
+        }
+
+        private String write() {
+            String root = value(schema, "schema", "reuse");
+            StringBuilder source = new StringBuilder();
+            source.append("package ").append(PACKAGE).append(";\n\n")
+                    .append("import org.apache.avro.Schema;\n")
+                    .append("import org.apache.avro.generic.GenericData;\n")
+                    .append("import org.apache.avro.generic.GenericFixed;\n")
+                    .append("import org.apache.avro.io.BinaryDecoder;\n")
+                    .append("import utils.GeneratedDecoder;\n\n")
+                    .append("import java.io.IOException;\n")
+                    .append("import java.util.Collection;\n")
+                    .append("import java.util.Map;\n\n")
+                    .append("/**\n * Generated by DecoderGenerator from ").append(file).append(", do not edit.\n */\n")
+                    .append("@SuppressWarnings(\"unused\")\n")
+                    .append("final class ").append(className).append(" extends GeneratedDecoder {\n")
+                    .append(fields).append('\n')
+                    .append("    ").append(className).append("(Schema schema) {\n")
+                    .append(constructor)
+                    .append("    }\n\n")
+                    .append("    @Override\n")
+                    .append("    public GenericData.Record read(GenericData.Record reuse, BinaryDecoder in) throws IOException {\n")
+                    .append("        return ").append(root).append(";\n")
+                    .append("    }\n");
+            for (String method : methods) {
+                source.append('\n').append(method);
+            }
+            return source.append("}\n").toString();
+        }
+
+        /**
+         * Expression reading a value of {@code type}, whose schema is {@code schemaExpression} at run time,
+         * reusing {@code old} where the generic reader would.
+         */
+        private String value(Schema type, String schemaExpression, String old) {
+            switch (type.getType()) {
+                case NULL:
+                    return "readNull(in)";
+                case BOOLEAN:
+                    return "in.readBoolean()";
+                case INT:
+                    return "in.readInt()";
+                case LONG:
+                    return "in.readLong()";
+                case FLOAT:
+                    return "in.readFloat()";
+                case DOUBLE:
+                    return "in.readDouble()";
+                case STRING:
+                    return isJavaString(type) ? "in.readString()" : "readString(" + old + ", in)";
+                case BYTES:
+                    return "readBytes(" + old + ", in)";
+                case ENUM:
+                    return enumSymbols(type, schemaExpression) + "[in.readEnum()]";
+                case FIXED:
+                    return fixed(type, schemaExpression) + "(" + old + ", in)";
+                case RECORD:
+                    return record(type, schemaExpression) + "(" + old + ", in)";
+                case ARRAY:
+                    return array(type, schemaExpression) + "(" + old + ", in)";
+                case MAP:
+                    return map(type, schemaExpression) + "(" + old + ", in)";
+                case UNION:
+                    return union(type, schemaExpression) + "(" + old + ", in)";
+                default:
+                    throw new IllegalArgumentException("Nepodporovaný typ " + type.getType() + " v " + file);
+            }
+        }
+
+        private String record(Schema type, String schemaExpression) {
+            String method = namedMethods.get(type.getFullName());
+            if (method != null) {
+                return method;
+            }
+            String schemaField = schemaField(type, schemaExpression);
+            method = "record" + next++;
+            // registered before the fields are generated, so a recursive record calls itself
+            namedMethods.put(type.getFullName(), method);
+            StringBuilder body = new StringBuilder();
+            body.append("    // ").append(type.getFullName()).append('\n')
+                    .append("    private GenericData.Record ").append(method).append("(Object old, BinaryDecoder in) throws IOException {\n")
+                    .append("        GenericData.Record record = newRecord(old, ").append(schemaField).append(");\n");
+            for (Schema.Field field : type.getFields()) {
+                int pos = field.pos();
+                body.append("        record.put(").append(pos).append(", ")
+                        .append(value(field.schema(), schemaField + ".getFields().get(" + pos + ").schema()", "record.get(" + pos + ")"))
+                        .append(");\n");
+            }
+            body.append("        return record;\n    }\n");
+            methods.add(body.toString());
+            return method;
+        }
+
+        private String enumSymbols(Schema type, String schemaExpression) {
+            String key = "enum:" + type.getFullName();
+            String symbols = namedMethods.get(key);
+            if (symbols == null) {
+                String schemaField = schemaField(type, schemaExpression);
+                symbols = "symbols" + next++;
+                namedMethods.put(key, symbols);
+                fields.append("    private final GenericData.EnumSymbol[] ").append(symbols).append(";\n");
+                constructor.append("        ").append(symbols).append(" = symbols(").append(schemaField).append(");\n");
+            }
+            return symbols;
+        }
+
+        private String fixed(Schema type, String schemaExpression) {
+            String method = namedMethods.get(type.getFullName());
+            if (method != null) {
+                return method;
+            }
+            String schemaField = schemaField(type, schemaExpression);
+            method = "fixed" + next++;
+            namedMethods.put(type.getFullName(), method);
+            methods.add("    private GenericFixed " + method + "(Object old, BinaryDecoder in) throws IOException {\n"
+                    + "        GenericFixed fixed = createFixed(old, " + schemaField + ");\n"
+                    + "        in.readFixed(fixed.bytes(), 0, " + type.getFixedSize() + ");\n"
+                    + "        return fixed;\n    }\n");
+            return method;
+        }
+
+        private String array(Schema type, String schemaExpression) {
+            String method = anonymousMethods.get(type);
+            if (method != null) {
+                return method;
+            }
+            String schemaField = schemaField(type, schemaExpression);
+            method = "array" + next++;
+            anonymousMethods.put(type, method);
+            String element = value(type.getElementType(), schemaField + ".getElementType()", "peek(array)");
+            methods.add("    private Collection<Object> " + method + "(Object old, BinaryDecoder in) throws IOException {\n"
+                    + "        long length = in.readArrayStart();\n"
+                    + "        Collection<Object> array = newArray(old, (int) length, " + schemaField + ");\n"
+                    + "        if (length > 0) {\n"
+                    + "            do {\n"
+                    + "                for (long i = 0; i < length; i++) {\n"
+                    + "                    array.add(" + element + ");\n"
+                    + "                }\n"
+                    + "            } while ((length = in.arrayNext()) > 0);\n"
+                    + "        }\n"
+                    + "        return prune(array);\n    }\n");
+            return method;
+        }
+
+        private String map(Schema type, String schemaExpression) {
+            String method = anonymousMethods.get(type);
+            if (method != null) {
+                return method;
+            }
+            method = "map" + next++;
+            anonymousMethods.put(type, method);
+            String key = isJavaString(type) ? "in.readString()" : "in.readString(null)";
+            String value = value(type.getValueType(), schemaExpression + ".getValueType()", "null");
+            methods.add("    private Map<Object, Object> " + method + "(Object old, BinaryDecoder in) throws IOException {\n"
+                    + "        long length = in.readMapStart();\n"
+                    + "        Map<Object, Object> map = newMap(old, (int) length);\n"
+                    + "        if (length > 0) {\n"
+                    + "            do {\n"
+                    + "                for (long i = 0; i < length; i++) {\n"
+                    + "                    map.put(" + key + ", " + value + ");\n"
+                    + "                }\n"
+                    + "            } while ((length = in.mapNext()) > 0);\n"
+                    + "        }\n"
+                    + "        return map;\n    }\n");
+            return method;
+        }
+
+        private String union(Schema type, String schemaExpression) {
+            String method = anonymousMethods.get(type);
+            if (method != null) {
+                return method;
+            }
+            method = "union" + next++;
+            anonymousMethods.put(type, method);
+            StringBuilder body = new StringBuilder();
+            body.append("    private Object ").append(method).append("(Object old, BinaryDecoder in) throws IOException {\n")
+                    .append("        int index = in.readIndex();\n")
+                    .append("        switch (index) {\n");
+            List<Schema> branches = type.getTypes();
+            for (int i = 0; i < branches.size(); i++) {
+                body.append("            case ").append(i).append(":\n")
+                        .append("                return ")
+                        .append(value(branches.get(i), schemaExpression + ".getTypes().get(" + i + ")", "old"))
+                        .append(";\n");
+            }
+            body.append("            default:\n")
+                    .append("                throw invalidUnionIndex(index);\n")
+                    .append("        }\n    }\n");
+            methods.add(body.toString());
+            return method;
+        }
+
+        /**
+         * Field holding the schema at run time; named types get one field however often they are referenced.
+         */
+        private String schemaField(Schema type, String schemaExpression) {
+            boolean named = type.getType() == Schema.Type.RECORD || type.getType() == Schema.Type.ENUM
+                    || type.getType() == Schema.Type.FIXED;
+            String field = named ? namedSchemas.get(type.getFullName()) : null;
+            if (field == null) {
+                field = "schema" + next++;
+                if (named) {
+                    namedSchemas.put(type.getFullName(), field);
+                }
+                fields.append("    private final Schema ").append(field).append(";\n");
+                constructor.append("        ").append(field).append(" = ").append(schemaExpression).append(";\n");
+            }
+            return field;
+        }
+
+        private static boolean isJavaString(Schema type) {
+            return "String".equals(type.getProp("avro.java.string"));
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package aggregate;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import filter.FieldAccessor;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.util.Utf8;
+import utils.MurmurHash3;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streaming aggregation of the matching records instead of exporting them: a count per group of
+ * {@code aggregateGroupBy} values and time bucket, with optional min/max, distinct count (HyperLogLog) and
+ * top-K (space-saving) of further fields.
+ * <p>
+ * Each group keeps a fixed amount of state however many records it counts, and the number of groups is capped
+ * by {@code aggregateMaxGroups}; records of groups beyond the cap are counted in one overflow group. Multi-valued
+ * paths (arrays) use their first value. Safe to call from several worker threads; each group has its own lock.
+ */
+public final class Aggregator {
+    public static final List<String> BUCKETS = List.of("none", "minute", "hour", "day");
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int TOP_K_COUNTERS_PER_ITEM = 10;
+
+    private final List<FieldAccessor> groupBy;
+    private final String bucketName;
+    private final long bucketMillis;
+    private final FieldAccessor timeField;
+    private final boolean timeMicros;
+    private final List<FieldAccessor> min;
+    private final List<FieldAccessor> max;
+    private final List<FieldAccessor> distinct;
+    private final FieldAccessor topK;
+    private final int topKSize;
+    private final int maxGroups;
+    private final Map<List<Object>, Group> groups = new ConcurrentHashMap<>();
+    private final Group overflow;
+    private final AtomicBoolean overflowing = new AtomicBoolean();
+    private final Path file;
+
+    private Aggregator(Properties props, Schema schema, Path file) {
+        this.file = file;
+        groupBy = compile(paths(props, "aggregateGroupBy"), schema);
+        bucketName = props.getProperty("aggregateBucket", "none").trim().toLowerCase();
+        bucketMillis = bucketMillis(bucketName);
+        String time = props.getProperty("aggregateTime", "publishTime").trim();
+        timeField = "publishTime".equals(time) ? null : FieldAccessor.compile(time, schema);
+        timeMicros = timeField != null && timeField.getLeafSchemas().stream()
+                .anyMatch(leaf -> leaf.getLogicalType() instanceof LogicalTypes.TimestampMicros);
+        min = compile(paths(props, "aggregateMin"), schema);
+        max = compile(paths(props, "aggregateMax"), schema);
+        distinct = compile(paths(props, "aggregateDistinct"), schema);
+        String topKPath = props.getProperty("aggregateTopK", "").trim();
+        topK = topKPath.isEmpty() ? null : FieldAccessor.compile(topKPath, schema);
+        topKSize = Integer.parseInt(props.getProperty("aggregateTopKSize", "10").trim());
+        maxGroups = Integer.parseInt(props.getProperty("aggregateMaxGroups", "10000").trim());
+        overflow = new Group(null, null);
+    }
+
+    /**
+     * Aggregator configured by the {@code aggregate*} properties and writing its summary to {@code file}, or
+     * {@code null} unless {@code aggregate=true}.
+     */
+    public static Aggregator fromConfig(Properties props, Schema schema, Path file) {
+        if (!Boolean.parseBoolean(props.getProperty("aggregate", "false").trim())) {
+            return null;
+        }
+        return new Aggregator(props, schema, file);
+    }
+
+    /**
+     * Every field path the aggregation reads, so a projection can keep just these.
+     */
+    public static Set<String> fieldPaths(Properties props) {
+        Set<String> paths = new LinkedHashSet<>();
+        for (String key : List.of("aggregateGroupBy", "aggregateMin", "aggregateMax", "aggregateDistinct", "aggregateTopK")) {
+            paths.addAll(paths(props, key));
+        }
+        String time = props.getProperty("aggregateTime", "publishTime").trim();
+        if (!"publishTime".equals(time)) {
+            paths.add(time);
+        }
+        return paths;
+    }
+
+    public void add(IndexedRecord record, long publishTime) {
+        long time = bucketMillis == 0 ? Long.MIN_VALUE
+                : timeField == null ? publishTime : millis(timeField.first(record));
+        Long bucket = time == Long.MIN_VALUE ? null : Math.floorDiv(time, bucketMillis) * bucketMillis;
+        List<Object> key = new ArrayList<>(groupBy.size() + 1);
+        key.add(bucket);
+        for (FieldAccessor field : groupBy) {
+            Object value = field.first(record);
+            key.add(value == null ? null : value.toString());
+        }
+        Group group = groups.get(key);
+        if (group == null) {
+            if (groups.size() >= maxGroups) {
+                overflowing.set(true);
+                group = overflow;
+            } else {
+                group = groups.computeIfAbsent(key, k -> new Group(bucket, k.subList(1, k.size())));
+            }
+        }
+        group.add(record);
+    }
+
+    public int getGroupCount() {
+        return groups.size();
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Writes the summary to the file given at creation.
+     */
+    public void write() throws IOException {
+        write(Files.newOutputStream(file));
+    }
+
+    /**
+     * Writes the summary as one JSON document, groups ordered by time bucket and then by count, and closes
+     * the stream.
+     */
+    public void write(OutputStream out) throws IOException {
+        List<Group> sorted = new ArrayList<>(groups.values());
+        sorted.sort(Comparator.comparing((Group group) -> group.bucket, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(group -> -group.count));
+        try (out;
+             JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8).useDefaultPrettyPrinter()) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("groupBy");
+            for (FieldAccessor field : groupBy) {
+                generator.writeString(field.getPath());
+            }
+            generator.writeEndArray();
+            generator.writeStringField("bucket", bucketName);
+            generator.writeStringField("time", timeField == null ? "publishTime" : timeField.getPath());
+            long total = overflow.count;
+            for (Group group : sorted) {
+                total += group.count;
+            }
+            generator.writeNumberField("count", total);
+            generator.writeArrayFieldStart("groups");
+            for (Group group : sorted) {
+                group.write(generator);
+            }
+            if (overflowing.get()) {
+                overflow.write(generator);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+    }
+
+    private static List<String> paths(Properties props, String key) {
+        List<String> paths = new ArrayList<>();
+        for (String path : props.getProperty(key, "").split(",")) {
+            if (!path.isBlank()) {
+                paths.add(path.trim());
+            }
+        }
+        return paths;
+    }
+
+    private static List<FieldAccessor> compile(List<String> paths, Schema schema) {
+        List<FieldAccessor> fields = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            fields.add(FieldAccessor.compile(path, schema));
+        }
+        return fields;
+    }
+
+    private static long bucketMillis(String bucket) {
+        switch (bucket) {
+            case "none":
+                return 0;
+            case "minute":
+                return 60_000L;
+            case "hour":
+                return 3_600_000L;
+            case "day":
+                return 86_400_000L;
+            default:
+                throw new IllegalArgumentException("Neplatná hodnota aggregateBucket: " + bucket + " (" + BUCKETS + ")");
+        }
+    }
+
+    /**
+     * Epoch millis of a timestamp field, or {@link Long#MIN_VALUE} when it is missing or unreadable.
+     */
+    private long millis(Object value) {
+        if (value instanceof Number) {
+            long number = ((Number) value).longValue();
+            return timeMicros ? Math.floorDiv(number, 1000L) : number;
+        }
+        if (value instanceof CharSequence) {
+            try {
+                return Instant.parse(value.toString()).toEpochMilli();
+            } catch (DateTimeParseException e) {
+                return Long.MIN_VALUE;
+            }
+        }
+        return Long.MIN_VALUE;
+    }
+
+    /**
+     * Value kept between records: strings are copied, as decoded records and their {@link Utf8}s are reused.
+     */
+    private static Object retained(Object value) {
+        if (value == null || value instanceof Number || value instanceof Boolean) {
+            return value;
+        }
+        return value.toString();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number) {
+            if ((a instanceof Long || a instanceof Integer) && (b instanceof Long || b instanceof Integer)) {
+                return Long.compare(((Number) a).longValue(), ((Number) b).longValue());
+            }
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+        if (a.getClass() == b.getClass() && a instanceof Comparable) {
+            return ((Comparable) a).compareTo(b);
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    private static long hash(Object value) {
+        if (value instanceof Utf8) {
+            Utf8 utf8 = (Utf8) value;
+            return MurmurHash3.hash64(utf8.getBytes(), utf8.getByteLength());
+        }
+        byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+        return MurmurHash3.hash64(bytes, bytes.length);
+    }
+
+    private static void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof Long || value instanceof Integer) {
+            generator.writeNumber(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            generator.writeNumber(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else {
+            generator.writeString(value.toString());
+        }
+    }
+
+    private final class Group {
+        private final Long bucket;
+        private final List<Object> key;
+        private final Object[] minValues = new Object[min.size()];
+        private final Object[] maxValues = new Object[max.size()];
+        private final HyperLogLog[] distinctValues = new HyperLogLog[distinct.size()];
+        private final SpaceSaving topValues = topK == null ? null : new SpaceSaving(topKSize * TOP_K_COUNTERS_PER_ITEM);
+        private long count;
+
+        private Group(Long bucket, List<Object> key) {
+            this.bucket = bucket;
+            this.key = key;
+            for (int i = 0; i < distinctValues.length; i++) {
+                distinctValues[i] = new HyperLogLog();
+            }
+        }
+
+        private synchronized void add(IndexedRecord record) {
+            count++;
+            for (int i = 0; i < minValues.length; i++) {
+                Object value = min.get(i).first(record);
+                if (value != null && (minValues[i] == null || compare(value, minValues[i]) < 0)) {
+                    minValues[i] = retained(value);
+                }
+            }
+            for (int i = 0; i < maxValues.length; i++) {
+                Object value = max.get(i).first(record);
+                if (value != null && (maxValues[i] == null || compare(value, maxValues[i]) > 0)) {
+                    maxValues[i] = retained(value);
+                }
+            }
+            for (int i = 0; i < distinctValues.length; i++) {
+                Object value = distinct.get(i).first(record);
+                if (value != null) {
+                    distinctValues[i].add(hash(value));
+                }
+            }
+            if (topValues != null) {
+                Object value = topK.first(record);
+                if (value != null) {
+                    topValues.add(value.toString());
+                }
+            }
+        }
+
+        private synchronized void write(JsonGenerator generator) throws IOException {
+            generator.writeStartObject();
+            if (key == null) {
+                generator.writeBooleanField("overflow", true);
+            } else {
+                if (bucketMillis > 0) {
+                    generator.writeFieldName("bucket");
+                    writeValue(generator, bucket == null ? null : Instant.ofEpochMilli(bucket).toString());
+                }
+                generator.writeObjectFieldStart("key");
+                for (int i = 0; i < groupBy.size(); i++) {
+                    generator.writeFieldName(groupBy.get(i).getPath());
+                    writeValue(generator, key.get(i));
+                }
+                generator.writeEndObject();
+            }
+            generator.writeNumberField("count", count);
+            writeValues(generator, "min", min, minValues);
+            writeValues(generator, "max", max, maxValues);
+            if (distinctValues.length > 0) {
+                generator.writeObjectFieldStart("distinct");
+                for (int i = 0; i < distinctValues.length; i++) {
+                    generator.writeNumberField(distinct.get(i).getPath(), distinctValues[i].estimate());
+                }
+                generator.writeEndObject();
+            }
+            if (topValues != null) {
+                generator.writeObjectFieldStart("topK");
+                generator.writeArrayFieldStart(topK.getPath());
+                for (SpaceSaving.Counter counter : topValues.top(topKSize)) {
+                    generator.writeStartObject();
+                    generator.writeStringField("value", counter.value);
+                    generator.writeNumberField("count", counter.count);
+                    generator.writeNumberField("error", counter.error);
+                    generator.writeEndObject();
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+        }
+
+        private void writeValues(JsonGenerator generator, String name, List<FieldAccessor> fields, Object[] values) throws IOException {
+            if (values.length == 0) {
+                return;
+            }
+            generator.writeObjectFieldStart(name);
+            for (int i = 0; i < values.length; i++) {
+                generator.writeFieldName(fields.get(i).getPath());
+                writeValue(generator, values[i]);
+            }
+            generator.writeEndObject();
+        }
+    }
+}
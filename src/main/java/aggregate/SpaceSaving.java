@@ -0,0 +1,63 @@
+package aggregate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Top-K by the space-saving algorithm (Metwally et al.): a fixed number of counters, where a value without a
+ * counter takes over the smallest one and inherits its count as the error bound. Any value occurring more
+ * than {@code total / capacity} times is guaranteed to be tracked. Not thread-safe; {@link Aggregator}
+ * updates a group under its lock.
+ */
+final class SpaceSaving {
+    private final int capacity;
+    private final Map<String, Counter> counters;
+
+    SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    void add(String value) {
+        Counter counter = counters.get(value);
+        if (counter != null) {
+            counter.count++;
+            return;
+        }
+        if (counters.size() < capacity) {
+            counters.put(value, new Counter(value, 1, 0));
+            return;
+        }
+        Counter smallest = null;
+        for (Counter candidate : counters.values()) {
+            if (smallest == null || candidate.count < smallest.count) {
+                smallest = candidate;
+            }
+        }
+        counters.remove(smallest.value);
+        counters.put(value, new Counter(value, smallest.count + 1, smallest.count));
+    }
+
+    /**
+     * The {@code k} largest counters, by count descending.
+     */
+    List<Counter> top(int k) {
+        List<Counter> top = new ArrayList<>(counters.values());
+        top.sort((a, b) -> Long.compare(b.count, a.count));
+        return top.subList(0, Math.min(k, top.size()));
+    }
+
+    static final class Counter {
+        final String value;
+        long count;
+        final long error;
+
+        private Counter(String value, long count, long error) {
+            this.value = value;
+            this.count = count;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package cache;
+
+import org.apache.pulsar.client.api.Message;
+import source.RawMessage;
+
+import java.util.Map;
+
+/**
+ * Raw message as stored in the segment cache: the payload and the metadata needed to replay it.
+ */
+public final class CachedMessage implements RawMessage {
+    private final long publishTime;
+    private final long eventTime;
+    private final byte[] messageId;
+    private final String key;
+    private final Map<String, String> properties;
+    private final byte[] payload;
+
+    public CachedMessage(long publishTime, long eventTime, byte[] messageId, String key, Map<String, String> properties,
+                         byte[] payload) {
+        this.publishTime = publishTime;
+        this.eventTime = eventTime;
+        this.messageId = messageId;
+        this.key = key;
+        this.properties = properties;
+        this.payload = payload;
+    }
+
+    public static CachedMessage of(Message<byte[]> message) {
+        return new CachedMessage(message.getPublishTime(), message.getEventTime(), message.getMessageId().toByteArray(),
+                message.hasKey() ? message.getKey() : null, message.getProperties(), message.getData());
+    }
+
+    @Override
+    public long getPublishTime() {
+        return publishTime;
+    }
+
+    @Override
+    public long getEventTime() {
+        return eventTime;
+    }
+
+    @Override
+    public byte[] getMessageId() {
+        return messageId;
+    }
+
+    @Override
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    @Override
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    @Override
+    public String toString() {
+        return "CachedMessage{publishTime=" + publishTime + ", payload=" + payload.length + " B}";
+    }
+}
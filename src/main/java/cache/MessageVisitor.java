@@ -0,0 +1,12 @@
+package cache;
+
+/**
+ * Receives cached messages during a replay.
+ */
+@FunctionalInterface
+public interface MessageVisitor {
+    /**
+     * Returns {@code false} to stop the replay.
+     */
+    boolean visit(CachedMessage message) throws Exception;
+}
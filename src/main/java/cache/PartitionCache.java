@@ -0,0 +1,239 @@
+package cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Cached messages of one partition, kept as a contiguous run in message id order.
+ * <p>
+ * The index records {@code coveredFrom}: every message of the partition published at or after it, up to
+ * {@code lastMessageId}, is in the segments. A scan starting at or after {@code coveredFrom} can therefore be
+ * served from disk and continue on the broker right after {@code lastMessageId}. The index is rewritten
+ * atomically on {@link #commit()}; segment bytes beyond the committed length are dropped on the next append.
+ * Not safe for concurrent use; each partition is scanned by a single thread.
+ */
+public final class PartitionCache {
+    private static final Logger log = LoggerFactory.getLogger(PartitionCache.class);
+    private static final String INDEX_FILE = "index.properties";
+
+    private final Path directory;
+    private final long segmentMaxBytes;
+    private final List<Segment> segments = new ArrayList<>();
+    private Long coveredFrom;
+    private byte[] lastMessageId;
+    private long lastPublishTime = Long.MIN_VALUE;
+    private int nextSegment;
+
+    private PartitionCache(Path directory, long segmentMaxBytes) {
+        this.directory = directory;
+        this.segmentMaxBytes = segmentMaxBytes;
+    }
+
+    static PartitionCache open(Path directory, long segmentMaxBytes) throws IOException {
+        PartitionCache cache = new PartitionCache(directory, segmentMaxBytes);
+        Path index = directory.resolve(INDEX_FILE);
+        if (Files.isRegularFile(index)) {
+            cache.load(index);
+        }
+        return cache;
+    }
+
+    /**
+     * Whether every message published at or after {@code fromMillis} ({@code null} = earliest) is cached
+     * up to {@link #getLastMessageId()}.
+     */
+    public boolean covers(Long fromMillis) {
+        if (coveredFrom == null || segments.isEmpty()) {
+            return false;
+        }
+        return fromMillis == null ? coveredFrom == Long.MIN_VALUE : coveredFrom <= fromMillis;
+    }
+
+    public byte[] getLastMessageId() {
+        return lastMessageId;
+    }
+
+    public long getLastPublishTime() {
+        return lastPublishTime;
+    }
+
+    /**
+     * Replays cached messages published within {@code [fromMillis, toMillis]} (either bound may be {@code null})
+     * in message id order. Returns {@code false} when the visitor stopped early.
+     */
+    public boolean replay(Long fromMillis, Long toMillis, MessageVisitor visitor) throws Exception {
+        long from = fromMillis == null ? Long.MIN_VALUE : fromMillis;
+        long to = toMillis == null ? Long.MAX_VALUE : toMillis;
+        for (Segment segment : segments) {
+            if (segment.getMaxPublishTime() < from || segment.getMinPublishTime() > to) {
+                continue;
+            }
+            boolean completed = segment.read(message -> message.getPublishTime() < from
+                    || message.getPublishTime() > to
+                    || visitor.visit(message));
+            if (!completed) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Drops all cached messages and starts a new run covering messages from {@code fromMillis}.
+     */
+    public void reset(Long fromMillis) throws IOException {
+        for (Segment segment : segments) {
+            segment.delete();
+        }
+        segments.clear();
+        coveredFrom = fromMillis == null ? Long.MIN_VALUE : fromMillis;
+        lastMessageId = null;
+        lastPublishTime = Long.MIN_VALUE;
+    }
+
+    /**
+     * Appends the next message of the partition, following {@link #getLastMessageId()}.
+     */
+    public void append(CachedMessage message) throws IOException {
+        Segment active = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (active == null || active.getBytes() >= segmentMaxBytes) {
+            if (active != null) {
+                active.close();
+            }
+            Files.createDirectories(directory);
+            active = new Segment(directory.resolve(Segment.fileName(nextSegment++)));
+            segments.add(active);
+        }
+        active.append(message);
+        lastMessageId = message.getMessageId();
+        lastPublishTime = Math.max(lastPublishTime, message.getPublishTime());
+    }
+
+    /**
+     * Forces appended data to disk and atomically rewrites the index.
+     */
+    public void commit() throws IOException {
+        for (Segment segment : segments) {
+            segment.force();
+        }
+        Properties index = new Properties();
+        if (coveredFrom != null && !segments.isEmpty()) {
+            index.setProperty("coveredFrom", Long.toString(coveredFrom));
+            index.setProperty("lastMessageId", Base64.getEncoder().encodeToString(lastMessageId));
+            index.setProperty("lastPublishTime", Long.toString(lastPublishTime));
+        }
+        index.setProperty("format", Integer.toString(Segment.FORMAT));
+        index.setProperty("nextSegment", Integer.toString(nextSegment));
+        List<String> names = new ArrayList<>();
+        for (Segment segment : segments) {
+            String name = segment.getFile().getFileName().toString();
+            names.add(name);
+            index.setProperty(name + ".bytes", Long.toString(segment.getBytes()));
+            index.setProperty(name + ".count", Long.toString(segment.getCount()));
+            index.setProperty(name + ".minPublishTime", Long.toString(segment.getMinPublishTime()));
+            index.setProperty(name + ".maxPublishTime", Long.toString(segment.getMaxPublishTime()));
+        }
+        index.setProperty("segments", String.join(",", names));
+
+        Files.createDirectories(directory);
+        Path temp = directory.resolve(INDEX_FILE + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            index.store(out, "Segment cache index");
+        }
+        Files.move(temp, directory.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public void close() throws IOException {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+    }
+
+    long getBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.getBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Publish time of the newest message in the oldest segment, or {@link Long#MAX_VALUE} when empty.
+     */
+    long getOldestSegmentMaxPublishTime() {
+        return segments.isEmpty() ? Long.MAX_VALUE : segments.get(0).getMaxPublishTime();
+    }
+
+    /**
+     * Deletes the oldest segment and moves {@code coveredFrom} past it. Returns the freed bytes.
+     */
+    long evictOldest() throws IOException {
+        Segment oldest = segments.remove(0);
+        oldest.delete();
+        if (segments.isEmpty()) {
+            coveredFrom = null;
+            lastMessageId = null;
+            lastPublishTime = Long.MIN_VALUE;
+        } else if (coveredFrom != null) {
+            coveredFrom = Math.max(coveredFrom, oldest.getMaxPublishTime() + 1);
+        }
+        log.debug("🧹 Zmazaný segment cache {}", oldest.getFile());
+        return oldest.getBytes();
+    }
+
+    private void load(Path index) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(index)) {
+            properties.load(in);
+        }
+        nextSegment = Integer.parseInt(properties.getProperty("nextSegment", "0"));
+        String names = properties.getProperty("segments", "");
+        String format = properties.getProperty("format", String.valueOf(Segment.FORMAT_WITHOUT_HEADER));
+        if (!names.isEmpty() && !format.equals(String.valueOf(Segment.FORMAT))) {
+            // older segments lack the event time; the cache is refilled from the broker
+            log.warn("⚠️ Cache partície {} je v starom formáte segmentov {}, zahodí sa.", directory, format);
+            discard();
+            return;
+        }
+        for (String name : names.isEmpty() ? new String[0] : names.split(",")) {
+            Path file = directory.resolve(name);
+            long bytes = Long.parseLong(properties.getProperty(name + ".bytes"));
+            if (!Files.isRegularFile(file) || Files.size(file) < bytes) {
+                log.warn("⚠️ Segment cache {} chýba alebo je neúplný, cache partície sa zahodí.", file);
+                discard();
+                return;
+            }
+            segments.add(new Segment(file, bytes,
+                    Long.parseLong(properties.getProperty(name + ".count")),
+                    Long.parseLong(properties.getProperty(name + ".minPublishTime")),
+                    Long.parseLong(properties.getProperty(name + ".maxPublishTime"))));
+        }
+        if (properties.containsKey("coveredFrom") && !segments.isEmpty()) {
+            coveredFrom = Long.parseLong(properties.getProperty("coveredFrom"));
+            lastMessageId = Base64.getDecoder().decode(properties.getProperty("lastMessageId"));
+            lastPublishTime = Long.parseLong(properties.getProperty("lastPublishTime"));
+        }
+    }
+
+    private void discard() throws IOException {
+        segments.clear();
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().endsWith(".seg")) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+}
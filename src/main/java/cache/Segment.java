@@ -0,0 +1,213 @@
+package cache;
+
+import source.RawMessage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One append-only segment file of a partition cache or a raw dump ({@link SegmentWriter}).
+ * <p>
+ * The file starts with {@link #MAGIC} and the format number. Record layout (big endian): {@code int length} of
+ * the rest, {@code long publishTime}, {@code long eventTime}, {@code int idLength}, id bytes, {@code int keyLength}
+ * (-1 for no key), key UTF-8, {@code int propertyCount}, per property {@code int} length + UTF-8 of key and value,
+ * {@code int payloadLength}, payload. Files written before the header existed are format 1, whose records have
+ * no event time; they are still read, with event time 0. Appends go through a {@link FileChannel}; reads map the
+ * committed part of the file.
+ */
+final class Segment {
+    // negative, so it cannot be the length of a format 1 record
+    static final int MAGIC = 0xFE5E6000;
+    static final int FORMAT = 2;
+    static final int FORMAT_WITHOUT_HEADER = 1;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+    private final Path file;
+    private long bytes;
+    private long count;
+    private long minPublishTime = Long.MAX_VALUE;
+    private long maxPublishTime = Long.MIN_VALUE;
+    private FileChannel channel;
+
+    Segment(Path file) {
+        this.file = file;
+    }
+
+    Segment(Path file, long bytes, long count, long minPublishTime, long maxPublishTime) {
+        this.file = file;
+        this.bytes = bytes;
+        this.count = count;
+        this.minPublishTime = minPublishTime;
+        this.maxPublishTime = maxPublishTime;
+    }
+
+    static String fileName(int number) {
+        return String.format("segment-%08d.seg", number);
+    }
+
+    void append(RawMessage message) throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            // drop anything written after the last commit, e.g. by a run that was killed
+            channel.truncate(bytes);
+            channel.position(bytes);
+            if (bytes == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(FORMAT).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+            }
+        }
+        ByteBuffer buffer = encode(message);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        bytes = channel.position();
+        count++;
+        minPublishTime = Math.min(minPublishTime, message.getPublishTime());
+        maxPublishTime = Math.max(maxPublishTime, message.getPublishTime());
+    }
+
+    /**
+     * Reads the records of this segment in append order. Returns {@code false} when the visitor stopped early.
+     */
+    boolean read(MessageVisitor visitor) throws Exception {
+        if (bytes == 0) {
+            return true;
+        }
+        MappedByteBuffer mapped;
+        try (FileChannel readChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+            mapped = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, bytes);
+        }
+        int format = readFormat(mapped);
+        while (mapped.remaining() >= Integer.BYTES) {
+            int length = mapped.getInt();
+            int next = mapped.position() + length;
+            if (!visitor.visit(decode(mapped, format))) {
+                return false;
+            }
+            mapped.position(next);
+        }
+        return true;
+    }
+
+    void force() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+        }
+    }
+
+    void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    long getBytes() {
+        return bytes;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    long getMinPublishTime() {
+        return minPublishTime;
+    }
+
+    long getMaxPublishTime() {
+        return maxPublishTime;
+    }
+
+    /**
+     * Reads the header at the start of a mapped segment and returns its format, leaving the buffer at the first
+     * record. A file without the header is {@link #FORMAT_WITHOUT_HEADER}.
+     */
+    static int readFormat(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt(buffer.position()) != MAGIC) {
+            return FORMAT_WITHOUT_HEADER;
+        }
+        buffer.position(buffer.position() + Integer.BYTES);
+        int format = buffer.getInt();
+        if (format != FORMAT) {
+            throw new IOException("Nepodporovaný formát segmentu: " + format);
+        }
+        return format;
+    }
+
+    private static ByteBuffer encode(RawMessage message) {
+        byte[] key = message.getKey() == null ? null : message.getKey().getBytes(StandardCharsets.UTF_8);
+        // name and value of each property, alternating
+        List<byte[]> properties = new ArrayList<>();
+        byte[] messageId = message.getMessageId();
+        byte[] payload = message.getPayload();
+        int length = 2 * Long.BYTES + Integer.BYTES + messageId.length + Integer.BYTES
+                + (key == null ? 0 : key.length) + Integer.BYTES + Integer.BYTES + payload.length;
+        for (Map.Entry<String, String> property : message.getProperties().entrySet()) {
+            byte[] name = property.getKey().getBytes(StandardCharsets.UTF_8);
+            byte[] value = property.getValue().getBytes(StandardCharsets.UTF_8);
+            properties.add(name);
+            properties.add(value);
+            length += 2 * Integer.BYTES + name.length + value.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + length);
+        buffer.putInt(length);
+        buffer.putLong(message.getPublishTime());
+        buffer.putLong(message.getEventTime());
+        buffer.putInt(messageId.length).put(messageId);
+        if (key == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(key.length).put(key);
+        }
+        buffer.putInt(properties.size() / 2);
+        for (byte[] part : properties) {
+            buffer.putInt(part.length).put(part);
+        }
+        buffer.putInt(payload.length).put(payload);
+        buffer.flip();
+        return buffer;
+    }
+
+    static CachedMessage decode(ByteBuffer buffer, int format) {
+        long publishTime = buffer.getLong();
+        long eventTime = format == FORMAT_WITHOUT_HEADER ? 0 : buffer.getLong();
+        byte[] messageId = bytes(buffer, buffer.getInt());
+        int keyLength = buffer.getInt();
+        String key = keyLength < 0 ? null : new String(bytes(buffer, keyLength), StandardCharsets.UTF_8);
+        int propertyCount = buffer.getInt();
+        Map<String, String> properties = propertyCount == 0 ? Map.of() : new LinkedHashMap<>();
+        for (int i = 0; i < propertyCount; i++) {
+            String name = new String(bytes(buffer, buffer.getInt()), StandardCharsets.UTF_8);
+            properties.put(name, new String(bytes(buffer, buffer.getInt()), StandardCharsets.UTF_8));
+        }
+        byte[] payload = bytes(buffer, buffer.getInt());
+        return new CachedMessage(publishTime, eventTime, messageId, key, properties, payload);
+    }
+
+    private static byte[] bytes(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,120 @@
+package cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * Local on-disk cache of raw topic data, {@code <segmentCacheDir>/<environment>/<topic alias>/<partition>/}. The
+ * environments use the same topic names, so each one has its own directory.
+ * <p>
+ * Each partition keeps append-only segment files with a time index (see {@link PartitionCache}). Eviction
+ * removes the oldest segments of each partition: first those older than {@code segmentCacheMaxAgeHours},
+ * then the globally oldest ones until the cache fits into {@code segmentCacheMaxMb}. The cache is meant for
+ * one process at a time.
+ */
+public final class SegmentCache {
+    private static final Logger log = LoggerFactory.getLogger(SegmentCache.class);
+    private static final long MB = 1024L * 1024L;
+
+    private final Path root;
+    private final long maxBytes;
+    private final long maxAgeMillis;
+    private final long segmentMaxBytes;
+
+    public SegmentCache(Path root, long maxBytes, long maxAgeMillis, long segmentMaxBytes) {
+        this.root = root;
+        this.maxBytes = maxBytes;
+        this.maxAgeMillis = maxAgeMillis;
+        this.segmentMaxBytes = segmentMaxBytes;
+    }
+
+    /**
+     * Creates the cache configured by {@code segmentCache}, {@code segmentCacheDir} (default {@code cache}),
+     * {@code segmentCacheMaxMb} (default 2048), {@code segmentCacheMaxAgeHours} (default 168) and
+     * {@code segmentMaxMb} (default 64), or returns {@code null} when the cache is disabled.
+     */
+    public static SegmentCache fromConfig(Properties configProps) {
+        if (!Boolean.parseBoolean(configProps.getProperty("segmentCache", "false").trim())) {
+            return null;
+        }
+        Path root = root(configProps);
+        long maxBytes = Long.parseLong(configProps.getProperty("segmentCacheMaxMb", "2048").trim()) * MB;
+        long maxAgeMillis = Long.parseLong(configProps.getProperty("segmentCacheMaxAgeHours", "168").trim()) * 3_600_000L;
+        long segmentMaxBytes = Long.parseLong(configProps.getProperty("segmentMaxMb", "64").trim()) * MB;
+        return new SegmentCache(root, maxBytes, maxAgeMillis, segmentMaxBytes);
+    }
+
+    /**
+     * Cache directory of the configured {@code environment}.
+     */
+    public static Path root(Properties configProps) {
+        return Path.of(configProps.getProperty("segmentCacheDir", "cache").trim())
+                .resolve(safeName(configProps.getProperty("environment", "").trim()));
+    }
+
+    public PartitionCache partition(String topicAlias, String partitionTopic) throws IOException {
+        return PartitionCache.open(root.resolve(safeName(topicAlias)).resolve(safeName(localName(partitionTopic))), segmentMaxBytes);
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Applies the age and size limits to the whole cache.
+     */
+    public void evict() throws IOException {
+        List<PartitionCache> partitions = new ArrayList<>();
+        if (Files.isDirectory(root)) {
+            try (Stream<Path> indexes = Files.find(root, 3, (path, attributes) -> path.getFileName().toString().equals("index.properties"))) {
+                for (Path index : (Iterable<Path>) indexes::iterator) {
+                    partitions.add(PartitionCache.open(index.getParent(), segmentMaxBytes));
+                }
+            }
+        }
+        long cutoff = System.currentTimeMillis() - maxAgeMillis;
+        long total = 0;
+        int evicted = 0;
+        for (PartitionCache partition : partitions) {
+            while (partition.getOldestSegmentMaxPublishTime() < cutoff) {
+                partition.evictOldest();
+                evicted++;
+            }
+            total += partition.getBytes();
+        }
+        while (total > maxBytes) {
+            PartitionCache oldest = null;
+            for (PartitionCache partition : partitions) {
+                if (oldest == null || partition.getOldestSegmentMaxPublishTime() < oldest.getOldestSegmentMaxPublishTime()) {
+                    oldest = partition;
+                }
+            }
+            if (oldest == null || oldest.getOldestSegmentMaxPublishTime() == Long.MAX_VALUE) {
+                break;
+            }
+            total -= oldest.evictOldest();
+            evicted++;
+        }
+        for (PartitionCache partition : partitions) {
+            partition.commit();
+            partition.close();
+        }
+        log.info("🗄️ Segment cache {}: {} MB, zmazaných {} segmentov.", root.toAbsolutePath(), total / MB, evicted);
+    }
+
+    private static String localName(String topic) {
+        return topic.substring(topic.lastIndexOf('/') + 1);
+    }
+
+    private static String safeName(String name) {
+        return name.replaceAll("[^a-zA-Z0-9._\\-]", "_");
+    }
+}
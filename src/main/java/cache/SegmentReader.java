@@ -0,0 +1,139 @@
+package cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+/**
+ * Reads segment files sequentially without the partition index, e.g. to replay a copied cache directory.
+ * <p>
+ * Files are memory mapped one at a time and read in name order, so the messages of each partition come out
+ * in the order they were appended. A record cut short at the end of a file (a run killed mid-append) is
+ * skipped. {@link #chunks(Path, int)} cuts a segment into independent readers of its slices, which can be read
+ * in parallel.
+ */
+public final class SegmentReader implements Iterator<CachedMessage>, Closeable {
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Iterator<Path> files;
+    private ByteBuffer mapped;
+    private int format;
+    private CachedMessage next;
+
+    public SegmentReader(List<Path> files) {
+        this.files = files.iterator();
+    }
+
+    private SegmentReader(ByteBuffer records, int format) {
+        this.files = Collections.emptyIterator();
+        this.mapped = records;
+        this.format = format;
+    }
+
+    /**
+     * Maps the segment and cuts it into slices of at most {@code maxMessages} whole records each, one reader
+     * per slice.
+     */
+    public static List<SegmentReader> chunks(Path segment, int maxMessages) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int format = Segment.readFormat(mapped);
+        List<SegmentReader> chunks = new ArrayList<>();
+        int start = mapped.position();
+        int records = 0;
+        while (mapped.remaining() >= Integer.BYTES) {
+            int length = mapped.getInt(mapped.position());
+            if (length < 0 || length > mapped.remaining() - Integer.BYTES) {
+                break;
+            }
+            mapped.position(mapped.position() + Integer.BYTES + length);
+            if (++records == maxMessages) {
+                chunks.add(new SegmentReader(mapped.slice(start, mapped.position() - start), format));
+                start = mapped.position();
+                records = 0;
+            }
+        }
+        if (records > 0) {
+            chunks.add(new SegmentReader(mapped.slice(start, mapped.position() - start), format));
+        }
+        return chunks;
+    }
+
+    /**
+     * All segment files under the path (or the path itself when it is a file), sorted by path.
+     */
+    public static List<Path> findSegments(Path root) throws IOException {
+        if (Files.isRegularFile(root)) {
+            return List.of(root);
+        }
+        if (!Files.isDirectory(root)) {
+            throw new IllegalArgumentException("Adresár so segmentmi neexistuje: " + root.toAbsolutePath());
+        }
+        List<Path> segments = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .forEach(segments::add);
+        }
+        return segments;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        try {
+            while (true) {
+                if (mapped != null && mapped.remaining() >= Integer.BYTES) {
+                    int length = mapped.getInt();
+                    if (length >= 0 && length <= mapped.remaining()) {
+                        int end = mapped.position() + length;
+                        next = Segment.decode(mapped, format);
+                        mapped.position(end);
+                        return true;
+                    }
+                }
+                if (!files.hasNext()) {
+                    mapped = null;
+                    return false;
+                }
+                try (FileChannel channel = FileChannel.open(files.next(), StandardOpenOption.READ)) {
+                    mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+                format = Segment.readFormat(mapped);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public CachedMessage next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        CachedMessage message = next;
+        next = null;
+        return message;
+    }
+
+    @Override
+    public void close() {
+        mapped = null;
+    }
+}
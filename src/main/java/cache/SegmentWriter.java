@@ -0,0 +1,84 @@
+package cache;
+
+import source.RawMessage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Raw dump of undecoded messages into rolling segment files of one directory, in the segment cache format.
+ * <p>
+ * Numbering continues after the segments already in the directory, so a resumed dump adds new files and
+ * {@link SegmentReader} reads the runs back in order. Safe to share between threads.
+ */
+public final class SegmentWriter implements Closeable {
+    private final Path directory;
+    private final long segmentMaxBytes;
+    private Segment active;
+    private int nextSegment;
+    private long count;
+    private boolean closed;
+
+    public SegmentWriter(Path directory, long segmentMaxBytes) throws IOException {
+        this.directory = directory;
+        this.segmentMaxBytes = segmentMaxBytes;
+        Files.createDirectories(directory);
+        List<Path> existing = SegmentReader.findSegments(directory);
+        for (Path segment : existing) {
+            String name = segment.getFileName().toString();
+            try {
+                nextSegment = Math.max(nextSegment, Integer.parseInt(name.substring("segment-".length(), name.length() - ".seg".length())) + 1);
+            } catch (RuntimeException e) {
+                // not one of ours, the name does not take part in the numbering
+            }
+        }
+    }
+
+    /**
+     * Appends one message. Returns {@code false} once the writer has been closed.
+     */
+    public synchronized boolean append(RawMessage message) throws IOException {
+        if (closed) {
+            return false;
+        }
+        if (active == null || active.getBytes() >= segmentMaxBytes) {
+            if (active != null) {
+                active.force();
+                active.close();
+            }
+            active = new Segment(directory.resolve(Segment.fileName(nextSegment++)));
+        }
+        active.append(message);
+        count++;
+        return true;
+    }
+
+    public synchronized void flush() throws IOException {
+        if (active != null && !closed) {
+            active.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (active != null) {
+            active.force();
+            active.close();
+        }
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+}
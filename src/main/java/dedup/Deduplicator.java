@@ -0,0 +1,210 @@
+package dedup;
+
+import filter.FieldAccessor;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.util.Utf8;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.MurmurHash3;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drops records whose event id (by default {@code metadata.eventId}) has been seen before, e.g. redelivered
+ * messages or the overlap of two runs over the same time range.
+ * <p>
+ * Ids in the canonical UUID form are stored as their 128 bits, any other id as its 128-bit MurmurHash3, so no
+ * string is kept per event. The set is exact ({@link UuidHashSet}) or approximate ({@link ScalableBloomFilter});
+ * with {@code dedupFile} it is loaded at start and saved after the output has been closed, the same way as the
+ * checkpoint. An id is recorded before its event is written, so the set is saved only when every event let
+ * through has been written; after a cut-short run the previous file stays as it was. Records without an id are
+ * always kept.
+ */
+public final class Deduplicator {
+    private static final Logger log = LoggerFactory.getLogger(Deduplicator.class);
+    public static final List<String> MODES = List.of("off", "exact", "approximate");
+
+    private final FieldAccessor field;
+    private final EventIdSet ids;
+    private final Path file;
+    private final ThreadLocal<long[]> hash = ThreadLocal.withInitial(() -> new long[2]);
+    // events let through by firstSeen and not yet confirmed by exported
+    private final LongAdder unexported = new LongAdder();
+
+    private Deduplicator(FieldAccessor field, EventIdSet ids, Path file) {
+        this.field = field;
+        this.ids = ids;
+        this.file = file;
+    }
+
+    /**
+     * Deduplicator configured by {@code dedup}, {@code dedupField}, {@code dedupFile},
+     * {@code dedupExpectedEvents} and {@code dedupFalsePositiveRate}, or {@code null} when {@code dedup=off}.
+     */
+    public static Deduplicator fromConfig(Properties props, Schema schema) throws IOException {
+        String mode = props.getProperty("dedup", "off").trim().toLowerCase();
+        if ("off".equals(mode)) {
+            return null;
+        }
+        FieldAccessor field = FieldAccessor.compile(fieldPath(props), schema);
+        long expectedEvents = Long.parseLong(props.getProperty("dedupExpectedEvents", "100000").trim());
+        double falsePositiveRate = Double.parseDouble(props.getProperty("dedupFalsePositiveRate", "0.001").trim());
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("dedupFalsePositiveRate musí byť medzi 0 a 1: " + falsePositiveRate);
+        }
+        String fileName = props.getProperty("dedupFile", "").trim();
+        Path file = fileName.isEmpty() ? null : Path.of(fileName);
+
+        EventIdSet ids;
+        if (file != null && Files.isRegularFile(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                ids = EventIdSet.read(in, expectedEvents);
+            }
+            if (ids.isApproximate() != "approximate".equals(mode)) {
+                throw new IllegalArgumentException("Súbor " + file + " nebol uložený v režime dedup=" + mode);
+            }
+            log.info("🧹 Načítaných {} eventId z {}", ids.size(), file);
+        } else {
+            ids = "approximate".equals(mode)
+                    ? new ScalableBloomFilter(expectedEvents, falsePositiveRate)
+                    : new UuidHashSet(expectedEvents);
+        }
+        return new Deduplicator(field, ids, file);
+    }
+
+    /**
+     * Field holding the event id, which a projection has to keep.
+     */
+    public static String fieldPath(Properties props) {
+        return props.getProperty("dedupField", "metadata.eventId").trim();
+    }
+
+    /**
+     * {@code true} the first time the record's event id is seen (or when it has none). The caller confirms the
+     * write of such a record with {@link #exported()}.
+     */
+    public boolean firstSeen(IndexedRecord record) {
+        boolean first = add(record);
+        if (first) {
+            unexported.increment();
+        }
+        return first;
+    }
+
+    /**
+     * Confirms that a record let through by {@link #firstSeen} has been written or aggregated.
+     */
+    public void exported() {
+        unexported.decrement();
+    }
+
+    private boolean add(IndexedRecord record) {
+        Object id = field.first(record);
+        if (id instanceof Utf8) {
+            Utf8 utf8 = (Utf8) id;
+            return add(utf8.getBytes(), utf8.getByteLength());
+        }
+        if (id instanceof CharSequence) {
+            byte[] bytes = id.toString().getBytes(StandardCharsets.UTF_8);
+            return add(bytes, bytes.length);
+        }
+        return true;
+    }
+
+    public String getFieldPath() {
+        return field.getPath();
+    }
+
+    public long size() {
+        return ids.size();
+    }
+
+    public long memoryBytes() {
+        return ids.memoryBytes();
+    }
+
+    public boolean isApproximate() {
+        return ids.isApproximate();
+    }
+
+    /**
+     * Writes the set to {@code dedupFile} (if configured), replacing the previous one atomically; skipped when some
+     * event let through has not been written, as its id would drop it in the next run.
+     */
+    public void save() throws IOException {
+        if (file == null) {
+            return;
+        }
+        long lost = unexported.sum();
+        if (lost != 0) {
+            log.warn("⚠️ {} správ prepustených deduplikáciou sa nezapísalo, množinu eventId neukladám ({} zostáva).",
+                    lost, file);
+            return;
+        }
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp);
+                 DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16))) {
+                ids.write(data);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        log.info("🧹 Uložených {} eventId do {}", ids.size(), file);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    private boolean add(byte[] bytes, int length) {
+        if (length == 36 && bytes[8] == '-' && bytes[13] == '-' && bytes[18] == '-' && bytes[23] == '-') {
+            long timeLow = hex(bytes, 0, 8);
+            long timeMid = hex(bytes, 9, 4);
+            long timeHigh = hex(bytes, 14, 4);
+            long clock = hex(bytes, 19, 4);
+            long node = hex(bytes, 24, 12);
+            if ((timeLow | timeMid | timeHigh | clock | node) >= 0) {
+                return ids.add(timeLow << 32 | timeMid << 16 | timeHigh, clock << 48 | node);
+            }
+        }
+        return addHashed(bytes, length);
+    }
+
+    /**
+     * Value of the hex digits, or -1 when one of them is not a hex digit.
+     */
+    private static long hex(byte[] bytes, int offset, int digits) {
+        long value = 0;
+        for (int i = offset; i < offset + digits; i++) {
+            int digit = Character.digit(bytes[i], 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+
+    private boolean addHashed(byte[] bytes, int length) {
+        long[] hash = this.hash.get();
+        MurmurHash3.hash128(bytes, length, hash);
+        return ids.add(hash[0], hash[1]);
+    }
+}
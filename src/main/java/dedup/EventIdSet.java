@@ -0,0 +1,52 @@
+package dedup;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Set of 128-bit event ids, each given as two longs. Implementations are safe to share between threads.
+ */
+public interface EventIdSet {
+    int MAGIC = 0x45564944; // "EVID"
+
+    /**
+     * Adds the id. Returns {@code false} when it has been added before; an approximate set may also return
+     * {@code false} for an id it has never seen.
+     */
+    boolean add(long high, long low);
+
+    long size();
+
+    /**
+     * Bytes held by the set, to report the cost per event.
+     */
+    long memoryBytes();
+
+    /**
+     * {@code true} when {@link #add} can report false duplicates.
+     */
+    boolean isApproximate();
+
+    /**
+     * Writes the set with its header, so {@link #read} can restore it in the next run.
+     */
+    void write(DataOutputStream out) throws IOException;
+
+    /**
+     * Reads a set written by {@link #write}, sized for at least {@code expectedEvents} ids.
+     */
+    static EventIdSet read(DataInputStream in, long expectedEvents) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Nie je to súbor eventId deduplikácie");
+        }
+        int type = in.readByte();
+        if (type == UuidHashSet.TYPE) {
+            return UuidHashSet.read(in, expectedEvents);
+        }
+        if (type == ScalableBloomFilter.TYPE) {
+            return ScalableBloomFilter.read(in);
+        }
+        throw new IOException("Neznámy typ množiny eventId: " + type);
+    }
+}
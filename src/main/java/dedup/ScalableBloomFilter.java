@@ -0,0 +1,162 @@
+package dedup;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Approximate set of 128-bit ids: a scalable Bloom filter (Almeida et al.), a chain of plain Bloom filters.
+ * <p>
+ * When the newest filter reaches its capacity a new one is added with twice the capacity and half the false
+ * positive rate, so the total rate stays below the configured one however many ids arrive, at about
+ * 2–3 bytes per id for a rate of 0.1 %. A false positive drops a new event as a duplicate; ids are never
+ * missed, so no duplicate gets through.
+ */
+final class ScalableBloomFilter implements EventIdSet {
+    static final byte TYPE = 2;
+    private static final int GROWTH = 2;
+    private static final double TIGHTENING = 0.5;
+
+    private final double falsePositiveRate;
+    private final List<Stage> stages = new ArrayList<>();
+
+    ScalableBloomFilter(long initialCapacity, double falsePositiveRate) {
+        this.falsePositiveRate = falsePositiveRate;
+        // the rates of the stages form a geometric series that sums up to falsePositiveRate
+        stages.add(new Stage(initialCapacity, falsePositiveRate * (1 - TIGHTENING)));
+    }
+
+    private ScalableBloomFilter(double falsePositiveRate) {
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    @Override
+    public synchronized boolean add(long high, long low) {
+        long hash1 = UuidHashSet.mix(high);
+        long hash2 = UuidHashSet.mix(low) | 1;
+        for (Stage stage : stages) {
+            if (stage.mightContain(hash1, hash2)) {
+                return false;
+            }
+        }
+        Stage current = stages.get(stages.size() - 1);
+        if (current.count >= current.capacity) {
+            current = new Stage(current.capacity * GROWTH, current.falsePositiveRate * TIGHTENING);
+            stages.add(current);
+        }
+        current.put(hash1, hash2);
+        return true;
+    }
+
+    @Override
+    public synchronized long size() {
+        long size = 0;
+        for (Stage stage : stages) {
+            size += stage.count;
+        }
+        return size;
+    }
+
+    @Override
+    public synchronized long memoryBytes() {
+        long bytes = 0;
+        for (Stage stage : stages) {
+            bytes += (long) stage.bits.length * Long.BYTES;
+        }
+        return bytes;
+    }
+
+    @Override
+    public boolean isApproximate() {
+        return true;
+    }
+
+    @Override
+    public synchronized void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(TYPE);
+        out.writeDouble(falsePositiveRate);
+        out.writeInt(stages.size());
+        for (Stage stage : stages) {
+            out.writeLong(stage.capacity);
+            out.writeLong(stage.count);
+            out.writeDouble(stage.falsePositiveRate);
+            out.writeInt(stage.hashes);
+            out.writeInt(stage.bits.length);
+            for (long word : stage.bits) {
+                out.writeLong(word);
+            }
+        }
+    }
+
+    static ScalableBloomFilter read(DataInputStream in) throws IOException {
+        ScalableBloomFilter filter = new ScalableBloomFilter(in.readDouble());
+        int stageCount = in.readInt();
+        for (int i = 0; i < stageCount; i++) {
+            long capacity = in.readLong();
+            long count = in.readLong();
+            double falsePositiveRate = in.readDouble();
+            int hashes = in.readInt();
+            long[] bits = new long[in.readInt()];
+            for (int word = 0; word < bits.length; word++) {
+                bits[word] = in.readLong();
+            }
+            filter.stages.add(new Stage(capacity, count, falsePositiveRate, hashes, bits));
+        }
+        if (filter.stages.isEmpty()) {
+            throw new IOException("Bloom filter bez vrstiev");
+        }
+        return filter;
+    }
+
+    private static final class Stage {
+        private final long capacity;
+        private final double falsePositiveRate;
+        private final int hashes;
+        private final long[] bits;
+        private final long bitCount;
+        private long count;
+
+        private Stage(long capacity, double falsePositiveRate) {
+            // optimal size and number of hashes for the capacity and rate
+            this(capacity, 0, falsePositiveRate,
+                    Math.max(1, (int) Math.ceil(-Math.log(falsePositiveRate) / Math.log(2))),
+                    new long[(int) Math.min(Integer.MAX_VALUE - 8,
+                            Math.max(1, (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)) / 64)))]);
+        }
+
+        private Stage(long capacity, long count, double falsePositiveRate, int hashes, long[] bits) {
+            this.capacity = capacity;
+            this.count = count;
+            this.falsePositiveRate = falsePositiveRate;
+            this.hashes = hashes;
+            this.bits = bits;
+            this.bitCount = (long) bits.length * 64;
+        }
+
+        // Kirsch–Mitzenmacher: the k bit positions are hash1 + i * hash2
+        private boolean mightContain(long hash1, long hash2) {
+            long combined = hash1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Long.remainderUnsigned(combined, bitCount);
+                if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+                combined += hash2;
+            }
+            return true;
+        }
+
+        private void put(long hash1, long hash2) {
+            long combined = hash1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Long.remainderUnsigned(combined, bitCount);
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+                combined += hash2;
+            }
+            count++;
+        }
+    }
+}
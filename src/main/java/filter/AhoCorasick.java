@@ -0,0 +1,142 @@
+package filter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.IntConsumer;
+
+/**
+ * Aho-Corasick automaton over UTF-8 bytes, compiled to a dense DFA.
+ * <p>
+ * Bytes that occur in no pattern share one alphabet class, which keeps the transition table small even for
+ * thousands of patterns. Scanning is one table lookup per input byte, without allocation.
+ */
+public final class AhoCorasick {
+    private final int[] byteClass = new int[256];
+    private final int alphabetSize;
+    private final int[] transitions;
+    private final int[][] outputs;
+    private final int patternCount;
+
+    public AhoCorasick(Collection<String> patterns) {
+        List<byte[]> encoded = new ArrayList<>(patterns.size());
+        for (String pattern : patterns) {
+            byte[] bytes = pattern.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length == 0) {
+                throw new IllegalArgumentException("Prázdny literál nie je možné vyhľadávať.");
+            }
+            encoded.add(bytes);
+        }
+        this.patternCount = encoded.size();
+
+        boolean[] used = new boolean[256];
+        for (byte[] bytes : encoded) {
+            for (byte b : bytes) {
+                used[b & 0xFF] = true;
+            }
+        }
+        int classes = 1;
+        for (int i = 0; i < 256; i++) {
+            if (used[i]) {
+                byteClass[i] = classes++;
+            }
+        }
+        this.alphabetSize = classes;
+
+        // trie with sparse children, converted to a DFA below
+        List<int[]> children = new ArrayList<>();
+        List<List<Integer>> stateOutputs = new ArrayList<>();
+        children.add(newRow());
+        stateOutputs.add(new ArrayList<>());
+        for (int p = 0; p < encoded.size(); p++) {
+            int state = 0;
+            for (byte b : encoded.get(p)) {
+                int c = classOf(b);
+                int next = children.get(state)[c];
+                if (next <= 0) {
+                    next = children.size();
+                    children.get(state)[c] = next;
+                    children.add(newRow());
+                    stateOutputs.add(new ArrayList<>());
+                }
+                state = next;
+            }
+            stateOutputs.get(state).add(p);
+        }
+
+        int states = children.size();
+        this.transitions = new int[states * alphabetSize];
+        int[] failure = new int[states];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < alphabetSize; c++) {
+            int child = children.get(0)[c];
+            if (child > 0) {
+                transitions[c] = child;
+                failure[child] = 0;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            stateOutputs.get(state).addAll(stateOutputs.get(failure[state]));
+            for (int c = 0; c < alphabetSize; c++) {
+                int child = children.get(state)[c];
+                if (child > 0) {
+                    failure[child] = transitions[failure[state] * alphabetSize + c];
+                    transitions[state * alphabetSize + c] = child;
+                    queue.add(child);
+                } else {
+                    transitions[state * alphabetSize + c] = transitions[failure[state] * alphabetSize + c];
+                }
+            }
+        }
+
+        this.outputs = new int[states][];
+        for (int s = 0; s < states; s++) {
+            List<Integer> out = stateOutputs.get(s);
+            outputs[s] = out.isEmpty() ? null : out.stream().distinct().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    public int getPatternCount() {
+        return patternCount;
+    }
+
+    public boolean containsAny(byte[] data) {
+        return containsAny(data, 0, data.length);
+    }
+
+    public boolean containsAny(byte[] data, int offset, int length) {
+        int state = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            state = transitions[state * alphabetSize + byteClass[data[i] & 0xFF]];
+            if (outputs[state] != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reports the index of every pattern found in the data; a pattern may be reported more than once.
+     */
+    public void forEachMatch(byte[] data, IntConsumer consumer) {
+        int state = 0;
+        for (byte b : data) {
+            state = transitions[state * alphabetSize + byteClass[b & 0xFF]];
+            int[] out = outputs[state];
+            if (out != null) {
+                for (int pattern : out) {
+                    consumer.accept(pattern);
+                }
+            }
+        }
+    }
+
+    private int classOf(byte b) {
+        return byteClass[b & 0xFF];
+    }
+
+    private int[] newRow() {
+        return new int[alphabetSize];
+    }
+}
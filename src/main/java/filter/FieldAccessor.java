@@ -0,0 +1,179 @@
+package filter;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.IndexedRecord;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Field path such as {@code payload.partyRole.partyId} compiled against a schema into field positions.
+ * <p>
+ * Nullable unions are unwrapped, arrays are traversed transparently (a predicate matches when any element
+ * matches) and a {@code null} on the way down is handed to the predicate as the leaf value.
+ */
+public final class FieldAccessor {
+    private final String path;
+    private final Step[] steps;
+    private final List<Schema> leafSchemas;
+    private final boolean array;
+
+    private FieldAccessor(String path, Step[] steps, List<Schema> leafSchemas, boolean array) {
+        this.path = path;
+        this.steps = steps;
+        this.leafSchemas = leafSchemas;
+        this.array = array;
+    }
+
+    public static FieldAccessor compile(String path, Schema schema) {
+        String[] names = path.split("\\.");
+        Step[] steps = new Step[names.length];
+        List<Schema> current = List.of(schema);
+        boolean array = false;
+        for (int i = 0; i < names.length; i++) {
+            array |= containsArray(current);
+            Map<Schema, Integer> positions = new IdentityHashMap<>();
+            List<Schema> next = new ArrayList<>();
+            for (Schema candidate : unwrap(current)) {
+                if (candidate.getType() != Schema.Type.RECORD) {
+                    continue;
+                }
+                Schema.Field field = candidate.getField(names[i]);
+                if (field != null) {
+                    positions.put(candidate, field.pos());
+                    next.add(field.schema());
+                }
+            }
+            if (positions.isEmpty()) {
+                throw new IllegalArgumentException("Pole '" + names[i] + "' z cesty '" + path + "' neexistuje v schéme " + schema.getFullName());
+            }
+            steps[i] = new Step(positions);
+            current = next;
+        }
+        return new FieldAccessor(path, steps, unwrap(current), array || containsArray(current));
+    }
+
+    private static boolean containsArray(List<Schema> schemas) {
+        for (Schema schema : schemas) {
+            if (schema.getType() == Schema.Type.ARRAY
+                    || (schema.getType() == Schema.Type.UNION && containsArray(schema.getTypes()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Non-null schemas the leaf value can have (union branches and array items are unwrapped).
+     */
+    public List<Schema> getLeafSchemas() {
+        return leafSchemas;
+    }
+
+    /**
+     * {@code true} when the path crosses an array, so a record can hold several values.
+     */
+    public boolean isArray() {
+        return array;
+    }
+
+    public boolean anyMatch(IndexedRecord record, Predicate<Object> predicate) {
+        return test(record, 0, predicate);
+    }
+
+    /**
+     * Returns the first leaf value, or {@code null} when the path is absent or null.
+     */
+    public Object first(IndexedRecord record) {
+        Object[] found = new Object[1];
+        test(record, 0, value -> {
+            found[0] = value;
+            return true;
+        });
+        return found[0];
+    }
+
+    private boolean test(Object value, int step, Predicate<Object> predicate) {
+        if (value instanceof Collection) {
+            for (Object item : (Collection<?>) value) {
+                if (test(item, step, predicate)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (step == steps.length || value == null) {
+            return predicate.test(value);
+        }
+        if (!(value instanceof IndexedRecord)) {
+            return false;
+        }
+        IndexedRecord record = (IndexedRecord) value;
+        int position = steps[step].position(record.getSchema());
+        return position >= 0 && test(record.get(position), step + 1, predicate);
+    }
+
+    private static List<Schema> unwrap(List<Schema> schemas) {
+        List<Schema> result = new ArrayList<>();
+        Deque<Schema> pending = new ArrayDeque<>(schemas);
+        while (!pending.isEmpty()) {
+            Schema schema = pending.poll();
+            switch (schema.getType()) {
+                case UNION:
+                    pending.addAll(schema.getTypes());
+                    break;
+                case ARRAY:
+                    pending.add(schema.getElementType());
+                    break;
+                case NULL:
+                    break;
+                default:
+                    result.add(schema);
+            }
+        }
+        return result;
+    }
+
+    private static final class Step {
+        private final Schema singleSchema;
+        private final int singlePosition;
+        private final Map<Schema, Integer> positions;
+
+        private Step(Map<Schema, Integer> positions) {
+            if (positions.size() == 1) {
+                Map.Entry<Schema, Integer> entry = positions.entrySet().iterator().next();
+                this.singleSchema = entry.getKey();
+                this.singlePosition = entry.getValue();
+                this.positions = null;
+            } else {
+                this.singleSchema = null;
+                this.singlePosition = -1;
+                this.positions = positions;
+            }
+        }
+
+        private int position(Schema schema) {
+            if (positions == null) {
+                if (schema == singleSchema || schema.getFullName().equals(singleSchema.getFullName())) {
+                    return singlePosition;
+                }
+                return -1;
+            }
+            Integer position = positions.get(schema);
+            if (position != null) {
+                return position;
+            }
+            // Records decoded with another instance of the same schema: fall back to the record name.
+            for (Map.Entry<Schema, Integer> entry : positions.entrySet()) {
+                if (entry.getKey().getFullName().equals(schema.getFullName())) {
+                    return entry.getValue();
+                }
+            }
+            return -1;
+        }
+    }
+}
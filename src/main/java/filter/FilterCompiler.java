@@ -0,0 +1,500 @@
+package filter;
+
+import org.apache.avro.LogicalType;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericEnumSymbol;
+import org.apache.avro.util.Utf8;
+import utils.Constants;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.*;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Compiles filter expressions over Avro field paths, for example
+ * <pre>
+ * payload.partyRole.partyId == "4866429967442"
+ * metadata.eventName in ("TASK_CREATED", "TASK_UPDATED") &amp;&amp; metadata.eventCreatedAt &gt;= "2025-08-01T00:00:00Z"
+ * </pre>
+ * Supported operators are {@code == != < <= > >= in, not in}, combined with {@code && || !} (or {@code and or not})
+ * and parentheses. Literals are coerced once to the field type: strings and enums compare as text, numbers as
+ * numbers, and timestamp/date/time logical types also accept date strings.
+ */
+public final class FilterCompiler {
+    private final List<Token> tokens;
+    private final Schema schema;
+    private final Set<String> fieldPaths = new LinkedHashSet<>();
+    private int position;
+
+    private FilterCompiler(String expression, Schema schema) {
+        this.tokens = tokenize(expression);
+        this.schema = schema;
+    }
+
+    public static CompiledFilter compile(String expression, Schema schema) {
+        FilterCompiler compiler = new FilterCompiler(expression, schema);
+        Node compiled = compiler.parseOr();
+        if (compiler.position < compiler.tokens.size()) {
+            throw new IllegalArgumentException("Neočakávaný token '" + compiler.peek().text + "' vo filtri: " + expression);
+        }
+        return new CompiledFilter(expression, compiled.expression, compiler.fieldPaths, compiled.requiredLiterals,
+                compiled.bounds);
+    }
+
+    /**
+     * Result of {@link #compile(String, Schema)}: the expression, the field paths it reads, the string
+     * literals of which every matching record must contain at least one (empty when there is no such set) and
+     * the range every matching record keeps an integer field in.
+     */
+    public static final class CompiledFilter {
+        private final String source;
+        private final FilterExpression expression;
+        private final Set<String> fieldPaths;
+        private final Set<String> requiredLiterals;
+        private final Map<String, long[]> bounds;
+
+        private CompiledFilter(String source, FilterExpression expression, Set<String> fieldPaths, Set<String> requiredLiterals,
+                               Map<String, long[]> bounds) {
+            this.source = source;
+            this.expression = expression;
+            this.fieldPaths = Collections.unmodifiableSet(fieldPaths);
+            this.requiredLiterals = requiredLiterals == null ? Set.of() : Collections.unmodifiableSet(requiredLiterals);
+            this.bounds = bounds;
+        }
+
+        /**
+         * Inclusive {@code [min, max]} of an integer (or timestamp) field in every matching record, or {@code null}
+         * when the filter does not bound it, e.g. {@code publishTime >= "2025-08-21_12-00"} bounds {@code publishTime}
+         * from below and {@link Long#MAX_VALUE} stands for no upper bound.
+         */
+        public long[] getBounds(String fieldPath) {
+            long[] range = bounds.get(fieldPath);
+            return range == null ? null : range.clone();
+        }
+
+        public Set<String> getRequiredLiterals() {
+            return requiredLiterals;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public FilterExpression getExpression() {
+            return expression;
+        }
+
+        public Set<String> getFieldPaths() {
+            return fieldPaths;
+        }
+    }
+
+    private Node parseOr() {
+        Node left = parseAnd();
+        while (acceptKeyword("||", "or")) {
+            Node right = parseAnd();
+            Set<String> literals = null;
+            if (left.requiredLiterals != null && right.requiredLiterals != null) {
+                literals = new LinkedHashSet<>(left.requiredLiterals);
+                literals.addAll(right.requiredLiterals);
+            }
+            // a record matching either side lies in the hull of the ranges both sides bound
+            Map<String, long[]> bounds = new HashMap<>();
+            for (Map.Entry<String, long[]> entry : left.bounds.entrySet()) {
+                long[] other = right.bounds.get(entry.getKey());
+                if (other != null) {
+                    bounds.put(entry.getKey(), new long[]{Math.min(entry.getValue()[0], other[0]), Math.max(entry.getValue()[1], other[1])});
+                }
+            }
+            left = new Node(FilterExpression.or(left.expression, right.expression), literals, bounds);
+        }
+        return left;
+    }
+
+    private Node parseAnd() {
+        Node left = parseUnary();
+        while (acceptKeyword("&&", "and")) {
+            Node right = parseUnary();
+            Set<String> literals = left.requiredLiterals;
+            if (literals == null || (right.requiredLiterals != null && right.requiredLiterals.size() < literals.size())) {
+                literals = right.requiredLiterals;
+            }
+            Map<String, long[]> bounds = new HashMap<>(left.bounds);
+            right.bounds.forEach((path, range) -> bounds.merge(path, range,
+                    (a, b) -> new long[]{Math.max(a[0], b[0]), Math.min(a[1], b[1])}));
+            left = new Node(FilterExpression.and(left.expression, right.expression), literals, bounds);
+        }
+        return left;
+    }
+
+    private Node parseUnary() {
+        if (acceptKeyword("!", "not")) {
+            return new Node(FilterExpression.not(parseUnary().expression), null);
+        }
+        if (accept("(")) {
+            Node inner = parseOr();
+            expect(")");
+            return inner;
+        }
+        return parseComparison();
+    }
+
+    private Node parseComparison() {
+        Token pathToken = next();
+        if (pathToken.kind != Kind.WORD) {
+            throw new IllegalArgumentException("Očakávaná cesta k poľu, nájdené '" + pathToken.text + "'");
+        }
+        FieldAccessor accessor = FieldAccessor.compile(pathToken.text, schema);
+        fieldPaths.add(pathToken.text);
+
+        boolean negated = acceptKeyword("not");
+        if (acceptKeyword("in")) {
+            expect("(");
+            List<Object> values = new ArrayList<>();
+            do {
+                values.add(coerce(accessor, next()));
+            } while (accept(","));
+            expect(")");
+            Predicate<Object> in = inPredicate(values);
+            if (negated) {
+                return new Node(record -> !accessor.anyMatch(record, in), null);
+            }
+            return new Node(record -> accessor.anyMatch(record, in), stringLiterals(accessor, values),
+                    bounds(accessor, values, "in"));
+        }
+        if (negated) {
+            throw new IllegalArgumentException("Za 'not' sa očakáva 'in' pri poli " + pathToken.text);
+        }
+
+        Token operator = next();
+        if (operator.kind != Kind.OPERATOR) {
+            throw new IllegalArgumentException("Očakávaný operátor za " + pathToken.text + ", nájdené '" + operator.text + "'");
+        }
+        Object literal = coerce(accessor, next());
+        if (operator.text.equals("!=")) {
+            Predicate<Object> equal = comparison("==", literal);
+            return new Node(record -> !accessor.anyMatch(record, equal), null);
+        }
+        Predicate<Object> predicate = comparison(operator.text, literal);
+        Set<String> literals = operator.text.equals("==") && literal != null ? stringLiterals(accessor, List.of(literal)) : null;
+        return new Node(record -> accessor.anyMatch(record, predicate), literals,
+                bounds(accessor, List.of(literal == null ? "" : literal), operator.text));
+    }
+
+    /**
+     * Range of an integer field implied by a comparison; arrays are left out, as any element may match.
+     */
+    private static Map<String, long[]> bounds(FieldAccessor accessor, List<Object> values, String operator) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (Object value : values) {
+            if (!(value instanceof Long)) {
+                return Map.of();
+            }
+            min = Math.min(min, (Long) value);
+            max = Math.max(max, (Long) value);
+        }
+        if (accessor.isArray()) {
+            return Map.of();
+        }
+        switch (operator) {
+            case "<":
+                return max == Long.MIN_VALUE ? Map.of() : Map.of(accessor.getPath(), new long[]{Long.MIN_VALUE, max - 1});
+            case "<=":
+                return Map.of(accessor.getPath(), new long[]{Long.MIN_VALUE, max});
+            case ">":
+                return min == Long.MAX_VALUE ? Map.of() : Map.of(accessor.getPath(), new long[]{min + 1, Long.MAX_VALUE});
+            case ">=":
+                return Map.of(accessor.getPath(), new long[]{min, Long.MAX_VALUE});
+            default:
+                return Map.of(accessor.getPath(), new long[]{min, max});
+        }
+    }
+
+    /**
+     * Equality on a plain string field means the raw payload contains the value as UTF-8 bytes. Enums are
+     * stored as indexes and {@code null} has no bytes, so those yield no literals.
+     */
+    private static Set<String> stringLiterals(FieldAccessor accessor, List<Object> values) {
+        for (Schema leaf : accessor.getLeafSchemas()) {
+            if (leaf.getType() != Schema.Type.STRING) {
+                return null;
+            }
+        }
+        Set<String> literals = new LinkedHashSet<>();
+        for (Object value : values) {
+            if (!(value instanceof Utf8) || ((Utf8) value).getByteLength() == 0) {
+                return null;
+            }
+            literals.add(value.toString());
+        }
+        return literals;
+    }
+
+    private static final class Node {
+        private final FilterExpression expression;
+        private final Set<String> requiredLiterals;
+        private final Map<String, long[]> bounds;
+
+        private Node(FilterExpression expression, Set<String> requiredLiterals) {
+            this(expression, requiredLiterals, Map.of());
+        }
+
+        private Node(FilterExpression expression, Set<String> requiredLiterals, Map<String, long[]> bounds) {
+            this.expression = expression;
+            this.requiredLiterals = requiredLiterals;
+            this.bounds = bounds;
+        }
+    }
+
+    private static Predicate<Object> inPredicate(List<Object> values) {
+        Set<Object> set = new HashSet<>(values);
+        return value -> set.contains(normalize(value));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Predicate<Object> comparison(String operator, Object literal) {
+        if (operator.equals("==")) {
+            return value -> Objects.equals(normalize(value), literal);
+        }
+        if (literal == null || literal instanceof Boolean) {
+            throw new IllegalArgumentException("Operátor " + operator + " nie je podporovaný pre hodnotu " + literal);
+        }
+        Comparable comparable = (Comparable) literal;
+        switch (operator) {
+            case "<":
+                return value -> isComparable(value, literal) && comparable.compareTo(normalize(value)) > 0;
+            case "<=":
+                return value -> isComparable(value, literal) && comparable.compareTo(normalize(value)) >= 0;
+            case ">":
+                return value -> isComparable(value, literal) && comparable.compareTo(normalize(value)) < 0;
+            case ">=":
+                return value -> isComparable(value, literal) && comparable.compareTo(normalize(value)) <= 0;
+            default:
+                throw new IllegalArgumentException("Neznámy operátor: " + operator);
+        }
+    }
+
+    // Missing values and values of another type never satisfy an ordering comparison.
+    private static boolean isComparable(Object value, Object literal) {
+        Object normalized = normalize(value);
+        return normalized != null && normalized.getClass() == literal.getClass();
+    }
+
+    /**
+     * Brings a decoded value to the representation used for literals: {@link Utf8}, {@link Long},
+     * {@link Double} or {@link Boolean}.
+     */
+    private static Object normalize(Object value) {
+        if (value instanceof Utf8 || value == null || value instanceof Boolean || value instanceof Long || value instanceof Double) {
+            return value;
+        }
+        if (value instanceof Integer) {
+            return ((Integer) value).longValue();
+        }
+        if (value instanceof Float) {
+            return ((Float) value).doubleValue();
+        }
+        if (value instanceof CharSequence || value instanceof GenericEnumSymbol) {
+            return new Utf8(value.toString());
+        }
+        return value;
+    }
+
+    private Object coerce(FieldAccessor accessor, Token token) {
+        if (token.kind == Kind.WORD && token.text.equals("null")) {
+            return null;
+        }
+        Schema leaf = accessor.getLeafSchemas().isEmpty() ? null : accessor.getLeafSchemas().get(0);
+        if (leaf == null) {
+            throw new IllegalArgumentException("Pole " + accessor.getPath() + " môže byť iba null");
+        }
+        LogicalType logicalType = leaf.getLogicalType();
+        switch (leaf.getType()) {
+            case STRING:
+            case ENUM:
+                if (token.kind != Kind.STRING) {
+                    throw new IllegalArgumentException("Pole " + accessor.getPath() + " očakáva textový literál, nájdené " + token.text);
+                }
+                return new Utf8(token.text);
+            case INT:
+            case LONG:
+                if (token.kind == Kind.STRING && logicalType != null) {
+                    return parseTemporal(token.text, logicalType.getName());
+                }
+                Number number = parseNumber(accessor, token);
+                // truncating would turn count == 1.5 into count == 1
+                if (number instanceof Double && (long) number.doubleValue() != number.doubleValue()) {
+                    throw new IllegalArgumentException("Pole " + accessor.getPath() + " očakáva celé číslo, nájdené " + token.text);
+                }
+                return number.longValue();
+            case FLOAT:
+            case DOUBLE:
+                return parseNumber(accessor, token).doubleValue();
+            case BOOLEAN:
+                if (token.text.equals("true") || token.text.equals("false")) {
+                    return Boolean.valueOf(token.text);
+                }
+                throw new IllegalArgumentException("Pole " + accessor.getPath() + " očakáva true/false, nájdené " + token.text);
+            default:
+                throw new IllegalArgumentException("Typ " + leaf.getType() + " poľa " + accessor.getPath() + " nie je vo filtri podporovaný");
+        }
+    }
+
+    private static Number parseNumber(FieldAccessor accessor, Token token) {
+        try {
+            if (token.text.contains(".") || token.text.contains("e") || token.text.contains("E")) {
+                return Double.parseDouble(token.text);
+            }
+            return Long.parseLong(token.text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Pole " + accessor.getPath() + " očakáva číslo, nájdené " + token.text, e);
+        }
+    }
+
+    /**
+     * Converts a date string to the numeric value of the logical type: epoch millis for timestamps,
+     * epoch days for dates and millis of day for times. Timestamps accept ISO-8601 instants, ISO local
+     * date-times and dates (UTC) and the {@link Constants#DATE_FORMAT} used by {@code fromTimestamp}.
+     */
+    static long parseTemporal(String text, String logicalType) {
+        try {
+            switch (logicalType) {
+                case "date":
+                    return LocalDate.parse(text).toEpochDay();
+                case "time-millis":
+                    return LocalTime.parse(text).toNanoOfDay() / 1_000_000;
+                case "time-micros":
+                    return LocalTime.parse(text).toNanoOfDay() / 1_000;
+                case "timestamp-micros":
+                    return parseInstant(text).toEpochMilli() * 1_000;
+                default:
+                    return parseInstant(text).toEpochMilli();
+            }
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Nepodarilo sa parsovať dátum '" + text + "' pre typ " + logicalType, e);
+        }
+    }
+
+    private static Instant parseInstant(String text) {
+        try {
+            return new SimpleDateFormat(Constants.DATE_FORMAT).parse(text).toInstant();
+        } catch (ParseException ignored) {
+            // not the fromTimestamp format, try ISO-8601 below
+        }
+        if (text.endsWith("Z") || text.matches(".*[+-]\\d{2}:\\d{2}$")) {
+            return OffsetDateTime.parse(text).toInstant();
+        }
+        if (text.contains("T")) {
+            return LocalDateTime.parse(text).toInstant(ZoneOffset.UTC);
+        }
+        return LocalDate.parse(text).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    private Token peek() {
+        return position < tokens.size() ? tokens.get(position) : new Token(Kind.END, "<koniec>");
+    }
+
+    private Token next() {
+        Token token = peek();
+        if (token.kind == Kind.END) {
+            throw new IllegalArgumentException("Neočakávaný koniec filtra");
+        }
+        position++;
+        return token;
+    }
+
+    private boolean accept(String symbol) {
+        Token token = peek();
+        if (token.kind == Kind.SYMBOL && token.text.equals(symbol)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean acceptKeyword(String... keywords) {
+        Token token = peek();
+        if (token.kind == Kind.STRING || token.kind == Kind.END) {
+            return false;
+        }
+        for (String keyword : keywords) {
+            if (token.text.equalsIgnoreCase(keyword)) {
+                position++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void expect(String symbol) {
+        if (!accept(symbol)) {
+            throw new IllegalArgumentException("Očakávané '" + symbol + "', nájdené '" + peek().text + "'");
+        }
+    }
+
+    private enum Kind { WORD, STRING, OPERATOR, SYMBOL, END }
+
+    private static final class Token {
+        private final Kind kind;
+        private final String text;
+
+        private Token(Kind kind, String text) {
+            this.kind = kind;
+            this.text = text;
+        }
+    }
+
+    private static List<Token> tokenize(String expression) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < expression.length()) {
+            char c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '"' || c == '\'') {
+                StringBuilder text = new StringBuilder();
+                int j = i + 1;
+                while (j < expression.length() && expression.charAt(j) != c) {
+                    if (expression.charAt(j) == '\\' && j + 1 < expression.length()) {
+                        j++;
+                    }
+                    text.append(expression.charAt(j++));
+                }
+                if (j >= expression.length()) {
+                    throw new IllegalArgumentException("Neukončený reťazec vo filtri: " + expression);
+                }
+                tokens.add(new Token(Kind.STRING, text.toString()));
+                i = j + 1;
+            } else if (expression.startsWith("&&", i) || expression.startsWith("||", i)) {
+                tokens.add(new Token(Kind.SYMBOL, expression.substring(i, i + 2)));
+                i += 2;
+            } else if (expression.startsWith("==", i) || expression.startsWith("!=", i)
+                    || expression.startsWith("<=", i) || expression.startsWith(">=", i)) {
+                tokens.add(new Token(Kind.OPERATOR, expression.substring(i, i + 2)));
+                i += 2;
+            } else if (c == '<' || c == '>') {
+                tokens.add(new Token(Kind.OPERATOR, String.valueOf(c)));
+                i++;
+            } else if (c == '(' || c == ')' || c == ',' || c == '!') {
+                tokens.add(new Token(Kind.SYMBOL, String.valueOf(c)));
+                i++;
+            } else {
+                int j = i;
+                while (j < expression.length() && (Character.isLetterOrDigit(expression.charAt(j))
+                        || "._-+".indexOf(expression.charAt(j)) >= 0)) {
+                    j++;
+                }
+                if (j == i) {
+                    throw new IllegalArgumentException("Neplatný znak '" + c + "' vo filtri: " + expression);
+                }
+                tokens.add(new Token(Kind.WORD, expression.substring(i, j)));
+                i = j;
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,22 @@
+package filter;
+
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Compiled filter evaluated directly on a decoded Avro record.
+ */
+public interface FilterExpression {
+    boolean matches(GenericRecord record);
+
+    static FilterExpression and(FilterExpression left, FilterExpression right) {
+        return record -> left.matches(record) && right.matches(record);
+    }
+
+    static FilterExpression or(FilterExpression left, FilterExpression right) {
+        return record -> left.matches(record) || right.matches(record);
+    }
+
+    static FilterExpression not(FilterExpression expression) {
+        return record -> !expression.matches(record);
+    }
+}
@@ -0,0 +1,106 @@
+package filter;
+
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.util.Utf8;
+import source.RawMessage;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Filter on the Pulsar message metadata, evaluated before the payload is decoded, for example
+ * <pre>
+ * key == "4866429967442" &amp;&amp; properties.source in ("CRM", "WEB") &amp;&amp; eventTime &gt;= "2025-08-21T12:00:00Z"
+ * </pre>
+ * The syntax is that of {@link FilterCompiler} over the fields {@code key}, {@code publishTime},
+ * {@code eventTime} (both timestamps, so they accept date strings) and {@code properties.<name>}. A missing key,
+ * property or event time is {@code null}. Bounds on {@code publishTime} are also handed to the reader as the
+ * scan range, so the broker does not send what lies outside.
+ */
+public final class MetadataFilter {
+    private static final Pattern PROPERTY = Pattern.compile("(?<![\\w.])properties\\.([A-Za-z_][A-Za-z0-9_]*)");
+
+    private final Schema schema;
+    private final Schema propertiesSchema;
+    private final String[] propertyNames;
+    private final FilterCompiler.CompiledFilter compiled;
+
+    private MetadataFilter(String expression) {
+        Set<String> names = new LinkedHashSet<>();
+        Matcher matcher = PROPERTY.matcher(expression);
+        while (matcher.find()) {
+            names.add(matcher.group(1));
+        }
+        SchemaBuilder.FieldAssembler<Schema> properties = SchemaBuilder.record("Properties").fields();
+        for (String name : names) {
+            properties = properties.optionalString(name);
+        }
+        Schema timestamp = LogicalTypes.timestampMillis().addToSchema(Schema.create(Schema.Type.LONG));
+        this.propertiesSchema = properties.endRecord();
+        this.schema = SchemaBuilder.record("MessageMetadata").fields()
+                .optionalString("key")
+                .name("publishTime").type(timestamp).noDefault()
+                .name("eventTime").type(Schema.createUnion(Schema.create(Schema.Type.NULL), timestamp)).withDefault(null)
+                .name("properties").type(propertiesSchema).noDefault()
+                .endRecord();
+        this.propertyNames = names.toArray(new String[0]);
+        this.compiled = FilterCompiler.compile(expression, schema);
+    }
+
+    /**
+     * Compiles {@code metadataFilter}; property names must be valid Avro field names.
+     */
+    public static MetadataFilter compile(String expression) {
+        return new MetadataFilter(expression);
+    }
+
+    public boolean matches(RawMessage message) {
+        GenericData.Record properties = new GenericData.Record(propertiesSchema);
+        if (propertyNames.length > 0) {
+            Map<String, String> values = message.getProperties();
+            for (int i = 0; i < propertyNames.length; i++) {
+                String value = values.get(propertyNames[i]);
+                properties.put(i, value == null ? null : new Utf8(value));
+            }
+        }
+        GenericData.Record metadata = new GenericData.Record(schema);
+        String key = message.getKey();
+        metadata.put(0, key == null ? null : new Utf8(key));
+        metadata.put(1, message.getPublishTime());
+        metadata.put(2, message.getEventTime() == 0 ? null : message.getEventTime());
+        metadata.put(3, properties);
+        return compiled.getExpression().matches(metadata);
+    }
+
+    /**
+     * The scan start moved up to the lower {@code publishTime} bound of the filter.
+     */
+    public Long narrowFrom(Long fromMillis) {
+        long[] bounds = compiled.getBounds("publishTime");
+        if (bounds == null || bounds[0] == Long.MIN_VALUE) {
+            return fromMillis;
+        }
+        return fromMillis == null ? bounds[0] : Math.max(fromMillis, bounds[0]);
+    }
+
+    /**
+     * The scan end moved down to the upper {@code publishTime} bound of the filter.
+     */
+    public Long narrowTo(Long toMillis) {
+        long[] bounds = compiled.getBounds("publishTime");
+        if (bounds == null || bounds[1] == Long.MAX_VALUE) {
+            return toMillis;
+        }
+        return toMillis == null ? bounds[1] : Math.min(toMillis, bounds[1]);
+    }
+
+    public String getSource() {
+        return compiled.getSource();
+    }
+}
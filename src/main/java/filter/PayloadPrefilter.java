@@ -0,0 +1,159 @@
+package filter;
+
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+
+import java.util.*;
+
+/**
+ * Cheap check on the raw Avro payload before it is decoded.
+ * <p>
+ * Avro stores strings as plain UTF-8, so a message whose bytes contain none of the literals that every match
+ * must contain can be skipped without decoding. The literals come either from the regex (see
+ * {@link #forRegex(String, Schema)}) or from string equality in a field filter.
+ */
+public final class PayloadPrefilter {
+    // digits plus what numbers and ISO dates/timestamps are rendered with
+    private static final String NUMERIC_CHARS = "0123456789+-.ETZ";
+    private static final String BASE64_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/=";
+    private static final String STRUCTURAL_CHARS = "\"\\{}[]:,";
+    private static final List<String> RENDERED_KEYWORDS = List.of("null", "true", "false", "NaN", "-Infinity");
+
+    private final Set<String> literals;
+    private final AhoCorasick automaton;
+
+    private PayloadPrefilter(Set<String> literals) {
+        this.literals = Collections.unmodifiableSet(literals);
+        this.automaton = new AhoCorasick(literals);
+    }
+
+    /**
+     * Prefilter requiring at least one of the literals, or {@code null} when the set is empty or unusable.
+     */
+    public static PayloadPrefilter forLiterals(Set<String> literals) {
+        if (literals == null || literals.isEmpty() || literals.contains("")) {
+            return null;
+        }
+        return new PayloadPrefilter(new LinkedHashSet<>(literals));
+    }
+
+    /**
+     * Derives a prefilter from a regex matched against the JSON rendering of the record.
+     * <p>
+     * Returns {@code null} when some match of the regex does not need a literal that is guaranteed to be
+     * present in the raw bytes: alternatives without a mandatory literal run, inline flags, or literals that
+     * can also come from the rendering itself (field names, enum symbols, numbers, dates, {@code null},
+     * JSON syntax, or base64 when the schema has binary fields).
+     */
+    public static PayloadPrefilter forRegex(String regex, Schema schema) {
+        Set<String> literals = RegexLiterals.requiredLiterals(regex);
+        return literals == null ? null : forRenderedLiterals(literals, schema);
+    }
+
+    /**
+     * Prefilter for a record whose JSON rendering must contain one of the literals, or {@code null} when some
+     * literal could also come from the rendering itself (see {@link #forRegex(String, Schema)}).
+     */
+    public static PayloadPrefilter forRenderedLiterals(Set<String> literals, Schema schema) {
+        Set<String> renderedNames = new HashSet<>();
+        boolean binary = collectRendered(schema, renderedNames);
+        for (String literal : literals) {
+            if (!isSafeRegexLiteral(literal, renderedNames) || binary && isBase64(literal)) {
+                return null;
+            }
+        }
+        return forLiterals(literals);
+    }
+
+    public boolean mightMatch(byte[] payload) {
+        return automaton.containsAny(payload);
+    }
+
+    public Set<String> getLiterals() {
+        return literals;
+    }
+
+    private static boolean isSafeRegexLiteral(String literal, Set<String> renderedNames) {
+        if (literal.isEmpty() || literal.charAt(0) == ' ') {
+            return false;
+        }
+        boolean numeric = true;
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            // only printable ASCII is guaranteed to be rendered unescaped
+            if (c < 0x20 || c > 0x7E || STRUCTURAL_CHARS.indexOf(c) >= 0) {
+                return false;
+            }
+            if (NUMERIC_CHARS.indexOf(c) < 0) {
+                numeric = false;
+            }
+        }
+        if (numeric) {
+            return false;
+        }
+        for (String keyword : RENDERED_KEYWORDS) {
+            if (keyword.contains(literal)) {
+                return false;
+            }
+        }
+        for (String name : renderedNames) {
+            if (name.contains(literal)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isBase64(String literal) {
+        for (int i = 0; i < literal.length(); i++) {
+            if (BASE64_CHARS.indexOf(literal.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collects field names and enum symbols into {@code names}; returns whether the schema has bytes or fixed
+     * fields rendered as base64.
+     */
+    private static boolean collectRendered(Schema schema, Set<String> names) {
+        boolean binary = false;
+        Set<Schema> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Schema> pending = new ArrayDeque<>();
+        pending.add(schema);
+        while (!pending.isEmpty()) {
+            Schema current = pending.poll();
+            if (!visited.add(current)) {
+                continue;
+            }
+            switch (current.getType()) {
+                case RECORD:
+                    for (Schema.Field field : current.getFields()) {
+                        names.add(field.name());
+                        pending.add(field.schema());
+                    }
+                    break;
+                case ENUM:
+                    names.addAll(current.getEnumSymbols());
+                    break;
+                case UNION:
+                    pending.addAll(current.getTypes());
+                    break;
+                case ARRAY:
+                    pending.add(current.getElementType());
+                    break;
+                case MAP:
+                    pending.add(current.getValueType());
+                    break;
+                case BYTES:
+                case FIXED:
+                    binary |= !(current.getLogicalType() instanceof LogicalTypes.Decimal);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return binary;
+    }
+}
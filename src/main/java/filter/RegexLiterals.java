@@ -0,0 +1,219 @@
+package filter;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Conservative analysis of a {@link java.util.regex.Pattern} for literal substrings every match must contain.
+ * <p>
+ * The regex is split into its top-level alternatives; for each alternative the longest run of mandatory
+ * literal characters is taken. Groups, character classes and escapes other than escaped punctuation end a
+ * run; an optional quantifier removes the preceding character from it. Anything the analysis does not
+ * understand makes it give up rather than guess.
+ */
+final class RegexLiterals {
+    private final String regex;
+    private final StringBuilder run = new StringBuilder();
+    private String best = "";
+
+    private RegexLiterals(String regex) {
+        this.regex = regex;
+    }
+
+    /**
+     * Returns one literal per top-level alternative, or {@code null} when no safe set can be derived.
+     */
+    static Set<String> requiredLiterals(String regex) {
+        if (regex == null || regex.isEmpty() || regex.contains("(?") || regex.contains("\\Q")) {
+            // inline flags such as (?i) change what the literal means
+            return null;
+        }
+        return new RegexLiterals(regex).analyze();
+    }
+
+    private Set<String> analyze() {
+        Set<String> literals = new LinkedHashSet<>();
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            switch (c) {
+                case '|':
+                    endRun();
+                    if (best.isEmpty()) {
+                        return null;
+                    }
+                    literals.add(best);
+                    best = "";
+                    i++;
+                    break;
+                case '(':
+                    endRun();
+                    i = skipGroup(i);
+                    if (i < 0) {
+                        return null;
+                    }
+                    i = skipQuantifier(i);
+                    break;
+                case '[':
+                    endRun();
+                    i = skipQuantifier(skipClass(i));
+                    break;
+                case '.':
+                case '^':
+                case '$':
+                    endRun();
+                    i = skipQuantifier(i + 1);
+                    break;
+                case '\\':
+                    if (i + 1 >= regex.length()) {
+                        return null;
+                    }
+                    char escaped = regex.charAt(i + 1);
+                    if (Character.isLetterOrDigit(escaped)) {
+                        // \d, \w, \b, \x41, \p{L} ...
+                        endRun();
+                        i = skipEscape(i);
+                        if (i < 0) {
+                            return null;
+                        }
+                        i = skipQuantifier(i);
+                    } else {
+                        i = literal(escaped, i + 2);
+                    }
+                    break;
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                case ')':
+                    // a quantifier without an atom or an unbalanced group: give up
+                    return null;
+                default:
+                    i = literal(c, i + 1);
+            }
+        }
+        endRun();
+        if (best.isEmpty()) {
+            return null;
+        }
+        literals.add(best);
+        return literals;
+    }
+
+    /**
+     * Handles a literal character followed by an optional quantifier and returns the index after both.
+     */
+    private int literal(char c, int next) {
+        char quantifier = next < regex.length() ? regex.charAt(next) : 0;
+        if (quantifier == '?' || quantifier == '*' || regex.startsWith("{0", next)) {
+            endRun();
+        } else if (quantifier == '+' || quantifier == '{') {
+            run.append(c);
+            endRun();
+        } else {
+            run.append(c);
+        }
+        return skipQuantifier(next);
+    }
+
+    private void endRun() {
+        if (run.length() > best.length()) {
+            best = run.toString();
+        }
+        run.setLength(0);
+    }
+
+    /**
+     * Returns the index after an escape with a letter or digit, including its argument ({@code \x41},
+     * {@code \u00e9}, {@code \p{Lu}}, ...), or -1 for back references, whose extent depends on the groups.
+     */
+    private int skipEscape(int i) {
+        switch (regex.charAt(i + 1)) {
+            case 'x':
+                return regex.startsWith("{", i + 2) ? closing(i + 2, '}') : Math.min(regex.length(), i + 4);
+            case 'u':
+                return Math.min(regex.length(), i + 6);
+            case '0':
+                // up to three octal digits; skipping one too many only shortens the run
+                int j = i + 2;
+                while (j < Math.min(regex.length(), i + 5) && regex.charAt(j) >= '0' && regex.charAt(j) <= '7') {
+                    j++;
+                }
+                return j;
+            case 'c':
+                return Math.min(regex.length(), i + 3);
+            case 'p':
+            case 'P':
+            case 'N':
+                return regex.startsWith("{", i + 2) ? closing(i + 2, '}') : Math.min(regex.length(), i + 3);
+            case 'k':
+                return closing(i + 2, '>');
+            default:
+                return Character.isDigit(regex.charAt(i + 1)) ? -1 : i + 2;
+        }
+    }
+
+    private int closing(int from, char c) {
+        int end = regex.indexOf(c, from);
+        return end < 0 ? -1 : end + 1;
+    }
+
+    private int skipGroup(int i) {
+        int depth = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                i = skipClass(i);
+                continue;
+            }
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i + 1;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    private int skipClass(int i) {
+        int j = i + 1;
+        if (j < regex.length() && regex.charAt(j) == '^') {
+            j++;
+        }
+        if (j < regex.length() && regex.charAt(j) == ']') {
+            j++;
+        }
+        while (j < regex.length() && regex.charAt(j) != ']') {
+            if (regex.charAt(j) == '\\') {
+                j++;
+            }
+            j++;
+        }
+        return j + 1;
+    }
+
+    private int skipQuantifier(int i) {
+        if (i >= regex.length()) {
+            return i;
+        }
+        char c = regex.charAt(i);
+        if (c == '*' || c == '+' || c == '?') {
+            i++;
+        } else if (c == '{') {
+            int end = regex.indexOf('}', i);
+            i = end < 0 ? regex.length() : end + 1;
+        } else {
+            return i;
+        }
+        if (i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+')) {
+            // lazy or possessive modifier
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,252 @@
+package metrics;
+
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.MessageIdAdv;
+import org.apache.pulsar.client.api.TopicMessageId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide counters and latency histograms of the consume path.
+ * <p>
+ * The hot path only touches {@link LongAdder}s and {@link LatencyHistogram}s; rates and lag are derived
+ * when the metrics are read, by JMX or by {@link MetricsReporter}.
+ */
+public final class ConsumerMetrics implements ConsumerMetricsMXBean {
+    private static final Logger log = LoggerFactory.getLogger(ConsumerMetrics.class);
+    private static final ConsumerMetrics INSTANCE = new ConsumerMetrics();
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final long startNanos = System.nanoTime();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder receivedBytes = new LongAdder();
+    private final LongAdder metadataSkipped = new LongAdder();
+    private final LongAdder prefilterSkipped = new LongAdder();
+    private final LongAdder decoded = new LongAdder();
+    private final LongAdder matched = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+    private final LatencyHistogram decodeLatency = histogram("decode");
+    private final LatencyHistogram filterLatency = histogram("filter");
+    private final LatencyHistogram regexLatency = histogram("regex");
+    private final LatencyHistogram writeLatency = histogram("write");
+    private final Map<String, PartitionPosition> partitions = new ConcurrentHashMap<>();
+
+    private ConsumerMetrics() {
+    }
+
+    public static ConsumerMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers the MXBean; safe to call more than once.
+     */
+    public void registerMBean() {
+        try {
+            ObjectName name = new ObjectName("pulsar.consumer:type=ConsumerMetrics");
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ JMX registrácia metrík zlyhala", e);
+        }
+    }
+
+    public void received(Message<?> message) {
+        received.increment();
+        receivedBytes.add(message.size());
+        PartitionPosition position = partitions.computeIfAbsent(message.getTopicName(), k -> new PartitionPosition());
+        position.current = message.getMessageId();
+        position.publishTime = message.getPublishTime();
+    }
+
+    /**
+     * Message replayed from a local source instead of the broker.
+     */
+    public void received(int bytes) {
+        received.increment();
+        receivedBytes.add(bytes);
+    }
+
+    public void metadataSkipped() {
+        metadataSkipped.increment();
+    }
+
+    public void prefilterSkipped() {
+        prefilterSkipped.increment();
+    }
+
+    public void decoded(long nanos) {
+        decoded.increment();
+        decodeLatency.record(nanos);
+    }
+
+    public void filtered(long nanos) {
+        filterLatency.record(nanos);
+    }
+
+    public void regexMatched(long nanos) {
+        regexLatency.record(nanos);
+    }
+
+    public void matched() {
+        matched.increment();
+    }
+
+    public void duplicate() {
+        duplicates.increment();
+    }
+
+    public void written(long nanos) {
+        written.increment();
+        writeLatency.record(nanos);
+    }
+
+    /**
+     * Records the last message ids of the topic, as returned by {@code getLastMessageIds()}.
+     */
+    public void lastMessageIds(List<TopicMessageId> lastMessageIds) {
+        for (TopicMessageId lastMessageId : lastMessageIds) {
+            partitions.computeIfAbsent(lastMessageId.getOwnerTopic(), k -> new PartitionPosition()).last = lastMessageId;
+        }
+    }
+
+    @Override
+    public long getReceived() {
+        return received.sum();
+    }
+
+    @Override
+    public long getReceivedBytes() {
+        return receivedBytes.sum();
+    }
+
+    @Override
+    public long getMetadataSkipped() {
+        return metadataSkipped.sum();
+    }
+
+    @Override
+    public long getPrefilterSkipped() {
+        return prefilterSkipped.sum();
+    }
+
+    @Override
+    public long getDecoded() {
+        return decoded.sum();
+    }
+
+    @Override
+    public long getMatched() {
+        return matched.sum();
+    }
+
+    @Override
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    @Override
+    public long getWritten() {
+        return written.sum();
+    }
+
+    @Override
+    public double getMessagesPerSecond() {
+        return getReceived() / elapsedSeconds();
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return getReceivedBytes() / elapsedSeconds();
+    }
+
+    @Override
+    public Map<String, Long> getLatencyMicros() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        latencies.forEach((stage, histogram) -> {
+            LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+            for (double quantile : QUANTILES) {
+                result.put(stage + ".p" + quantileLabel(quantile), snapshot.getValueAtQuantile(quantile) / 1000);
+            }
+            result.put(stage + ".max", snapshot.getMax() / 1000);
+        });
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getPartitionLagSeconds() {
+        long now = System.currentTimeMillis();
+        Map<String, Long> result = new TreeMap<>();
+        partitions.forEach((partition, position) -> {
+            if (position.publishTime > 0) {
+                result.put(partition, Math.max(0, now - position.publishTime) / 1000);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getPartitionBacklogEntries() {
+        Map<String, Long> result = new TreeMap<>();
+        partitions.forEach((partition, position) -> result.put(partition, position.backlogEntries()));
+        return result;
+    }
+
+    Map<String, LatencyHistogram> getLatencies() {
+        return latencies;
+    }
+
+    static double[] quantiles() {
+        return QUANTILES.clone();
+    }
+
+    static String quantileLabel(double quantile) {
+        String digits = Double.toString(quantile).substring(2);
+        return digits.length() == 1 ? digits + "0" : digits;
+    }
+
+    double elapsedSeconds() {
+        return Math.max(1e-3, (System.nanoTime() - startNanos) / 1e9);
+    }
+
+    private LatencyHistogram histogram(String stage) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        latencies.put(stage, histogram);
+        return histogram;
+    }
+
+    private static final class PartitionPosition {
+        private volatile MessageId current;
+        private volatile long publishTime;
+        private volatile MessageId last;
+
+        private long backlogEntries() {
+            MessageId currentId = current;
+            MessageId lastId = last;
+            if (lastId == null || currentId == null) {
+                return -1;
+            }
+            if (currentId.compareTo(lastId) >= 0) {
+                return 0;
+            }
+            if (currentId instanceof MessageIdAdv && lastId instanceof MessageIdAdv
+                    && ((MessageIdAdv) currentId).getLedgerId() == ((MessageIdAdv) lastId).getLedgerId()) {
+                return ((MessageIdAdv) lastId).getEntryId() - ((MessageIdAdv) currentId).getEntryId();
+            }
+            return -1;
+        }
+    }
+}
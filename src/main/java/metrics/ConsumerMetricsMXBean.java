@@ -0,0 +1,43 @@
+package metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link ConsumerMetrics}, registered as {@code pulsar.consumer:type=ConsumerMetrics}.
+ */
+public interface ConsumerMetricsMXBean {
+    long getReceived();
+
+    long getReceivedBytes();
+
+    long getMetadataSkipped();
+
+    long getPrefilterSkipped();
+
+    long getDecoded();
+
+    long getMatched();
+
+    long getDuplicates();
+
+    long getWritten();
+
+    double getMessagesPerSecond();
+
+    double getBytesPerSecond();
+
+    /**
+     * p50/p90/p99/p999/max per stage ({@code decode}, {@code filter}, {@code regex}, {@code write}), in microseconds.
+     */
+    Map<String, Long> getLatencyMicros();
+
+    /**
+     * Seconds between now and the publish time of the last message received from each partition.
+     */
+    Map<String, Long> getPartitionLagSeconds();
+
+    /**
+     * Entries left until the last message id of each partition, -1 when it cannot be determined.
+     */
+    Map<String, Long> getPartitionBacklogEntries();
+}
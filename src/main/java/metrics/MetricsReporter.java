@@ -0,0 +1,167 @@
+package metrics;
+
+import org.apache.pulsar.client.api.TopicMessageId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically refreshes partition lag, writes {@link ConsumerMetrics} to a file in the Prometheus text
+ * exposition format (replaced atomically, suitable for the node_exporter textfile collector) and logs a
+ * one-line summary.
+ */
+public class MetricsReporter implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(MetricsReporter.class);
+    private static final String PREFIX = "pulsar_consumer_";
+
+    private final ConsumerMetrics metrics;
+    private final Path file;
+    private final long intervalSeconds;
+    private final List<Callable<List<TopicMessageId>>> lastMessageIdSources = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService scheduler;
+    private long previousReceived;
+    private long previousBytes;
+    private long previousNanos = System.nanoTime();
+
+    public MetricsReporter(ConsumerMetrics metrics, Path file, long intervalSeconds) {
+        this.metrics = metrics;
+        this.file = file;
+        this.intervalSeconds = intervalSeconds;
+    }
+
+    /**
+     * Polled on every report to refresh the backlog, e.g. {@code consumer::getLastMessageIds}.
+     */
+    public void addLastMessageIdSource(Callable<List<TopicMessageId>> source) {
+        lastMessageIdSources.add(source);
+    }
+
+    public synchronized void start() {
+        metrics.registerMBean();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::report, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        log.info("📊 Metriky: JMX pulsar.consumer:type=ConsumerMetrics, súbor {} každých {} s.", file, intervalSeconds);
+    }
+
+    /**
+     * Stops the schedule and writes the final report.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        report();
+    }
+
+    private synchronized void report() {
+        for (Callable<List<TopicMessageId>> source : lastMessageIdSources) {
+            try {
+                metrics.lastMessageIds(source.call());
+            } catch (Exception e) {
+                log.debug("Last message ids are not available", e);
+            }
+        }
+        long now = System.nanoTime();
+        long received = metrics.getReceived();
+        long bytes = metrics.getReceivedBytes();
+        double seconds = Math.max(1e-3, (now - previousNanos) / 1e9);
+        double messagesPerSecond = (received - previousReceived) / seconds;
+        double bytesPerSecond = (bytes - previousBytes) / seconds;
+        previousReceived = received;
+        previousBytes = bytes;
+        previousNanos = now;
+
+        LatencyHistogram.Snapshot decode = metrics.getLatencies().get("decode").snapshot();
+        log.info("📊 prijaté {} ({} msg/s, {} KB/s), dekódované {}, zhodné {}, zapísané {}, decode p99 {} µs",
+                received, Math.round(messagesPerSecond), Math.round(bytesPerSecond / 1024),
+                metrics.getDecoded(), metrics.getMatched(), metrics.getWritten(),
+                decode.getValueAtQuantile(0.99) / 1000);
+        try {
+            write(render(messagesPerSecond, bytesPerSecond));
+        } catch (IOException e) {
+            log.warn("⚠️ Zápis metrík do {} zlyhal: {}", file, e.toString());
+        }
+    }
+
+    private String render(double messagesPerSecond, double bytesPerSecond) {
+        StringBuilder out = new StringBuilder();
+        counter(out, "received_total", "Messages received from the broker or the local cache.", metrics.getReceived());
+        counter(out, "received_bytes_total", "Payload bytes received.", metrics.getReceivedBytes());
+        counter(out, "metadata_skipped_total", "Messages skipped by the metadata filter before decoding.", metrics.getMetadataSkipped());
+        counter(out, "prefilter_skipped_total", "Messages skipped by the raw-byte prefilter.", metrics.getPrefilterSkipped());
+        counter(out, "decoded_total", "Messages decoded from Avro.", metrics.getDecoded());
+        counter(out, "matched_total", "Messages that passed all filters.", metrics.getMatched());
+        counter(out, "duplicates_total", "Messages dropped because their event id was seen before.", metrics.getDuplicates());
+        counter(out, "written_total", "Messages written to the output.", metrics.getWritten());
+        gauge(out, "messages_per_second", "Receive rate over the last report interval.", messagesPerSecond);
+        gauge(out, "bytes_per_second", "Receive rate in bytes over the last report interval.", bytesPerSecond);
+
+        out.append("# HELP ").append(PREFIX).append("stage_latency_seconds Latency of the decode, filter, regex and write stages.\n");
+        out.append("# TYPE ").append(PREFIX).append("stage_latency_seconds summary\n");
+        for (Map.Entry<String, LatencyHistogram> entry : metrics.getLatencies().entrySet()) {
+            LatencyHistogram.Snapshot snapshot = entry.getValue().snapshot();
+            String stage = "stage=\"" + entry.getKey() + "\"";
+            for (double quantile : ConsumerMetrics.quantiles()) {
+                out.append(PREFIX).append("stage_latency_seconds{").append(stage).append(",quantile=\"").append(quantile)
+                        .append("\"} ").append(seconds(snapshot.getValueAtQuantile(quantile))).append('\n');
+            }
+            out.append(PREFIX).append("stage_latency_seconds_sum{").append(stage).append("} ").append(seconds(snapshot.getSum())).append('\n');
+            out.append(PREFIX).append("stage_latency_seconds_count{").append(stage).append("} ").append(snapshot.getCount()).append('\n');
+        }
+
+        partitionGauge(out, "partition_lag_seconds", "Age of the last message received from the partition.", metrics.getPartitionLagSeconds());
+        partitionGauge(out, "partition_backlog_entries", "Entries left until the last message of the partition, -1 if unknown.", metrics.getPartitionBacklogEntries());
+        return out.toString();
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(PREFIX).append(name).append(" counter\n");
+        out.append(PREFIX).append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, double value) {
+        out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(PREFIX).append(name).append(" gauge\n");
+        out.append(PREFIX).append(name).append(' ').append(String.format(Locale.ROOT, "%.3f", value)).append('\n');
+    }
+
+    private static void partitionGauge(StringBuilder out, String name, String help, Map<String, Long> values) {
+        out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(PREFIX).append(name).append(" gauge\n");
+        values.forEach((partition, value) -> out.append(PREFIX).append(name).append("{partition=\"")
+                .append(partition.replace("\\", "\\\\").replace("\"", "\\\"")).append("\"} ").append(value).append('\n'));
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    private void write(String content) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = directory.resolve(file.getFileName() + ".tmp");
+        Files.write(temp, content.getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
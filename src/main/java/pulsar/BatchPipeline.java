@@ -0,0 +1,214 @@
+package pulsar;
+
+import org.apache.pulsar.client.api.BatchReceivePolicy;
+import org.apache.pulsar.client.api.PulsarClientException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import source.MessageSource;
+import source.RawMessage;
+import utils.MessageWriter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Pipelined consume mode: batches from {@link MessageSource#receiveBatch} are decoded and filtered by a fixed
+ * pool of workers while the next batch is already being fetched.
+ * <p>
+ * Batches are written strictly in the order they were received, so the order within every partition is
+ * the same as in the sequential mode. Once a batch is written it is acknowledged as a whole; a Pulsar source
+ * acknowledges the last message of each partition cumulatively. A message that cannot be decoded stops the
+ * pipeline as it stops the sequential loop: the messages received before it are written and acknowledged, it and
+ * everything after it are not.
+ */
+public class BatchPipeline {
+    private static final Logger log = LoggerFactory.getLogger(BatchPipeline.class);
+
+    private final MessageProcessor processor;
+    private final MessageWriter writer;
+    private final int workerThreads;
+    private final int maxInFlightBatches;
+    private final int batchMaxMessages;
+    private final long idleTimeoutMs;
+
+    public BatchPipeline(MessageProcessor processor, MessageWriter writer, int workerThreads, int maxInFlightBatches,
+                         int batchMaxMessages, long idleTimeoutMs) {
+        this.processor = processor;
+        this.writer = writer;
+        this.workerThreads = Math.max(1, workerThreads);
+        this.maxInFlightBatches = Math.max(1, maxInFlightBatches);
+        this.batchMaxMessages = Math.max(1, batchMaxMessages);
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    public static BatchReceivePolicy batchReceivePolicy(Properties configProps) {
+        return BatchReceivePolicy.builder()
+                .maxNumMessages(Integer.parseInt(configProps.getProperty("batchMaxMessages", "500").trim()))
+                .maxNumBytes(Integer.parseInt(configProps.getProperty("batchMaxBytes", "10485760").trim()))
+                .timeout(Integer.parseInt(configProps.getProperty("batchTimeoutMs", "100").trim()), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    public static BatchPipeline fromConfig(Properties configProps, MessageProcessor processor, MessageWriter writer) {
+        int workerThreads = Integer.parseInt(configProps.getProperty("workerThreads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())).trim());
+        int maxInFlightBatches = Integer.parseInt(configProps.getProperty("maxInFlightBatches", "4").trim());
+        int batchMaxMessages = Integer.parseInt(configProps.getProperty("batchMaxMessages", "500").trim());
+        return new BatchPipeline(processor, writer, workerThreads, maxInFlightBatches, batchMaxMessages, 5000);
+    }
+
+    public void run(MessageSource source, boolean waitForNextMessageAfterAllRead, BooleanSupplier running) {
+        ExecutorService workers = Executors.newFixedThreadPool(workerThreads, r -> {
+            Thread thread = new Thread(r, "pulsar-decode-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Deque<PendingBatch> inFlight = new ArrayDeque<>();
+        long idleSince = System.currentTimeMillis();
+        try {
+            while (running.getAsBoolean()) {
+                List<RawMessage> messages = source.receiveBatch(batchMaxMessages, 100, TimeUnit.MILLISECONDS);
+                if (messages.isEmpty()) {
+                    if (!drain(source, inFlight, 0)) {
+                        break;
+                    }
+                    if (source.isFinished()) {
+                        log.info("📂 Zdroj správ je vyčerpaný – ukončujem čítanie.");
+                        break;
+                    }
+                    if (System.currentTimeMillis() - idleSince >= idleTimeoutMs) {
+                        log.info("⏱️ Timeout pri čakaní na správu.");
+                        if (!waitForNextMessageAfterAllRead) {
+                            log.info("🛑 Premenná waitForNextMessageAfterAllRead je false – ukončujem čítanie.");
+                            break;
+                        }
+                        idleSince = System.currentTimeMillis();
+                    }
+                    continue;
+                }
+                idleSince = System.currentTimeMillis();
+                inFlight.addLast(submit(workers, messages));
+                if (!drain(source, inFlight, maxInFlightBatches - 1)) {
+                    break;
+                }
+            }
+            drain(source, inFlight, 0);
+        } catch (PulsarClientException e) {
+            log.error("Pulsar client error", e);
+        } catch (IOException e) {
+            log.error("❌ Chyba pri zápise do súboru", e);
+        } catch (InterruptedException e) {
+            log.warn("Pipeline interrupted, shutting down.", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private PendingBatch submit(ExecutorService workers, List<RawMessage> batch) {
+        int chunkSize = Math.max(1, (batch.size() + workerThreads - 1) / workerThreads);
+        List<Future<Object[]>> chunks = new ArrayList<>();
+        for (int from = 0; from < batch.size(); from += chunkSize) {
+            List<RawMessage> chunk = batch.subList(from, Math.min(batch.size(), from + chunkSize));
+            chunks.add(workers.submit(() -> processChunk(chunk)));
+        }
+        return new PendingBatch(batch, chunks);
+    }
+
+    private Object[] processChunk(List<RawMessage> chunk) {
+        Object[] results = new Object[chunk.size()];
+        for (int i = 0; i < chunk.size(); i++) {
+            try {
+                results[i] = render(processor, writer, chunk.get(i));
+            } catch (Exception e) {
+                // the rest of the chunk is not needed, the pipeline stops at this message
+                results[i] = new Failure(e);
+                break;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Writes and acknowledges the oldest batches until at most {@code keep} are in flight. Returns {@code false}
+     * when the pipeline has to stop, because a message could not be decoded or the output has been closed; the
+     * batches still in flight are then dropped unwritten.
+     */
+    private boolean drain(MessageSource source, Deque<PendingBatch> inFlight, int keep)
+            throws InterruptedException, IOException {
+        while (inFlight.size() > keep) {
+            PendingBatch batch = inFlight.removeFirst();
+            int written = 0;
+            for (Future<Object[]> chunk : batch.chunks) {
+                Object[] results;
+                try {
+                    results = chunk.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Decode worker failed", e.getCause());
+                }
+                for (Object result : results) {
+                    if (result instanceof Failure) {
+                        log.error("Failed to parse message {}", batch.messages.get(written), ((Failure) result).cause);
+                    }
+                    if (result instanceof Failure || result != null && !write(processor, writer, result)) {
+                        if (written > 0) {
+                            source.acknowledge(batch.messages.subList(0, written));
+                        }
+                        inFlight.clear();
+                        return false;
+                    }
+                    written++;
+                }
+            }
+            source.acknowledge(batch.messages);
+        }
+        return true;
+    }
+
+    /**
+     * Renders a match on a worker thread for a later {@link #write}: text, or Avro binary when the output is
+     * an Avro container file. Returns {@code null} when the message does not match, or when it was aggregated
+     * and there is nothing to write.
+     */
+    static Object render(MessageProcessor processor, MessageWriter writer, RawMessage message) throws Exception {
+        if (!processor.acceptsMetadata(message)) {
+            return null;
+        }
+        if (processor.isAggregating()) {
+            processor.aggregate(message);
+            return null;
+        }
+        byte[] payload = message.getPayload();
+        return writer.getFormat() == MessageWriter.Format.AVRO ? processor.encode(payload) : processor.process(payload);
+    }
+
+    static boolean write(MessageProcessor processor, MessageWriter writer, Object result) throws IOException {
+        boolean written = result instanceof byte[]
+                ? writer.writeEncoded(processor.getOutputSchema(), (byte[]) result)
+                : writer.write((String) result);
+        if (written) {
+            processor.exported();
+        }
+        return written;
+    }
+
+    private static final class Failure {
+        private final Exception cause;
+
+        private Failure(Exception cause) {
+            this.cause = cause;
+        }
+    }
+
+    private static final class PendingBatch {
+        private final List<RawMessage> messages;
+        private final List<Future<Object[]>> chunks;
+
+        private PendingBatch(List<RawMessage> messages, List<Future<Object[]>> chunks) {
+            this.messages = messages;
+            this.chunks = chunks;
+        }
+    }
+}
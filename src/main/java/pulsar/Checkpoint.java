@@ -0,0 +1,86 @@
+package pulsar;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Last processed message id per topic partition, persisted between runs of the resumable mode.
+ * <p>
+ * Positions are updated in memory while partitions are read and written to disk by {@link #save()} only after
+ * the output has been closed, so a failed run is simply repeated from the previous checkpoint (at-least-once).
+ * The file is a properties file of partition topic to base64 encoded {@code MessageId.toByteArray()}, replaced
+ * atomically.
+ */
+public class Checkpoint {
+    private static final Logger log = LoggerFactory.getLogger(Checkpoint.class);
+
+    private final Path file;
+    private final Map<String, byte[]> positions = new ConcurrentHashMap<>();
+
+    private Checkpoint(Path file) {
+        this.file = file;
+    }
+
+    public static Checkpoint load(Path file) throws IOException {
+        Checkpoint checkpoint = new Checkpoint(file);
+        if (Files.isRegularFile(file)) {
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+            }
+            for (String partition : properties.stringPropertyNames()) {
+                checkpoint.positions.put(partition, Base64.getDecoder().decode(properties.getProperty(partition)));
+            }
+            log.info("📌 Načítaný checkpoint {} ({} partícií).", file, checkpoint.positions.size());
+        } else {
+            log.info("📌 Checkpoint {} neexistuje, začínam od fromTimestamp.", file);
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Serialized id of the last processed message of the partition, or {@code null} when there is none.
+     */
+    public byte[] get(String partition) {
+        return positions.get(partition);
+    }
+
+    public void update(String partition, byte[] messageId) {
+        positions.put(partition, messageId);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public void save() throws IOException {
+        Properties properties = new Properties();
+        // sorted so the file diffs cleanly between runs
+        Map<String, byte[]> sorted = new TreeMap<>(positions);
+        sorted.forEach((partition, messageId) -> properties.setProperty(partition, Base64.getEncoder().encodeToString(messageId)));
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, "Last processed message id per partition");
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        log.info("📌 Checkpoint uložený: {}", file);
+    }
+}
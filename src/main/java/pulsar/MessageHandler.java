@@ -0,0 +1,75 @@
+package pulsar;
+
+import cache.SegmentWriter;
+import snapshot.SnapshotStore;
+import source.RawMessage;
+import utils.MessageWriter;
+
+import java.io.IOException;
+
+/**
+ * What happens to each received message: decoded, filtered and written (or aggregated), dumped raw in dump mode, or
+ * kept as the latest version of its key in snapshot mode.
+ * Range scans call it from several partition threads at once.
+ */
+@FunctionalInterface
+public interface MessageHandler {
+    /**
+     * Returns {@code false} once the output has been closed.
+     */
+    boolean handle(RawMessage message) throws IOException;
+
+    static MessageHandler decoding(MessageProcessor processor, MessageWriter writer) {
+        if (processor.isAggregating()) {
+            return message -> {
+                if (processor.acceptsMetadata(message)) {
+                    processor.aggregate(message);
+                }
+                return true;
+            };
+        }
+        return message -> !processor.acceptsMetadata(message) || processor.process(message.getPayload(), writer);
+    }
+
+    /**
+     * Hands the messages passing the metadata filter to the queries of the router.
+     */
+    static MessageHandler routing(MessageProcessor processor, QueryRouter router) {
+        return message -> !processor.acceptsMetadata(message) || router.handle(message);
+    }
+
+    /**
+     * Records the messages passing the metadata filter as the latest version of their key; they are decoded and
+     * written only once the snapshot is complete, see {@link #snapshotted}.
+     */
+    static MessageHandler snapshotting(MessageProcessor processor, SnapshotStore snapshot) {
+        return message -> !processor.acceptsMetadata(message) || snapshot.put(message);
+    }
+
+    /**
+     * Decodes and writes, aggregates or routes the latest versions emitted by a snapshot. They passed the
+     * metadata filter when they were recorded and keep only payload and publish time, so it is not checked again.
+     */
+    static MessageHandler snapshotted(MessageProcessor processor, MessageWriter writer, QueryRouter router) {
+        if (router != null) {
+            return router::handle;
+        }
+        if (processor.isAggregating()) {
+            return message -> {
+                processor.aggregate(message);
+                return true;
+            };
+        }
+        return message -> processor.process(message.getPayload(), writer);
+    }
+
+    /**
+     * Stores the messages passing the metadata filter raw; the payload is not decoded.
+     */
+    static MessageHandler dumping(MessageProcessor processor, SegmentWriter dumpWriter) {
+        if (processor.getMetadataFilter() == null) {
+            return dumpWriter::append;
+        }
+        return message -> !processor.acceptsMetadata(message) || dumpWriter.append(message);
+    }
+}
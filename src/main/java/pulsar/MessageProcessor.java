@@ -0,0 +1,257 @@
+package pulsar;
+
+import aggregate.Aggregator;
+import com.fasterxml.jackson.core.JsonGenerator;
+import dedup.Deduplicator;
+import filter.FilterExpression;
+import filter.MetadataFilter;
+import filter.PayloadPrefilter;
+import metrics.ConsumerMetrics;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import source.RawMessage;
+import utils.AvroJsonSerializer;
+import utils.AvroParser;
+import utils.MessageWriter;
+import utils.TextBuffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Decodes a payload and applies the configured filters. Safe to share between worker threads: the filters are
+ * immutable, the rendering buffers are kept per thread, and the {@link Deduplicator} and {@link Aggregator} it
+ * may carry are thread-safe, so the one instance holds the dedup and aggregation state of the whole run.
+ * <p>
+ * Messages failing the {@link MetadataFilter} are skipped on their key, properties and times alone (see
+ * {@link #acceptsMetadata(RawMessage)}). Payloads that fail a {@link PayloadPrefilter} are skipped before
+ * decoding. The field filter runs on the decoded record, so the record is rendered to text only when it passes;
+ * the regex (if any) is then matched against the rendering produced by {@link AvroJsonSerializer}, kept in a
+ * per-thread buffer. Records passing the filters are dropped when a {@link Deduplicator} has seen their event
+ * id before. With an {@link Aggregator} the matching records are only counted into it. Without a regex,
+ * {@link #process(byte[], MessageWriter)} streams the record straight into the output. For Avro output the
+ * record is passed on as Avro binary: the original payload when nothing was projected away, otherwise the record
+ * re-encoded in the projected schema.
+ */
+public class MessageProcessor {
+    private final Pattern pattern;
+    private final AvroParser.RecordDecoder decoder;
+    private final FilterExpression filter;
+    private final PayloadPrefilter[] prefilters;
+    private final Deduplicator deduplicator;
+    private final Aggregator aggregator;
+    private final MetadataFilter metadataFilter;
+    private final AvroJsonSerializer serializer;
+    private final ThreadLocal<Rendering> rendering = ThreadLocal.withInitial(Rendering::new);
+    private final ThreadLocal<Encoding> encoding;
+    private final ConsumerMetrics metrics = ConsumerMetrics.get();
+
+    public MessageProcessor(Pattern pattern, AvroParser.RecordDecoder decoder, FilterExpression filter,
+                            List<PayloadPrefilter> prefilters, AvroJsonSerializer serializer) {
+        this(pattern, decoder, filter, prefilters, serializer, null, null, null);
+    }
+
+    public MessageProcessor(Pattern pattern, AvroParser.RecordDecoder decoder, FilterExpression filter,
+                            List<PayloadPrefilter> prefilters, AvroJsonSerializer serializer, Deduplicator deduplicator,
+                            Aggregator aggregator, MetadataFilter metadataFilter) {
+        this.pattern = pattern;
+        this.decoder = decoder;
+        this.filter = filter;
+        this.prefilters = prefilters.toArray(new PayloadPrefilter[0]);
+        this.serializer = serializer;
+        this.deduplicator = deduplicator;
+        this.aggregator = aggregator;
+        this.metadataFilter = metadataFilter;
+        this.encoding = ThreadLocal.withInitial(() -> new Encoding(decoder.getReaderSchema()));
+    }
+
+    /**
+     * Returns the rendered message when it matches the filters, otherwise {@code null}.
+     */
+    public String process(byte[] payload) throws Exception {
+        GenericData.Record record = match(payload);
+        if (record == null) {
+            return null;
+        }
+        if (pattern == null) {
+            render(record);
+        }
+        return rendering.get().text.toString();
+    }
+
+    /**
+     * Returns the matching message as Avro binary in {@link #getOutputSchema()}, otherwise {@code null}.
+     */
+    public byte[] encode(byte[] payload) throws IOException {
+        GenericData.Record record = match(payload);
+        return record == null ? null : encode(record, payload);
+    }
+
+    /**
+     * Writes the message to the writer when it matches the filters. Returns {@code false} only when the
+     * writer has already been closed.
+     */
+    public boolean process(byte[] payload, MessageWriter writer) throws IOException {
+        GenericData.Record record = match(payload);
+        if (record == null) {
+            return true;
+        }
+        boolean written;
+        if (writer.getFormat() == MessageWriter.Format.AVRO) {
+            written = writer.writeEncoded(getOutputSchema(), encode(record, payload));
+        } else {
+            written = pattern == null ? writer.write(record) : writer.write(rendering.get().text);
+        }
+        if (written) {
+            exported();
+        }
+        return written;
+    }
+
+    /**
+     * {@code false} when the message fails the metadata filter; checked before anything reads the payload.
+     */
+    public boolean acceptsMetadata(RawMessage message) {
+        if (metadataFilter == null || metadataFilter.matches(message)) {
+            return true;
+        }
+        metrics.metadataSkipped();
+        return false;
+    }
+
+    public MetadataFilter getMetadataFilter() {
+        return metadataFilter;
+    }
+
+    /**
+     * {@code true} when matching records are aggregated by {@link #aggregate(RawMessage)} instead of written.
+     */
+    public boolean isAggregating() {
+        return aggregator != null;
+    }
+
+    public Deduplicator getDeduplicator() {
+        return deduplicator;
+    }
+
+    public Aggregator getAggregator() {
+        return aggregator;
+    }
+
+    /**
+     * Adds the message to the aggregation when it matches the filters.
+     */
+    public void aggregate(RawMessage message) throws IOException {
+        GenericData.Record record = match(message.getPayload());
+        if (record != null) {
+            aggregator.add(record, message.getPublishTime());
+            exported();
+        }
+    }
+
+    /**
+     * Confirms to the deduplicator that a match returned by {@link #process(byte[])} or {@link #encode(byte[])}
+     * has been written.
+     */
+    void exported() {
+        if (deduplicator != null) {
+            deduplicator.exported();
+        }
+    }
+
+    /**
+     * Schema of the records this processor outputs: the writer schema, or the projected one.
+     */
+    public Schema getOutputSchema() {
+        return decoder.getReaderSchema();
+    }
+
+    /**
+     * Returns the decoded record when it passes all filters and its event id has not been seen yet, otherwise
+     * {@code null}. With a regex, the rendering it was matched against stays in the per-thread buffer.
+     */
+    private GenericData.Record match(byte[] payload) throws IOException {
+        for (PayloadPrefilter prefilter : prefilters) {
+            if (!prefilter.mightMatch(payload)) {
+                metrics.prefilterSkipped();
+                return null;
+            }
+        }
+        long start = System.nanoTime();
+        GenericData.Record record = decoder.decode(payload);
+        long decoded = System.nanoTime();
+        metrics.decoded(decoded - start);
+        if (filter != null) {
+            boolean matches = filter.matches(record);
+            long filtered = System.nanoTime();
+            metrics.filtered(filtered - decoded);
+            decoded = filtered;
+            if (!matches) {
+                return null;
+            }
+        }
+        if (pattern != null) {
+            boolean found = pattern.matcher(render(record)).find();
+            metrics.regexMatched(System.nanoTime() - decoded);
+            if (!found) {
+                return null;
+            }
+        }
+        // after the filters, so the set only holds ids of exported events
+        if (deduplicator != null && !deduplicator.firstSeen(record)) {
+            metrics.duplicate();
+            return null;
+        }
+        metrics.matched();
+        return record;
+    }
+
+    private byte[] encode(GenericData.Record record, byte[] payload) throws IOException {
+        if (decoder.isPassThrough()) {
+            return payload;
+        }
+        Encoding current = encoding.get();
+        current.out.reset();
+        current.encoder = EncoderFactory.get().binaryEncoder(current.out, current.encoder);
+        current.writer.write(record, current.encoder);
+        current.encoder.flush();
+        return current.out.toByteArray();
+    }
+
+    private TextBuffer render(GenericData.Record record) throws IOException {
+        Rendering current = rendering.get();
+        current.text.reset();
+        serializer.write(record, current.generator);
+        current.generator.flush();
+        return current.text;
+    }
+
+    private static final class Rendering {
+        private final TextBuffer text = new TextBuffer();
+        private final JsonGenerator generator;
+
+        private Rendering() {
+            try {
+                generator = AvroJsonSerializer.createGenerator(text);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static final class Encoding {
+        private final GenericDatumWriter<GenericData.Record> writer;
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private BinaryEncoder encoder;
+
+        private Encoding(Schema schema) {
+            this.writer = new GenericDatumWriter<>(schema);
+        }
+    }
+}
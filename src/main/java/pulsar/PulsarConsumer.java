@@ -1,48 +1,73 @@
 package pulsar;
 
+import aggregate.Aggregator;
+import cache.SegmentCache;
+import cache.SegmentWriter;
+import dedup.Deduplicator;
+import metrics.ConsumerMetrics;
+import metrics.MetricsReporter;
+import org.apache.avro.SchemaCompatibility;
 import org.apache.pulsar.client.api.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import token.JwtAndAccessTokenGenerator;
+import source.FileReplaySource;
+import source.MessageSource;
+import source.PulsarSource;
+import source.RawMessage;
+import source.SyntheticSource;
+import snapshot.SnapshotStore;
+import token.AccessTokenProvider;
+import filter.FilterCompiler;
+import filter.FilterExpression;
+import filter.MetadataFilter;
+import filter.PayloadPrefilter;
+import utils.AvroJsonSerializer;
+import utils.AvroParser;
 import utils.Constants;
 import utils.SchemaLoader;
+import utils.SchemaVersions;
 import utils.TopicAliasResolver;
 import utils.PropertyLoader;
 import utils.MessageSaver;
+import utils.MessageWriter;
 
 import java.text.SimpleDateFormat;
 import java.text.ParseException;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.io.File;
-
-import static utils.AvroParser.parse;
+import java.nio.file.Path;
+import java.io.IOException;
 
 public class PulsarConsumer {
     private static final Logger log = LoggerFactory.getLogger(PulsarConsumer.class);
     private static volatile boolean running = true;
-    private static volatile boolean messagesWritten = false;
+    // outputs whose result has been reported, by the shutdown hook or at the end of the run
+    private static final Set<Object> reportedOutputs = ConcurrentHashMap.newKeySet();
+    private static final List<String> INTEGER_PROPERTIES = List.of(
+            "flushEveryMessages", "batchMaxMessages", "batchMaxBytes", "batchTimeoutMs", "workerThreads", "maxInFlightBatches",
+            "tokenRefreshMarginSeconds", "segmentCacheMaxMb", "segmentCacheMaxAgeHours", "segmentMaxMb",
+            "metricsIntervalSeconds", "syntheticCount", "dedupExpectedEvents",
+            "aggregateTopKSize", "aggregateMaxGroups", "serverPort", "snapshotExpectedKeys");
+    private static final List<String> TOPIC_OUTPUTS = List.of("split", "merged");
+    private static final List<String> SOURCES = List.of("pulsar", "file", "synthetic");
+    private static final List<String> MODES = List.of("consume", "dump", "decode", "serve", "snapshot");
 
     public static void main(String[] args) {
-        AtomicReference<List<String>> messages = new AtomicReference<>(new ArrayList<>());
-        final String[] outputFilePath = new String[1];
+        List<MessageWriter> messageWriters = new CopyOnWriteArrayList<>();
+        AtomicReference<SegmentWriter> segmentWriter = new AtomicReference<>();
+        List<Aggregator> aggregations = new CopyOnWriteArrayList<>();
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             log.info("🛑 Shutdown signal received. Ukončujem aplikáciu...");
             running = false;
-            if (!messages.get().isEmpty() && outputFilePath[0] != null && !messagesWritten) {
-                ensureOutputDirectoryExists(Constants.OUTPUT_DIR);
-                MessageSaver.writeMessages(messages.get(), outputFilePath[0]);
-                log.info("📝 Zapísaných {} správ do súboru: {}", messages.get().size(), outputFilePath[0]);
-                messagesWritten = true;
-            }
-
-            if (!messagesWritten) {
-                log.info("📭 Žiadne správy neboli nájdené v topiku.");
-            }
+            messageWriters.forEach(PulsarConsumer::closeWriter);
+            closeDump(segmentWriter.get());
+            aggregations.forEach(PulsarConsumer::closeAggregate);
         }));
 
         TimeZone tz = TimeZone.getDefault();
@@ -50,14 +75,6 @@ public class PulsarConsumer {
         log.info("🕒 Aktuálny čas JVM: {}", new Date());
         log.info("🕒 JVM ZoneId: {}", ZoneId.systemDefault());
 
-        String token;
-        try {
-            token = JwtAndAccessTokenGenerator.generateAccessToken();
-        } catch (Exception e) {
-            log.error("❌ Nepodarilo sa vygenerovať access token", e);
-            return;
-        }
-
         log.info("📥 Počet odovzdaných argumentov: {}", args.length);
         for (int i = 0; i < args.length; i++) {
             log.info("📌 Argument [{}]: {}", i, args[i]);
@@ -66,20 +83,84 @@ public class PulsarConsumer {
         Properties configProps = validateAndLoadConfig(Constants.CONFIG_PROPERTIES);
         if (configProps == null) return;
 
+        String sourceType = configProps.getProperty("source");
+        String mode = configProps.getProperty("mode");
+        boolean dump = "dump".equals(mode);
+        boolean decode = "decode".equals(mode);
+        boolean snapshot = "snapshot".equals(mode);
+        boolean offline = decode || !"pulsar".equals(sourceType);
+        if ("serve".equals(mode) && offline) {
+            log.error("❌ Režim serve funguje len so source=pulsar.");
+            return;
+        }
+        AccessTokenProvider tokenProvider;
+        if (decode) {
+            tokenProvider = null;
+            log.info("🧩 Režim decode – dekódujem lokálny dump bez pripojenia k Pulsaru.");
+        } else if (offline) {
+            tokenProvider = null;
+            log.info("📂 Zdroj správ: {} – bez pripojenia k Pulsaru.", sourceType);
+        } else {
+            try {
+                tokenProvider = AccessTokenProvider.fromConfig(configProps);
+                tokenProvider.getToken();
+            } catch (Exception e) {
+                log.error("❌ Nepodarilo sa vygenerovať access token", e);
+                return;
+            }
+        }
+        if ("serve".equals(mode)) {
+            serve(configProps, tokenProvider);
+            return;
+        }
+
         String regex = configProps.getProperty("regex", ".*");
-        String topicInput = configProps.getProperty("topic");
         String environment = configProps.getProperty("environment");
         String fromTimestampStr = configProps.getProperty("fromTimestamp");
-        boolean waitForNextMessageAfterAllRead = configProps.getProperty("waitForNextMessageAfterAllRead").equals("true");
+        String toTimestampStr = configProps.getProperty("toTimestamp");
+        boolean resume = Boolean.parseBoolean(configProps.getProperty("resume", "false").trim());
+        // a snapshot reads up to the last message at start instead of waiting for new ones
+        boolean rangeScan = Boolean.parseBoolean(configProps.getProperty("rangeScan", "false").trim())
+                || (toTimestampStr != null && !toTimestampStr.isEmpty()) || resume || (snapshot && !offline);
+        if (snapshot && resume) {
+            log.error("❌ Snapshot potrebuje všetky verzie kľúčov, resume sa s ním nedá použiť.");
+            return;
+        }
+        if (snapshot && configProps.getProperty("readCompacted") == null) {
+            // compaction keeps the latest message per message key, a key in the payload needs every version
+            configProps.setProperty("readCompacted", String.valueOf(SnapshotStore.keyField(configProps) == null));
+        }
 
-        Pattern pattern;
-        try {
-            pattern = Pattern.compile(regex);
-        } catch (Exception e) {
-            log.error("❌ Neplatný regulárny výraz: {}", regex, e);
+        if (offline && !decode && rangeScan) {
+            log.error("❌ Range scan (rangeScan, toTimestamp, resume) funguje len so source=pulsar.");
+            return;
+        }
+
+        Properties envProps = PropertyLoader.loadFromResources(Constants.ENV_PROPERTIES);
+        if (envProps == null) {
+            log.error("❌ Nepodarilo sa načítať environment properties.");
+            return;
+        }
+
+        String serviceUrl = envProps.getProperty(environment);
+        if (serviceUrl == null && !offline) {
+            log.error("❌ Pre prostredie '{}' neexistuje definovaný serviceUrl.", environment);
             return;
         }
 
+        String safeRegex = regex.replaceAll("[^a-zA-Z0-9_\\-]", "");
+        log.info("⚙️ safeRegex: {}", safeRegex);
+
+        List<String> topicInputs = TopicAliasResolver.expand(configProps.getProperty("topic"));
+        if (topicInputs.isEmpty()) {
+            log.error("❌ Topic '{}' nezodpovedá žiadnemu aliasu z topic-aliases.properties.", configProps.getProperty("topic"));
+            return;
+        }
+        if (topicInputs.size() > 1) {
+            consumeTopics(topicInputs, configProps, tokenProvider, serviceUrl, rangeScan, messageWriters, aggregations);
+            return;
+        }
+        String topicInput = topicInputs.get(0);
         String topic = TopicAliasResolver.resolve(topicInput);
         log.info("📡 Resolvovaný topic: {}", topic);
 
@@ -91,84 +172,700 @@ public class PulsarConsumer {
             return;
         }
 
+        String dataBase = dataBase(configProps, topicInput, rangeScan);
+        Path dumpDir = Path.of(configProps.getProperty("dumpDir", dataBase + ".dump").trim());
+        String outputFileBase = outputFileBase(configProps, dataBase, decode);
+        ensureOutputDirectoryExists(Constants.OUTPUT_DIR);
+
+        Checkpoint checkpoint = null;
+        if (resume && !decode) {
+            try {
+                checkpoint = Checkpoint.load(Path.of(configProps.getProperty("checkpointFile", outputFileBase + ".checkpoint").trim()));
+            } catch (IOException | RuntimeException e) {
+                log.error("❌ Nepodarilo sa načítať checkpoint", e);
+                return;
+            }
+            // every resumed run exports only the new data, so it gets its own output file
+            outputFileBase += "_Run_" + new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss").format(new Date());
+        }
+
+        MessageWriter writer;
+        try {
+            writer = MessageSaver.openWriter(configProps, outputFileBase);
+        } catch (IllegalArgumentException e) {
+            log.error("❌ Neplatná konfigurácia výstupu", e);
+            return;
+        }
+        SegmentWriter dumpWriter = null;
+        if (dump) {
+            try {
+                dumpWriter = new SegmentWriter(dumpDir,
+                        Long.parseLong(configProps.getProperty("segmentMaxMb", "64").trim()) * 1024 * 1024);
+            } catch (IOException | IllegalArgumentException e) {
+                log.error("❌ Nepodarilo sa otvoriť dump: {}", dumpDir.toAbsolutePath(), e);
+                return;
+            }
+            segmentWriter.set(dumpWriter);
+            log.info("💾 Režim dump – správy sa ukladajú bez dekódovania do {}", dumpDir.toAbsolutePath());
+        }
+        boolean aggregate = Boolean.parseBoolean(configProps.getProperty("aggregate", "false").trim()) && !dump;
+        boolean queries = !configProps.getProperty("queriesFile", "").trim().isEmpty();
+        if (queries && (dump || decode || aggregate || !"off".equals(configProps.getProperty("dedup")))) {
+            log.error("❌ queriesFile sa nedá kombinovať s režimom dump ani decode, s agregáciou ani s deduplikáciou.");
+            return;
+        }
+        if (!dump && !aggregate && !queries) {
+            messageWriters.add(writer);
+        }
+
+        MessageProcessor processor;
+        try {
+            processor = createProcessor(configProps, topicInput, pojoSchema, writer.getSerializer(), dump,
+                    Path.of(configProps.getProperty("aggregateFile", outputFileBase + "_Aggregate.json").trim()));
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("❌ Neplatná konfigurácia dekódovania pre alias '{}'", topicInput, e);
+            return;
+        }
+        Deduplicator deduplicator = processor.getDeduplicator();
+        Aggregator aggregator = processor.getAggregator();
+        if (aggregator != null) {
+            aggregations.add(aggregator);
+        }
+        QueryRouter router = null;
+        if (queries) {
+            try {
+                router = QueryRouter.fromConfig(configProps, topicInput, pojoSchema, outputFileBase);
+            } catch (IOException | IllegalArgumentException e) {
+                log.error("❌ Nepodarilo sa načítať dotazy zo súboru {}", configProps.getProperty("queriesFile"), e);
+                return;
+            }
+            messageWriters.addAll(router.getWriters());
+            log.info("🔀 {} dotazov v jednom prechode, výstupy {}_Query_<názov>", router.getQueryCount(), outputFileBase);
+        }
+        SnapshotStore snapshotStore = null;
+        if (snapshot) {
+            try {
+                snapshotStore = SnapshotStore.fromConfig(configProps, topicInput, pojoSchema, Path.of(outputFileBase + ".spill"));
+            } catch (IOException | IllegalArgumentException e) {
+                log.error("❌ Nepodarilo sa pripraviť snapshot", e);
+                return;
+            }
+            String keyField = SnapshotStore.keyField(configProps);
+            log.info("📸 Režim snapshot – posledná verzia každého kľúča ({}), readCompacted={}, spill {}",
+                    keyField == null ? "kľúč správy" : keyField, configProps.getProperty("readCompacted"),
+                    snapshotStore.getFile().toAbsolutePath());
+        }
+        // dump, snapshot and queries take the raw messages themselves instead of the processor's single output
+        MessageHandler rawHandler = dumpWriter != null ? MessageHandler.dumping(processor, dumpWriter)
+                : snapshotStore != null ? MessageHandler.snapshotting(processor, snapshotStore)
+                : router != null ? MessageHandler.routing(processor, router) : null;
+
+        SegmentCache segmentCache = SegmentCache.fromConfig(configProps);
+        if (segmentCache != null && !rangeScan) {
+            log.warn("⚠️ segmentCache sa používa len pri range scan (rangeScan=true alebo toTimestamp), ignorujem ju.");
+            segmentCache = null;
+        }
+        boolean readCompacted = Boolean.parseBoolean(configProps.getProperty("readCompacted", "false").trim());
+        if (segmentCache != null && readCompacted) {
+            log.warn("⚠️ segmentCache ukladá celý topic, pri readCompacted=true ju ignorujem.");
+            segmentCache = null;
+        }
+
+        MetricsReporter metricsReporter = null;
+        if (Boolean.parseBoolean(configProps.getProperty("metrics", "true").trim())) {
+            metricsReporter = new MetricsReporter(ConsumerMetrics.get(),
+                    Path.of(configProps.getProperty("metricsFile", outputFileBase + ".prom").trim()),
+                    Long.parseLong(configProps.getProperty("metricsIntervalSeconds", "10").trim()));
+            metricsReporter.start();
+        }
+
+        if (decode) {
+            try {
+                SegmentDecoder.fromConfig(configProps, processor, writer).decode(dumpDir, () -> running);
+            } catch (IOException | IllegalArgumentException e) {
+                log.error("❌ Nepodarilo sa dekódovať dump: {}", dumpDir.toAbsolutePath(), e);
+            } catch (InterruptedException e) {
+                log.warn("Decode interrupted, shutting down.", e);
+                Thread.currentThread().interrupt();
+            }
+        } else if (offline) {
+            try (MessageSource source = "file".equals(sourceType)
+                    ? FileReplaySource.fromConfig(configProps, topicInput)
+                    : SyntheticSource.fromConfig(configProps, AvroParser.schema(pojoSchema))) {
+                consume(source, configProps, processor, writer, rawHandler);
+            } catch (IOException | IllegalArgumentException e) {
+                log.error("❌ Nepodarilo sa otvoriť zdroj správ '{}'", sourceType, e);
+            }
+        } else {
+            try (tokenProvider; PulsarClient client = setupPulsarClient(serviceUrl, tokenProvider)) {
+                tokenProvider.startBackgroundRefresh();
+                if (rangeScan) {
+                    log.info("🔎 Spúšťam range scan od {} do {}.", fromTimestampStr, toTimestampStr);
+                    if (segmentCache != null) {
+                        log.info("🗄️ Lokálna segment cache: {}", segmentCache.getRoot().toAbsolutePath());
+                    }
+                    MessageHandler handler = rawHandler != null ? rawHandler : MessageHandler.decoding(processor, writer);
+                    new RangeScanner(client, handler, segmentCache, topicInput, checkpoint)
+                            .readCompacted(readCompacted)
+                            .scan(topic, scanFrom(processor, parseTimestamp(fromTimestampStr)),
+                                    scanTo(processor, parseTimestamp(toTimestampStr)), () -> running);
+                } else {
+                    consumeFromSubscription(client, topic, configProps, processor, writer, rawHandler, metricsReporter);
+                }
+            } catch (PulsarClientException e) {
+                log.error("❌ Chyba pri práci s Pulsar klientom", e);
+            } catch (ParseException e) {
+                log.error("❌ Nepodarilo sa parsovať časový rozsah '{}' - '{}'", fromTimestampStr, toTimestampStr, e);
+            } catch (InterruptedException e) {
+                log.warn("Range scan interrupted, shutting down.", e);
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (snapshotStore != null) {
+            emitSnapshot(snapshotStore, MessageHandler.snapshotted(processor, writer, router));
+        }
+
+        boolean closed = dumpWriter != null ? closeDump(dumpWriter)
+                : aggregator != null ? closeAggregate(aggregator)
+                : router != null ? closeWriters(router.getWriters()) : closeWriter(writer);
+        if (closed && checkpoint != null) {
+            try {
+                checkpoint.save();
+            } catch (IOException e) {
+                log.error("❌ Nepodarilo sa uložiť checkpoint: {}", checkpoint.getFile(), e);
+            }
+        }
+        if (deduplicator != null) {
+            long events = deduplicator.size();
+            log.info("🧹 Duplicitných správ: {}, eventId v množine: {}, pamäť {} KB ({} B/event)",
+                    ConsumerMetrics.get().getDuplicates(), events, deduplicator.memoryBytes() / 1024,
+                    events == 0 ? 0 : deduplicator.memoryBytes() / events);
+            if (closed) {
+                try {
+                    deduplicator.save();
+                } catch (IOException e) {
+                    log.error("❌ Nepodarilo sa uložiť množinu eventId: {}", deduplicator.getFile(), e);
+                }
+            }
+        }
+
+        if (metricsReporter != null) {
+            metricsReporter.close();
+        }
+
+        if (segmentCache != null) {
+            try {
+                segmentCache.evict();
+            } catch (IOException e) {
+                log.warn("⚠️ Čistenie segment cache zlyhalo", e);
+            }
+        }
+
+        log.info("✅ Aplikácia ukončená.");
+    }
+
+    /**
+     * Writes the latest version of every key once the topic has been read and deletes the spill file. An
+     * interrupted read would yield an incomplete state, so nothing is written then.
+     */
+    private static void emitSnapshot(SnapshotStore snapshotStore, MessageHandler handler) {
+        try (snapshotStore) {
+            if (!running) {
+                log.warn("⚠️ Čítanie bolo prerušené, neúplný snapshot sa nezapisuje.");
+                return;
+            }
+            long emitted = snapshotStore.emit(handler::handle);
+            log.info("📸 Snapshot: {} posledných verzií odovzdaných na dekódovanie a filter", emitted);
+        } catch (Exception e) {
+            log.error("❌ Snapshot sa nepodarilo zapísať", e);
+        }
+    }
+
+    /**
+     * Runs the {@link QueryServer} until the JVM is asked to shut down.
+     */
+    private static void serve(Properties configProps, AccessTokenProvider tokenProvider) {
         Properties envProps = PropertyLoader.loadFromResources(Constants.ENV_PROPERTIES);
         if (envProps == null) {
             log.error("❌ Nepodarilo sa načítať environment properties.");
             return;
         }
+        try (tokenProvider; QueryServer server = new QueryServer(configProps, envProps, tokenProvider, () -> running)) {
+            tokenProvider.startBackgroundRefresh();
+            server.start();
+            while (running) {
+                Thread.sleep(1000);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("❌ Server dotazov sa nepodarilo spustiť", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("✅ Server dotazov ukončený.");
+    }
 
-        String serviceUrl = envProps.getProperty(environment);
-        if (serviceUrl == null) {
-            log.error("❌ Pre prostredie '{}' neexistuje definovaný serviceUrl.", environment);
+    /**
+     * Consumes several topic aliases in one run: one shared {@link PulsarClient} (or an offline source per alias)
+     * and one thread per alias, each with the schema, processor and checkpoint of its alias, so the run takes
+     * about as long as its slowest topic. Messages go to a file per alias, or with {@code topicOutput=merged} to
+     * one file named after the {@code topic} property; aggregation summaries are always per alias.
+     */
+    private static void consumeTopics(List<String> topicInputs, Properties configProps, AccessTokenProvider tokenProvider,
+                                      String serviceUrl, boolean rangeScan, List<MessageWriter> messageWriters,
+                                      List<Aggregator> aggregations) {
+        String mode = configProps.getProperty("mode");
+        if (!"consume".equals(mode)) {
+            log.error("❌ Režim {} pracuje s jedným topicom, viac topicov {} funguje len v režime consume.", mode, topicInputs);
             return;
         }
-
-        String safeRegex = regex.replaceAll("[^a-zA-Z0-9_\\-]", "");
-        log.info("⚙️ safeRegex: {}", safeRegex);
-        outputFilePath[0] = Constants.OUTPUT_DIR + "/" + environment + "_" + topicInput + "_From_" + fromTimestampStr + "_Regex_" + safeRegex + Constants.OUTPUT_FILE_SUFFIX;
+        // these name a single file, per-alias files are derived from the output name instead
+        for (String key : List.of("checkpointFile", "dedupFile", "aggregateFile", "replayPath")) {
+            if (configProps.getProperty(key) != null) {
+                log.error("❌ {} sa pri viacerých topicoch nedá nastaviť, súbory sa odvodzujú z aliasu.", key);
+                return;
+            }
+        }
+        if (configProps.getProperty("queriesFile") != null) {
+            log.error("❌ queriesFile funguje len s jedným topicom, nie s {}.", topicInputs);
+            return;
+        }
+        boolean merged = "merged".equals(configProps.getProperty("topicOutput"));
+        if (merged && MessageWriter.Format.fromProperty(configProps.getProperty("outputFormat")) == MessageWriter.Format.AVRO) {
+            log.error("❌ topicOutput=merged nejde s outputFormat=avro, každý topic má inú schému.");
+            return;
+        }
+        Long from;
+        Long to;
+        try {
+            from = parseTimestamp(configProps.getProperty("fromTimestamp"));
+            to = parseTimestamp(configProps.getProperty("toTimestamp"));
+        } catch (ParseException e) {
+            log.error("❌ Nepodarilo sa parsovať časový rozsah", e);
+            return;
+        }
+        log.info("📡 Topicy {} sa čítajú súčasne, výstup {}.", topicInputs, merged ? "do jedného súboru" : "pre každý topic zvlášť");
         ensureOutputDirectoryExists(Constants.OUTPUT_DIR);
+        boolean resume = Boolean.parseBoolean(configProps.getProperty("resume", "false").trim());
+        String runSuffix = resume ? "_Run_" + new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss").format(new Date()) : "";
+        String mergedName = configProps.getProperty("topic").replaceAll("\\s", "").replace("*", "ALL")
+                .replaceAll("[^a-zA-Z0-9_\\-]", "+");
+        String mergedBase = outputFileBase(configProps, dataBase(configProps, mergedName, rangeScan), false);
+
+        List<TopicRun> runs = new ArrayList<>();
+        try {
+            MessageWriter mergedWriter = merged ? MessageSaver.openWriter(configProps, mergedBase + runSuffix) : null;
+            for (String topicInput : topicInputs) {
+                String outputFileBase = outputFileBase(configProps, dataBase(configProps, topicInput, rangeScan), false);
+                Checkpoint checkpoint = resume ? Checkpoint.load(Path.of(outputFileBase + ".checkpoint")) : null;
+                String pojoSchema = SchemaLoader.loadSchema(topicInput);
+                MessageWriter writer = merged ? mergedWriter : MessageSaver.openWriter(configProps, outputFileBase + runSuffix);
+                MessageProcessor processor = createProcessor(configProps, topicInput, pojoSchema, writer.getSerializer(),
+                        false, Path.of(outputFileBase + runSuffix + "_Aggregate.json"));
+                runs.add(new TopicRun(topicInput, pojoSchema, processor, writer, checkpoint));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("❌ Nepodarilo sa pripraviť topicy {}", topicInputs, e);
+            return;
+        }
+        for (TopicRun run : runs) {
+            if (run.processor.getAggregator() != null) {
+                aggregations.add(run.processor.getAggregator());
+            } else if (!messageWriters.contains(run.writer)) {
+                messageWriters.add(run.writer);
+            }
+        }
+
+        boolean readCompacted = Boolean.parseBoolean(configProps.getProperty("readCompacted", "false").trim());
+        SegmentCache segmentCache = rangeScan && !readCompacted ? SegmentCache.fromConfig(configProps) : null;
+        MetricsReporter metricsReporter = null;
+        if (Boolean.parseBoolean(configProps.getProperty("metrics", "true").trim())) {
+            metricsReporter = new MetricsReporter(ConsumerMetrics.get(),
+                    Path.of(configProps.getProperty("metricsFile", mergedBase + runSuffix + ".prom").trim()),
+                    Long.parseLong(configProps.getProperty("metricsIntervalSeconds", "10").trim()));
+            metricsReporter.start();
+        }
+
+        long start = System.nanoTime();
+        // a null resource is skipped on close, offline sources need neither token nor client
+        try (tokenProvider; PulsarClient client = tokenProvider == null ? null : setupPulsarClient(serviceUrl, tokenProvider)) {
+            if (tokenProvider != null) {
+                tokenProvider.startBackgroundRefresh();
+            }
+            List<Thread> threads = new ArrayList<>();
+            for (TopicRun run : runs) {
+                MetricsReporter reporter = metricsReporter;
+                // platform threads: virtual threads need Java 21
+                Thread thread = new Thread(() -> consumeTopic(run, client, configProps, segmentCache, rangeScan, from, to, reporter),
+                        "topic-" + run.alias);
+                thread.start();
+                threads.add(thread);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (PulsarClientException e) {
+            log.error("❌ Chyba pri práci s Pulsar klientom", e);
+        } catch (InterruptedException e) {
+            log.warn("Multi-topic run interrupted, shutting down.", e);
+            Thread.currentThread().interrupt();
+        }
+        log.info("⏱️ Topicy {} prečítané za {} ms.", topicInputs, (System.nanoTime() - start) / 1_000_000);
 
+        for (TopicRun run : runs) {
+            Aggregator aggregator = run.processor.getAggregator();
+            boolean closed = aggregator != null ? closeAggregate(aggregator) : closeWriter(run.writer);
+            if (closed && run.checkpoint != null) {
+                try {
+                    run.checkpoint.save();
+                } catch (IOException e) {
+                    log.error("❌ Nepodarilo sa uložiť checkpoint: {}", run.checkpoint.getFile(), e);
+                }
+            }
+        }
+        if (!"off".equals(configProps.getProperty("dedup"))) {
+            log.info("🧹 Duplicitných správ: {}", ConsumerMetrics.get().getDuplicates());
+        }
+
+        if (metricsReporter != null) {
+            metricsReporter.close();
+        }
+        if (segmentCache != null) {
+            try {
+                segmentCache.evict();
+            } catch (IOException e) {
+                log.warn("⚠️ Čistenie segment cache zlyhalo", e);
+            }
+        }
+        log.info("✅ Aplikácia ukončená.");
+    }
+
+    private static void consumeTopic(TopicRun run, PulsarClient client, Properties configProps, SegmentCache segmentCache,
+                                     boolean rangeScan, Long from, Long to, MetricsReporter metricsReporter) {
+        log.info("📡 Topic {}: {}", run.alias, run.topic);
+        try {
+            if (client == null) {
+                try (MessageSource source = "file".equals(configProps.getProperty("source"))
+                        ? FileReplaySource.fromConfig(configProps, run.alias)
+                        : SyntheticSource.fromConfig(configProps, AvroParser.schema(run.pojoSchema))) {
+                    consume(source, configProps, run.processor, run.writer, null);
+                }
+            } else if (rangeScan) {
+                new RangeScanner(client, MessageHandler.decoding(run.processor, run.writer), segmentCache, run.alias, run.checkpoint)
+                        .readCompacted(Boolean.parseBoolean(configProps.getProperty("readCompacted", "false").trim()))
+                        .scan(run.topic, scanFrom(run.processor, from), scanTo(run.processor, to), () -> running);
+            } else {
+                consumeFromSubscription(client, run.topic, configProps, run.processor, run.writer, null, metricsReporter);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("❌ Čítanie topicu {} zlyhalo", run.alias, e);
+        } catch (InterruptedException e) {
+            log.warn("Topic {} interrupted, shutting down.", run.alias, e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Raw data name of a run for one alias; dump writes it and decode reads it back.
+     */
+    private static String dataBase(Properties configProps, String topicInput, boolean rangeScan) {
+        String sourceType = configProps.getProperty("source");
+        String toTimestampStr = configProps.getProperty("toTimestamp");
+        return Constants.OUTPUT_DIR + "/" + configProps.getProperty("environment") + "_" + topicInput
+                + "_From_" + configProps.getProperty("fromTimestamp")
+                + (rangeScan && toTimestampStr != null ? "_To_" + toTimestampStr : "")
+                + ("pulsar".equals(sourceType) ? "" : "_Source_" + sourceType);
+    }
+
+    private static String outputFileBase(Properties configProps, String dataBase, boolean decode) {
+        String safeRegex = configProps.getProperty("regex", ".*").replaceAll("[^a-zA-Z0-9_\\-]", "");
+        String filterExpression = configProps.getProperty("filter", "").trim();
+        return dataBase + "_Regex_" + safeRegex
+                + (filterExpression.isEmpty() ? "" : "_Filter_" + Integer.toHexString(filterExpression.hashCode()))
+                + (decode ? "_Decoded" : "")
+                + ("snapshot".equals(configProps.getProperty("mode")) ? "_Snapshot" : "");
+    }
+
+    /**
+     * Decoder, filters, regex, deduplication and aggregation configured by the properties of one run (or one
+     * query of the {@link QueryServer}). The projection keeps every field the filter, dedup and aggregation read.
+     * Dump mode stores raw messages, so it gets neither dedup nor aggregation.
+     */
+    static MessageProcessor createProcessor(Properties configProps, String topicInput, String pojoSchema,
+                                            AvroJsonSerializer serializer, boolean dump, Path aggregateFile) throws IOException {
+        String regex = configProps.getProperty("regex", ".*");
+        Pattern pattern = Pattern.compile(regex);
+        String filterExpression = configProps.getProperty("filter", "").trim();
+        boolean aggregate = Boolean.parseBoolean(configProps.getProperty("aggregate", "false").trim()) && !dump;
+
+        List<String> projectedFields = new ArrayList<>();
+        for (String field : configProps.getProperty("fields", "").split(",")) {
+            if (!field.isBlank()) {
+                projectedFields.add(field.trim());
+            }
+        }
+        if (aggregate && (!projectedFields.isEmpty() || configProps.getProperty("regex") == null || ".*".equals(regex))) {
+            // without a regex nothing renders the whole record, so only the aggregated fields need decoding
+            projectedFields.addAll(Aggregator.fieldPaths(configProps));
+        }
+
+        List<PayloadPrefilter> prefilters = new ArrayList<>();
+        boolean usePrefilter = Boolean.parseBoolean(configProps.getProperty("prefilter", "true").trim());
+        if (!filterExpression.isEmpty() && !projectedFields.isEmpty()) {
+            // fields read by the filter must survive the projection
+            projectedFields.addAll(FilterCompiler.compile(filterExpression, AvroParser.schema(pojoSchema)).getFieldPaths());
+        }
+        if (!"off".equals(configProps.getProperty("dedup", "off")) && !projectedFields.isEmpty()) {
+            projectedFields.add(Deduplicator.fieldPath(configProps));
+        }
+        AvroParser.RecordDecoder decoder = AvroParser.decoder(pojoSchema, projectedFields);
+        if (!projectedFields.isEmpty()) {
+            log.info("✂️ Projekcia polí: {}", projectedFields);
+        }
+        if (decoder.isGenerated()) {
+            log.info("🏎️ Dekóder vygenerovaný pri builde pre schému aliasu {}", topicInput);
+        }
+        SchemaVersions schemaVersions = SchemaVersions.forAlias(topicInput);
+        if (schemaVersions != null) {
+            decoder = decoder.withWriterVersions(schemaVersions);
+            log.info("🧬 Writer schéma podľa metadata.schemaVersion, verzie: {}", schemaVersions.getVersions());
+            for (org.apache.avro.Schema writerSchema : schemaVersions.getSchemas()) {
+                SchemaCompatibility.SchemaPairCompatibility compatibility =
+                        SchemaCompatibility.checkReaderWriterCompatibility(decoder.getReaderSchema(), writerSchema);
+                if (compatibility.getType() == SchemaCompatibility.SchemaCompatibilityType.INCOMPATIBLE) {
+                    log.warn("⚠️ Niektorá verzia schémy sa nedá čítať pripnutou schémou: {}", compatibility.getDescription());
+                }
+            }
+        }
+        FilterExpression filter = null;
+        if (!filterExpression.isEmpty()) {
+            FilterCompiler.CompiledFilter compiled = FilterCompiler.compile(filterExpression, decoder.getReaderSchema());
+            filter = compiled.getExpression();
+            log.info("🔍 Filter skompilovaný: {}", filterExpression);
+            PayloadPrefilter filterPrefilter = PayloadPrefilter.forLiterals(compiled.getRequiredLiterals());
+            if (usePrefilter && filterPrefilter != null) {
+                prefilters.add(filterPrefilter);
+            }
+            if (configProps.getProperty("regex") == null) {
+                pattern = null;
+            }
+        }
+        if (usePrefilter && pattern != null) {
+            PayloadPrefilter regexPrefilter = PayloadPrefilter.forRegex(regex, AvroParser.schema(pojoSchema));
+            if (regexPrefilter != null) {
+                prefilters.add(regexPrefilter);
+            }
+        }
+        for (PayloadPrefilter prefilter : prefilters) {
+            log.info("⚡ Prefilter na surových bajtoch, literály: {}", prefilter.getLiterals());
+        }
+        MetadataFilter metadataFilter = null;
+        String metadataExpression = configProps.getProperty("metadataFilter", "").trim();
+        if (!metadataExpression.isEmpty()) {
+            metadataFilter = MetadataFilter.compile(metadataExpression);
+            log.info("🏷️ Filter metadát správy (pred dekódovaním): {}", metadataExpression);
+        }
+
+        if (".*".equals(regex)) {
+            // matches every rendering, so records can be streamed to the output without rendering them first
+            pattern = null;
+        }
+
+        Deduplicator deduplicator = null;
+        Aggregator aggregator = null;
+        if (dump) {
+            if (!"off".equals(configProps.getProperty("dedup", "off"))) {
+                log.warn("⚠️ dedup sa v režime dump neuplatní, surové správy sa ukladajú všetky.");
+            }
+            if (Boolean.parseBoolean(configProps.getProperty("aggregate", "false").trim())) {
+                log.warn("⚠️ aggregate sa v režime dump neuplatní, surové správy sa ukladajú všetky.");
+            }
+        } else {
+            deduplicator = Deduplicator.fromConfig(configProps, decoder.getReaderSchema());
+            if (deduplicator != null) {
+                log.info("🧹 Deduplikácia podľa {} ({}){}", deduplicator.getFieldPath(),
+                        deduplicator.isApproximate() ? "približná, Bloom filter" : "presná",
+                        deduplicator.getFile() != null ? ", množina v " + deduplicator.getFile() : "");
+            }
+            aggregator = Aggregator.fromConfig(configProps, decoder.getReaderSchema(), aggregateFile);
+            if (aggregator != null) {
+                log.info("📊 Agregácia namiesto exportu správ, súhrn do {}",
+                        aggregateFile == null ? "HTTP odpovede" : aggregateFile.toAbsolutePath());
+            }
+        }
+        return new MessageProcessor(pattern, decoder, filter, prefilters, serializer, deduplicator, aggregator, metadataFilter);
+    }
+
+    private static void consumeFromSubscription(PulsarClient client, String topic, Properties configProps,
+                                                MessageProcessor processor, MessageWriter writer, MessageHandler rawHandler,
+                                                MetricsReporter metricsReporter) throws PulsarClientException {
+        String fromTimestampStr = configProps.getProperty("fromTimestamp");
         String subscription = Constants.SUBSCRIPTION_PREFIX + UUID.randomUUID();
 
-        try (PulsarClient client = setupPulsarClient(serviceUrl, token);
-             Consumer<byte[]> consumer = client.newConsumer()
-                     .topic(topic)
-                     .subscriptionName(subscription)
-                     .subscriptionType(SubscriptionType.Exclusive)
-                     .subscriptionInitialPosition(SubscriptionInitialPosition.Earliest)
-                     .subscribe()) {
+        try (Consumer<byte[]> consumer = client.newConsumer()
+                .topic(topic)
+                .subscriptionName(subscription)
+                .subscriptionType(SubscriptionType.Exclusive)
+                // the subscription is throwaway, so keep it off the broker once the consumer disconnects
+                .subscriptionMode(SubscriptionMode.NonDurable)
+                .subscriptionInitialPosition(SubscriptionInitialPosition.Earliest)
+                .batchReceivePolicy(BatchPipeline.batchReceivePolicy(configProps))
+                .readCompacted(Boolean.parseBoolean(configProps.getProperty("readCompacted", "false").trim()))
+                .subscribe()) {
 
             log.info("📡 Pripojený k topicu: {}", topic);
+            if (metricsReporter != null) {
+                metricsReporter.addLastMessageIdSource(consumer::getLastMessageIds);
+            }
 
-            if (fromTimestampStr != null && !fromTimestampStr.isEmpty()) {
-                try {
-                    SimpleDateFormat sdf = new SimpleDateFormat(Constants.DATE_FORMAT);
-                    Date fromDate = sdf.parse(fromTimestampStr);
-                    long timestampMillis = fromDate.getTime();
+            try {
+                Long timestampMillis = scanFrom(processor, parseTimestamp(fromTimestampStr));
+                if (timestampMillis != null) {
                     consumer.seek(timestampMillis);
                     log.info("⏱️ Setujem fromTimestampStr: {} ({} ms)", fromTimestampStr, timestampMillis);
-                } catch (Exception e) {
-                    log.warn("⚠️ Nepodarilo sa parsovať fromTimestamp '{}'", fromTimestampStr, e);
                 }
+            } catch (Exception e) {
+                log.warn("⚠️ Nepodarilo sa parsovať fromTimestamp '{}'", fromTimestampStr, e);
             }
 
             log.info("⏳ Čakám na správy...");
+            consume(new PulsarSource(consumer), configProps, processor, writer, rawHandler);
+        }
+    }
 
-            messages.set(consumeMessages(consumer, pattern, pojoSchema, waitForNextMessageAfterAllRead));
-
-        } catch (PulsarClientException e) {
-            log.error("❌ Chyba pri práci s Pulsar klientom", e);
+    /**
+     * Runs the sequential loop or the pipeline over the source. With a raw handler (dump or queries), messages
+     * go to it in the sequential loop and the pipeline is not used.
+     */
+    private static void consume(MessageSource source, Properties configProps, MessageProcessor processor,
+                                MessageWriter writer, MessageHandler rawHandler) {
+        boolean waitForNextMessageAfterAllRead = configProps.getProperty("waitForNextMessageAfterAllRead").equals("true");
+        if (rawHandler != null) {
+            consumeMessages(source, rawHandler, waitForNextMessageAfterAllRead);
+        } else if (Boolean.parseBoolean(configProps.getProperty("pipeline", "false").trim())) {
+            log.info("🚀 Spúšťam pipeline režim (batchReceive + paralelné dekódovanie).");
+            BatchPipeline.fromConfig(configProps, processor, writer)
+                    .run(source, waitForNextMessageAfterAllRead, () -> running);
+        } else {
+            consumeMessages(source, MessageHandler.decoding(processor, writer), waitForNextMessageAfterAllRead);
         }
+    }
+
+    /**
+     * Start of a scan, moved up to the lower {@code publishTime} bound of the metadata filter, so the reader
+     * seeks past what the filter would reject anyway.
+     */
+    static Long scanFrom(MessageProcessor processor, Long fromMillis) {
+        MetadataFilter metadataFilter = processor.getMetadataFilter();
+        return metadataFilter == null ? fromMillis : metadataFilter.narrowFrom(fromMillis);
+    }
+
+    /**
+     * End of a scan, moved down to the upper {@code publishTime} bound of the metadata filter.
+     */
+    static Long scanTo(MessageProcessor processor, Long toMillis) {
+        MetadataFilter metadataFilter = processor.getMetadataFilter();
+        return metadataFilter == null ? toMillis : metadataFilter.narrowTo(toMillis);
+    }
 
-        if (!messages.get().isEmpty() && outputFilePath[0] != null && !messagesWritten) {
-            ensureOutputDirectoryExists(Constants.OUTPUT_DIR);
-            MessageSaver.writeMessages(messages.get(), outputFilePath[0]);
-            log.info("📝 Zapísaných {} správ do súboru: {}", messages.get().size(), outputFilePath[0]);
-            messagesWritten = true;
+    /**
+     * Parses a timestamp in {@link Constants#DATE_FORMAT}; returns {@code null} for an empty value.
+     */
+    static Long parseTimestamp(String value) throws ParseException {
+        if (value == null || value.isEmpty()) {
+            return null;
         }
+        return new SimpleDateFormat(Constants.DATE_FORMAT).parse(value).getTime();
+    }
 
-        if (!messagesWritten) {
+    /**
+     * Closes the writer and reports the result once. Returns {@code false} when the output could not be closed.
+     */
+    private static synchronized boolean closeWriter(MessageWriter writer) {
+        if (writer == null) {
+            return true;
+        }
+        boolean closed = true;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.error("❌ Chyba pri zatváraní výstupného súboru: {}", writer.getOutputFilePath(), e);
+            closed = false;
+        }
+        if (!reportedOutputs.add(writer)) {
+            return closed;
+        }
+        if (writer.getWrittenCount() > 0) {
+            log.info("📝 Zapísaných {} správ do súboru: {}", writer.getWrittenCount(), writer.getOutputFilePath());
+        } else {
             log.info("📭 Žiadne správy neboli nájdené v topiku.");
         }
+        return closed;
+    }
 
-        log.info("✅ Aplikácia ukončená.");
+    private static boolean closeWriters(List<MessageWriter> writers) {
+        boolean closed = true;
+        for (MessageWriter writer : writers) {
+            closed &= closeWriter(writer);
+        }
+        return closed;
+    }
+
+    /**
+     * Closes the raw dump and reports the result once. Returns {@code false} when the dump could not be closed.
+     */
+    private static synchronized boolean closeDump(SegmentWriter dumpWriter) {
+        if (dumpWriter == null) {
+            return true;
+        }
+        boolean closed = true;
+        try {
+            dumpWriter.close();
+        } catch (IOException e) {
+            log.error("❌ Chyba pri zatváraní dumpu: {}", dumpWriter.getDirectory(), e);
+            closed = false;
+        }
+        if (reportedOutputs.add(dumpWriter)) {
+            log.info("💾 Uložených {} surových správ do: {}", dumpWriter.getCount(), dumpWriter.getDirectory());
+        }
+        return closed;
+    }
+
+    /**
+     * Writes the aggregation summary once. Returns {@code false} when it could not be written.
+     */
+    private static synchronized boolean closeAggregate(Aggregator aggregator) {
+        if (aggregator == null || !reportedOutputs.add(aggregator)) {
+            return true;
+        }
+        try {
+            aggregator.write();
+        } catch (IOException e) {
+            log.error("❌ Chyba pri zápise súhrnu agregácie: {}", aggregator.getFile(), e);
+            return false;
+        }
+        log.info("📊 Súhrn {} skupín zapísaný do: {}", aggregator.getGroupCount(), aggregator.getFile());
+        return true;
     }
 
-    private static PulsarClient setupPulsarClient(String serviceUrl, String token) throws PulsarClientException {
+    private static PulsarClient setupPulsarClient(String serviceUrl, AccessTokenProvider tokenProvider) throws PulsarClientException {
         return PulsarClient.builder()
                 .serviceUrl(serviceUrl)
-                .authentication(AuthenticationFactory.token(token))
+                .authentication(AuthenticationFactory.token(tokenProvider))
                 .build();
     }
 
-    private static List<String> consumeMessages(Consumer<byte[]> consumer, Pattern pattern, String pojoSchema, boolean waitForNextMessageAfterAllRead) {
-        List<String> messages = new ArrayList<>();
+    private static void consumeMessages(MessageSource source, MessageHandler handler, boolean waitForNextMessageAfterAllRead) {
         int maxRetries = 3;
         int retryCount = 0;
         while (running) {
             try {
-                Message<byte[]> msg = consumer.receive(5000, java.util.concurrent.TimeUnit.MILLISECONDS);
+                RawMessage msg = source.receive(5000, java.util.concurrent.TimeUnit.MILLISECONDS);
                 if (msg == null) {
+                    if (source.isFinished()) {
+                        log.info("📂 Zdroj správ je vyčerpaný – ukončujem čítanie.");
+                        break;
+                    }
                     log.info("⏱️ Timeout pri čakaní na správu.");
                     if (!waitForNextMessageAfterAllRead) {
                         log.info("🛑 Premenná waitForNextMessageAfterAllRead je false – ukončujem čítanie.");
@@ -177,17 +874,11 @@ public class PulsarConsumer {
                     continue;
                 }
 
-                String parsed = parse(msg.getData(), pojoSchema);
-                Matcher matcher = pattern.matcher(parsed);
-
-                if (matcher.find()) {
-                    messages.add(parsed);
-                    log.info("✅ Zhodná správa: {}", parsed);
-                } else {
-                    log.debug("⏭️ Ignorovaná správa: {}", parsed);
+                if (!handler.handle(msg)) {
+                    break;
                 }
 
-                consumer.acknowledge(msg);
+                source.acknowledge(msg);
                 retryCount = 0; // reset on success
             } catch (PulsarClientException.TimeoutException e) {
                 log.warn("Timeout while receiving message, attempt {}", retryCount + 1);
@@ -206,14 +897,14 @@ public class PulsarConsumer {
             } catch (PulsarClientException e) {
                 log.error("Pulsar client error", e);
                 break;
-            } catch (ParseException e) {
-                log.error("Failed to parse message", e);
+            } catch (IOException e) {
+                log.error("❌ Chyba pri zápise do súboru", e);
+                break;
             } catch (Exception e) {
                 log.error("Unexpected error", e);
                 break;
             }
         }
-        return messages;
     }
 
     private static Properties validateAndLoadConfig(String configPath) {
@@ -232,7 +923,9 @@ public class PulsarConsumer {
         String regex = configProps.getProperty("regex", "");
         String waitProp = configProps.getProperty("waitForNextMessageAfterAllRead", "false").trim().toLowerCase();
 
-        if (topicInput == null || topicInput.isEmpty()) {
+        // a server takes the topic from each query
+        boolean serve = "serve".equalsIgnoreCase(configProps.getProperty("mode", "").trim());
+        if ((topicInput == null || topicInput.isEmpty()) && !serve) {
             log.error("Missing required property: topic");
             return null;
         }
@@ -254,6 +947,97 @@ public class PulsarConsumer {
         }
         configProps.setProperty("waitForNextMessageAfterAllRead", waitProp.isEmpty() ? "false" : waitProp);
 
+        String source = configProps.getProperty("source", "pulsar").trim().toLowerCase();
+        if (!SOURCES.contains(source)) {
+            log.error("Invalid value for source (expected one of {}): {}", SOURCES, source);
+            return null;
+        }
+        configProps.setProperty("source", source);
+
+        String mode = configProps.getProperty("mode", "consume").trim().toLowerCase();
+        if (!MODES.contains(mode)) {
+            log.error("Invalid value for mode (expected one of {}): {}", MODES, mode);
+            return null;
+        }
+        configProps.setProperty("mode", mode);
+
+        String dedup = configProps.getProperty("dedup", "off").trim().toLowerCase();
+        if (!Deduplicator.MODES.contains(dedup)) {
+            log.error("Invalid value for dedup (expected one of {}): {}", Deduplicator.MODES, dedup);
+            return null;
+        }
+        configProps.setProperty("dedup", dedup);
+
+        String aggregateBucket = configProps.getProperty("aggregateBucket", "none").trim().toLowerCase();
+        if (!Aggregator.BUCKETS.contains(aggregateBucket)) {
+            log.error("Invalid value for aggregateBucket (expected one of {}): {}", Aggregator.BUCKETS, aggregateBucket);
+            return null;
+        }
+        configProps.setProperty("aggregateBucket", aggregateBucket);
+
+        String topicOutput = configProps.getProperty("topicOutput", "split").trim().toLowerCase();
+        if (!TOPIC_OUTPUTS.contains(topicOutput)) {
+            log.error("Invalid value for topicOutput (expected one of {}): {}", TOPIC_OUTPUTS, topicOutput);
+            return null;
+        }
+        configProps.setProperty("topicOutput", topicOutput);
+
+        try {
+            MessageWriter.Format.fromProperty(configProps.getProperty("outputFormat"));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid value for outputFormat (expected one of {}): {}",
+                    List.of(MessageWriter.Format.values()), configProps.getProperty("outputFormat"));
+            return null;
+        }
+        try {
+            MessageWriter.Compression.fromProperty(configProps.getProperty("outputCompression"));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid value for outputCompression (expected one of {}): {}",
+                    List.of(MessageWriter.Compression.values()), configProps.getProperty("outputCompression"));
+            return null;
+        }
+
+        String toTimestamp = configProps.getProperty("toTimestamp", "");
+        if (!toTimestamp.isEmpty()) {
+            try {
+                parseTimestamp(toTimestamp);
+            } catch (ParseException e) {
+                log.error("Invalid toTimestamp (expected {}): {}", Constants.DATE_FORMAT, toTimestamp);
+                return null;
+            }
+        }
+
+        for (String key : INTEGER_PROPERTIES) {
+            String value = configProps.getProperty(key);
+            if (value == null) {
+                continue;
+            }
+            try {
+                if (Integer.parseInt(value.trim()) <= 0) {
+                    log.error("Value of {} must be positive: {}", key, value);
+                    return null;
+                }
+            } catch (NumberFormatException e) {
+                log.error("Invalid numeric value for {}: {}", key, value);
+                return null;
+            }
+        }
+
+        // messages per second, fractional rates allowed; 0 = as fast as possible
+        String syntheticRate = configProps.getProperty("syntheticRate");
+        if (syntheticRate != null) {
+            try {
+                double rate = Double.parseDouble(syntheticRate.trim());
+                if (!(rate >= 0) || Double.isInfinite(rate)) {
+                    log.error("Value of syntheticRate must be zero or positive: {}", syntheticRate);
+                    return null;
+                }
+            } catch (NumberFormatException e) {
+                log.error("Invalid numeric value for syntheticRate: {}", syntheticRate);
+                return null;
+            }
+        }
+
         return configProps;
     }
 
@@ -267,4 +1051,23 @@ public class PulsarConsumer {
             }
         }
     }
-}
\ No newline at end of file
+
+    private static final class TopicRun {
+        private final String alias;
+        private final String topic;
+        private final String pojoSchema;
+        private final MessageProcessor processor;
+        private final MessageWriter writer;
+        private final Checkpoint checkpoint;
+
+        private TopicRun(String alias, String pojoSchema, MessageProcessor processor, MessageWriter writer,
+                         Checkpoint checkpoint) {
+            this.alias = alias;
+            this.topic = TopicAliasResolver.resolve(alias);
+            this.pojoSchema = pojoSchema;
+            this.processor = processor;
+            this.writer = writer;
+            this.checkpoint = checkpoint;
+        }
+    }
+}
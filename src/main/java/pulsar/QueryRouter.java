@@ -0,0 +1,371 @@
+package pulsar;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import filter.AhoCorasick;
+import filter.FieldAccessor;
+import filter.FilterCompiler;
+import filter.FilterExpression;
+import filter.PayloadPrefilter;
+import metrics.ConsumerMetrics;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import source.RawMessage;
+import utils.AvroJsonSerializer;
+import utils.AvroParser;
+import utils.MessageSaver;
+import utils.MessageWriter;
+import utils.SchemaVersions;
+import utils.TextBuffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Answers a file of named queries ({@code queriesFile}) in one pass over the topic, writing every message to
+ * the output of each query it matches ({@code <output>_Query_<name>}). A query is a properties group
+ * <pre>
+ * advisors.regex=ADV0001|ADV0002
+ * parties.values=parties.txt
+ * parties.field=payload.partyRole.partyId
+ * created.filter=metadata.eventName == "TASK_CREATED"
+ * </pre>
+ * whose conditions must all hold: {@code regex} is matched against the JSON rendering like the {@code regex}
+ * property, {@code filter} is a field filter and {@code values} names a file with one value per line, matched
+ * as {@code field in (...)} when {@code field} is given and otherwise anywhere in the rendering.
+ * <p>
+ * The raw payload is scanned once by an Aho-Corasick automaton over the literals every query requires, which
+ * selects the queries the message can match; a message no query can match is not decoded. The others are
+ * decoded and, when some candidate needs it, rendered once, and the value lists of all queries are found in the
+ * rendering by a second automaton, so the cost of a message hardly grows with the number of queries.
+ */
+public final class QueryRouter {
+    private static final Logger log = LoggerFactory.getLogger(QueryRouter.class);
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_\\-]+");
+    private static final List<String> KINDS = List.of("regex", "filter", "values", "field");
+
+    private final AvroParser.RecordDecoder decoder;
+    private final AvroJsonSerializer serializer;
+    private final Query[] queries;
+    private final int[] unconditional;
+    private final AhoCorasick rawAutomaton;
+    private final int[][] rawLiteralQueries;
+    private final AhoCorasick valueAutomaton;
+    private final int[][] valueLiteralQueries;
+    private final ThreadLocal<State> state;
+    private final ConsumerMetrics metrics = ConsumerMetrics.get();
+
+    private QueryRouter(AvroParser.RecordDecoder decoder, AvroJsonSerializer serializer, List<Query> queries) {
+        this.decoder = decoder;
+        this.serializer = serializer;
+        this.queries = queries.toArray(new Query[0]);
+        Map<String, List<Integer>> rawLiterals = new LinkedHashMap<>();
+        Map<String, List<Integer>> valueLiterals = new LinkedHashMap<>();
+        List<Integer> unconditional = new ArrayList<>();
+        for (int q = 0; q < this.queries.length; q++) {
+            Query query = this.queries[q];
+            if (query.rawLiterals == null) {
+                unconditional.add(q);
+            } else {
+                for (String literal : query.rawLiterals) {
+                    rawLiterals.computeIfAbsent(literal, l -> new ArrayList<>()).add(q);
+                }
+            }
+            if (query.renderedValues != null) {
+                for (String value : query.renderedValues) {
+                    valueLiterals.computeIfAbsent(value, v -> new ArrayList<>()).add(q);
+                }
+            }
+        }
+        this.unconditional = unconditional.stream().mapToInt(Integer::intValue).toArray();
+        this.rawAutomaton = rawLiterals.isEmpty() ? null : new AhoCorasick(rawLiterals.keySet());
+        this.rawLiteralQueries = toArrays(rawLiterals);
+        this.valueAutomaton = valueLiterals.isEmpty() ? null : new AhoCorasick(valueLiterals.keySet());
+        this.valueLiteralQueries = toArrays(valueLiterals);
+        this.state = ThreadLocal.withInitial(() -> new State(this.queries.length, decoder.getReaderSchema()));
+    }
+
+    /**
+     * Loads {@code queriesFile} and opens one writer per query next to {@code outputFileBase}.
+     */
+    public static QueryRouter fromConfig(Properties configProps, String topicAlias, String pojoSchema,
+                                         String outputFileBase) throws IOException {
+        Path file = Path.of(configProps.getProperty("queriesFile").trim());
+        Properties definitions = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            definitions.load(reader);
+        }
+        Map<String, Map<String, String>> byName = new TreeMap<>();
+        for (String key : definitions.stringPropertyNames()) {
+            int dot = key.lastIndexOf('.');
+            String name = dot > 0 ? key.substring(0, dot) : "";
+            String kind = key.substring(dot + 1);
+            if (!NAME.matcher(name).matches() || !KINDS.contains(kind)) {
+                throw new IllegalArgumentException("Neplatný kľúč dotazu '" + key + "' v " + file + ", očakáva sa <názov>." + KINDS);
+            }
+            byName.computeIfAbsent(name, n -> new HashMap<>()).put(kind, definitions.getProperty(key).trim());
+        }
+        if (byName.isEmpty()) {
+            throw new IllegalArgumentException("Súbor dotazov " + file + " neobsahuje žiadny dotaz");
+        }
+
+        AvroParser.RecordDecoder decoder = AvroParser.decoder(pojoSchema);
+        SchemaVersions schemaVersions = SchemaVersions.forAlias(topicAlias);
+        if (schemaVersions != null) {
+            decoder = decoder.withWriterVersions(schemaVersions);
+        }
+        Schema schema = decoder.getReaderSchema();
+        List<Query> queries = new ArrayList<>();
+        for (Map.Entry<String, Map<String, String>> entry : byName.entrySet()) {
+            String name = entry.getKey();
+            Map<String, String> definition = entry.getValue();
+            List<String> conditions = new ArrayList<>();
+            List<Set<String>> literalSets = new ArrayList<>();
+
+            FilterExpression filter = null;
+            String filterExpression = definition.getOrDefault("filter", "");
+            String field = definition.get("field");
+            Set<String> values = null;
+            if (definition.containsKey("values")) {
+                values = readValues(file.resolveSibling(definition.get("values")));
+                if (field != null) {
+                    // a value list on one field is an "in" filter, with its set lookup and raw literals
+                    String in = inExpression(field, values, schema);
+                    filterExpression = filterExpression.isEmpty() ? in : "(" + filterExpression + ") && " + in;
+                    conditions.add(field + " in " + values.size() + " hodnôt");
+                    values = null;
+                } else {
+                    conditions.add(values.size() + " hodnôt v texte");
+                    PayloadPrefilter prefilter = PayloadPrefilter.forRenderedLiterals(values, schema);
+                    literalSets.add(prefilter == null ? null : prefilter.getLiterals());
+                }
+            } else if (field != null) {
+                throw new IllegalArgumentException("Dotaz '" + name + "' má field bez values");
+            }
+            if (!filterExpression.isEmpty()) {
+                FilterCompiler.CompiledFilter compiled = FilterCompiler.compile(filterExpression, schema);
+                filter = compiled.getExpression();
+                if (definition.containsKey("filter")) {
+                    conditions.add("filter " + definition.get("filter"));
+                }
+                literalSets.add(compiled.getRequiredLiterals().isEmpty() ? null : compiled.getRequiredLiterals());
+            }
+            Pattern pattern = null;
+            String regex = definition.get("regex");
+            if (regex != null) {
+                pattern = Pattern.compile(regex);
+                conditions.add("regex " + regex);
+                PayloadPrefilter prefilter = PayloadPrefilter.forRegex(regex, schema);
+                literalSets.add(prefilter == null ? null : prefilter.getLiterals());
+            }
+            if (conditions.isEmpty()) {
+                throw new IllegalArgumentException("Dotaz '" + name + "' nemá regex, filter ani values");
+            }
+
+            // every condition must hold, so the smallest literal set of any of them selects the candidates
+            Set<String> rawLiterals = null;
+            for (Set<String> literals : literalSets) {
+                if (literals != null && (rawLiterals == null || literals.size() < rawLiterals.size())) {
+                    rawLiterals = literals;
+                }
+            }
+            MessageWriter writer = MessageSaver.openWriter(configProps, outputFileBase + "_Query_" + name);
+            queries.add(new Query(filter, pattern, values, rawLiterals, writer));
+            log.info("🔀 Dotaz {}: {}{}", name, String.join(" && ", conditions),
+                    rawLiterals == null ? "" : ", prefilter " + rawLiterals.size() + " literálov");
+        }
+        // every writer is configured alike, so any of their serializers renders for all
+        return new QueryRouter(decoder, queries.get(0).writer.getSerializer(), queries);
+    }
+
+    public List<MessageWriter> getWriters() {
+        List<MessageWriter> writers = new ArrayList<>();
+        for (Query query : queries) {
+            writers.add(query.writer);
+        }
+        return writers;
+    }
+
+    public int getQueryCount() {
+        return queries.length;
+    }
+
+    /**
+     * Writes the message to every query it matches. Returns {@code false} once an output has been closed.
+     */
+    public boolean handle(RawMessage message) throws IOException {
+        byte[] payload = message.getPayload();
+        State current = state.get();
+        boolean[] candidate = current.candidate;
+        Arrays.fill(candidate, false);
+        for (int q : unconditional) {
+            candidate[q] = true;
+        }
+        if (rawAutomaton != null) {
+            rawAutomaton.forEachMatch(payload, literal -> {
+                for (int q : rawLiteralQueries[literal]) {
+                    candidate[q] = true;
+                }
+            });
+        }
+        if (!contains(candidate)) {
+            metrics.prefilterSkipped();
+            return true;
+        }
+
+        long start = System.nanoTime();
+        GenericData.Record record = decoder.decode(payload);
+        metrics.decoded(System.nanoTime() - start);
+        boolean rendered = false;
+        boolean matched = false;
+        for (int q = 0; q < queries.length; q++) {
+            Query query = queries[q];
+            if (!candidate[q] || query.filter != null && !query.filter.matches(record)) {
+                continue;
+            }
+            if (query.pattern != null || query.renderedValues != null) {
+                if (!rendered) {
+                    render(record, current);
+                    rendered = true;
+                }
+                if (query.renderedValues != null && !current.valueHit[q]
+                        || query.pattern != null && !query.pattern.matcher(current.text).find()) {
+                    continue;
+                }
+            }
+            matched = true;
+            if (!write(query.writer, record, payload, rendered ? current.text : null, current)) {
+                return false;
+            }
+        }
+        if (matched) {
+            metrics.matched();
+        }
+        return true;
+    }
+
+    private boolean write(MessageWriter writer, GenericData.Record record, byte[] payload, TextBuffer text,
+                          State current) throws IOException {
+        if (writer.getFormat() == MessageWriter.Format.AVRO) {
+            return writer.writeEncoded(decoder.getReaderSchema(), decoder.isPassThrough() ? payload : current.encode(record));
+        }
+        return text == null ? writer.write(record) : writer.write(text);
+    }
+
+    private void render(GenericData.Record record, State current) throws IOException {
+        current.text.reset();
+        serializer.write(record, current.generator);
+        current.generator.flush();
+        if (valueAutomaton != null) {
+            boolean[] valueHit = current.valueHit;
+            Arrays.fill(valueHit, false);
+            valueAutomaton.forEachMatch(current.text.toString().getBytes(StandardCharsets.UTF_8), value -> {
+                for (int q : valueLiteralQueries[value]) {
+                    valueHit[q] = true;
+                }
+            });
+        }
+    }
+
+    private static Set<String> readValues(Path file) throws IOException {
+        Set<String> values = new LinkedHashSet<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String value = line.trim();
+            if (!value.isEmpty() && !value.startsWith("#")) {
+                values.add(value);
+            }
+        }
+        if (values.isEmpty()) {
+            throw new IllegalArgumentException("Súbor hodnôt " + file + " je prázdny");
+        }
+        return values;
+    }
+
+    private static String inExpression(String field, Set<String> values, Schema schema) {
+        List<Schema> leaves = FieldAccessor.compile(field, schema).getLeafSchemas();
+        boolean text = leaves.isEmpty() || leaves.get(0).getType() == Schema.Type.STRING || leaves.get(0).getType() == Schema.Type.ENUM;
+        StringJoiner in = new StringJoiner(", ", field + " in (", ")");
+        for (String value : values) {
+            in.add(text ? "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"" : value);
+        }
+        return in.toString();
+    }
+
+    private static int[][] toArrays(Map<String, List<Integer>> literals) {
+        int[][] arrays = new int[literals.size()][];
+        int i = 0;
+        for (List<Integer> queries : literals.values()) {
+            arrays[i++] = queries.stream().mapToInt(Integer::intValue).toArray();
+        }
+        return arrays;
+    }
+
+    private static boolean contains(boolean[] flags) {
+        for (boolean flag : flags) {
+            if (flag) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Query {
+        private final FilterExpression filter;
+        private final Pattern pattern;
+        private final Set<String> renderedValues;
+        private final Set<String> rawLiterals;
+        private final MessageWriter writer;
+
+        private Query(FilterExpression filter, Pattern pattern, Set<String> renderedValues,
+                      Set<String> rawLiterals, MessageWriter writer) {
+            this.filter = filter;
+            this.pattern = pattern;
+            this.renderedValues = renderedValues;
+            this.rawLiterals = rawLiterals;
+            this.writer = writer;
+        }
+    }
+
+    /**
+     * Per-thread buffers: candidate and value flags, the rendering and the Avro encoder.
+     */
+    private static final class State {
+        private final boolean[] candidate;
+        private final boolean[] valueHit;
+        private final TextBuffer text = new TextBuffer();
+        private final JsonGenerator generator;
+        private final GenericDatumWriter<GenericData.Record> datumWriter;
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private BinaryEncoder encoder;
+
+        private State(int queries, Schema schema) {
+            this.candidate = new boolean[queries];
+            this.valueHit = new boolean[queries];
+            this.datumWriter = new GenericDatumWriter<>(schema);
+            try {
+                generator = AvroJsonSerializer.createGenerator(text);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private byte[] encode(GenericData.Record record) throws IOException {
+            out.reset();
+            encoder = EncoderFactory.get().binaryEncoder(out, encoder);
+            datumWriter.write(record, encoder);
+            encoder.flush();
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package pulsar;
+
+import aggregate.Aggregator;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.pulsar.client.api.AuthenticationFactory;
+import org.apache.pulsar.client.api.PulsarClient;
+import org.apache.pulsar.client.api.PulsarClientException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import token.AccessTokenProvider;
+import utils.AvroJsonSerializer;
+import utils.AvroParser;
+import utils.Constants;
+import utils.MessageWriter;
+import utils.SchemaLoader;
+import utils.SyntheticData;
+import utils.TopicAliasResolver;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Long-running query service ({@code mode=serve}): keeps one authenticated {@link PulsarClient} per environment
+ * of {@code env.properties}, every schema parsed and its decoder warmed up, and answers range queries over
+ * HTTP on the loopback interface, so an ad-hoc lookup pays neither JVM start, token request nor connection setup.
+ * Queries are not authenticated, so {@code serverHost} must be a loopback address.
+ * <p>
+ * {@code GET /query?topic=TASK&fromTimestamp=2025-08-21_12-00&filter=...} (or a POST with a properties body) takes
+ * the keys of {@code config.properties} on top of the server's own configuration and streams the matching
+ * messages back as NDJSON while the partitions are still being read; with {@code aggregate=true} the response is
+ * the aggregation summary instead. {@code limit} ends the scan after that many messages. Queries run in parallel,
+ * each on its own thread; a client that disconnects stops its scan.
+ * <p>
+ * The status line is sent before the scan starts, so a query that fails later (a partition that cannot be read,
+ * the server shutting down) ends its response with the line {@code {"queryError": "..."}} instead of just
+ * stopping; a response without it is complete.
+ */
+public class QueryServer implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(QueryServer.class);
+    private static final int WARMUP_MESSAGES = 200;
+
+    private final Properties defaults;
+    private final Map<String, PulsarClient> clients = new ConcurrentHashMap<>();
+    private final Map<String, String> schemas = new ConcurrentHashMap<>();
+    private final BooleanSupplier running;
+    private final HttpServer server;
+    private final ExecutorService queries;
+    private final AtomicLong queryIds = new AtomicLong();
+
+    public QueryServer(Properties configProps, Properties envProps, AccessTokenProvider tokenProvider,
+                       BooleanSupplier running) throws IOException {
+        this.defaults = configProps;
+        this.running = running;
+        String host = configProps.getProperty("serverHost", "127.0.0.1").trim();
+        if (!InetAddress.getByName(host).isLoopbackAddress()) {
+            // queries are not authenticated, anyone reaching the port could read every topic with our token
+            throw new IllegalArgumentException("serverHost musí byť loopback adresa, server nemá autentifikáciu: " + host);
+        }
+        for (String environment : envProps.stringPropertyNames()) {
+            String serviceUrl = envProps.getProperty(environment).trim();
+            if (serviceUrl.startsWith("pulsar://") || serviceUrl.startsWith("pulsar+ssl://")) {
+                clients.put(environment, PulsarClient.builder()
+                        .serviceUrl(serviceUrl)
+                        .authentication(AuthenticationFactory.token(tokenProvider))
+                        .build());
+            }
+        }
+        int port = Integer.parseInt(configProps.getProperty("serverPort", "8089").trim());
+        server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        // platform threads: virtual threads need Java 21
+        queries = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "query");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(queries);
+        server.createContext("/query", this::handle);
+    }
+
+    /**
+     * Parses every schema, runs synthetic messages through its decoder and starts accepting queries.
+     */
+    public void start() {
+        for (String alias : SchemaLoader.aliases()) {
+            try {
+                String pojoSchema = SchemaLoader.loadSchema(alias);
+                AvroParser.RecordDecoder decoder = AvroParser.decoder(pojoSchema);
+                for (byte[] payload : SyntheticData.payloads(decoder.getWriterSchema(), WARMUP_MESSAGES, 42)) {
+                    decoder.decode(payload);
+                }
+                schemas.put(alias, pojoSchema);
+            } catch (RuntimeException e) {
+                log.warn("⚠️ Schému aliasu '{}' sa nepodarilo pripraviť", alias, e);
+            }
+        }
+        server.start();
+        log.info("🛰️ Server dotazov počúva na http://{}:{}/query, prostredia {}, schémy {}",
+                server.getAddress().getHostString(), server.getAddress().getPort(), clients.keySet(), schemas.keySet());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        queries.shutdownNow();
+        for (Map.Entry<String, PulsarClient> client : clients.entrySet()) {
+            try {
+                client.getValue().close();
+            } catch (PulsarClientException e) {
+                log.warn("⚠️ Zatvorenie klienta prostredia {} zlyhalo", client.getKey(), e);
+            }
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long id = queryIds.incrementAndGet();
+        try (exchange) {
+            Properties query;
+            Query prepared;
+            try {
+                query = parse(exchange);
+                prepared = prepare(query, exchange.getResponseBody());
+            } catch (IllegalArgumentException | ParseException e) {
+                log.warn("⚠️ Neplatný dotaz #{}: {}", id, e.getMessage());
+                byte[] error = (e.getMessage() + "\n").getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                exchange.sendResponseHeaders(400, error.length);
+                exchange.getResponseBody().write(error);
+                return;
+            }
+            log.info("🔎 Dotaz #{}: {} {} – {}", id, prepared.alias, query.getProperty("fromTimestamp"), query.getProperty("toTimestamp", ""));
+            exchange.getResponseHeaders().set("Content-Type",
+                    prepared.processor.isAggregating() ? "application/json" : "application/x-ndjson");
+            // length 0 = chunked, so messages reach the client while the scan runs
+            exchange.sendResponseHeaders(200, 0);
+            long start = System.nanoTime();
+            try {
+                prepared.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                prepared.fail("Dotaz bol prerušený, výsledok je neúplný");
+            } catch (IOException | RuntimeException e) {
+                log.warn("⚠️ Dotaz #{} zlyhal", id, e);
+                prepared.fail(String.valueOf(e.getMessage()));
+            }
+            log.info("✅ Dotaz #{}: {} správ za {} ms", id, prepared.writer.getWrittenCount(), (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    /**
+     * Server configuration overlaid with the query string and, for a POST, the properties in the body.
+     */
+    private Properties parse(HttpExchange exchange) throws IOException {
+        Properties query = new Properties();
+        query.putAll(defaults);
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw != null) {
+            for (String parameter : raw.split("&")) {
+                int separator = parameter.indexOf('=');
+                if (separator > 0) {
+                    query.setProperty(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8),
+                            URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        if ("POST".equals(exchange.getRequestMethod())) {
+            query.load(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+        } else if (!"GET".equals(exchange.getRequestMethod())) {
+            throw new IllegalArgumentException("Podporované sú len GET a POST");
+        }
+        return query;
+    }
+
+    private Query prepare(Properties query, OutputStream body) throws IOException, ParseException {
+        String alias = query.getProperty("topic", "").trim();
+        String pojoSchema = schemas.get(alias);
+        if (pojoSchema == null) {
+            throw new IllegalArgumentException("Neznámy alias topicu: '" + alias + "'");
+        }
+        String environment = query.getProperty("environment", "").trim();
+        PulsarClient client = clients.get(environment);
+        if (client == null) {
+            throw new IllegalArgumentException("Neznáme prostredie: '" + environment + "', známe sú " + clients.keySet());
+        }
+        Long from = PulsarConsumer.parseTimestamp(query.getProperty("fromTimestamp", "").trim());
+        if (from == null) {
+            throw new IllegalArgumentException("Chýba fromTimestamp (" + Constants.DATE_FORMAT + ")");
+        }
+        Long to = PulsarConsumer.parseTimestamp(query.getProperty("toTimestamp", "").trim());
+        long limit = Long.parseLong(query.getProperty("limit", "0").trim());
+        String temporalFormat = query.getProperty("jsonTemporalFormat", "epoch").trim();
+        MessageWriter writer = new MessageWriter(body, "dotaz " + alias, MessageWriter.Format.NDJSON,
+                Integer.parseInt(query.getProperty("flushEveryMessages", "1").trim()),
+                new AvroJsonSerializer("iso".equals(temporalFormat)));
+        MessageProcessor processor = PulsarConsumer.createProcessor(query, alias, pojoSchema, writer.getSerializer(), false, null);
+        boolean readCompacted = Boolean.parseBoolean(query.getProperty("readCompacted", "false").trim());
+        return new Query(alias, TopicAliasResolver.resolve(alias), client, from, to, limit, readCompacted, processor, writer, body);
+    }
+
+    private final class Query {
+        private final String alias;
+        private final String topic;
+        private final PulsarClient client;
+        private final Long from;
+        private final Long to;
+        private final long limit;
+        private final boolean readCompacted;
+        private final MessageProcessor processor;
+        private final MessageWriter writer;
+        private final OutputStream body;
+        private final AtomicBoolean disconnected = new AtomicBoolean();
+
+        private Query(String alias, String topic, PulsarClient client, Long from, Long to, long limit,
+                      boolean readCompacted, MessageProcessor processor, MessageWriter writer, OutputStream body) {
+            this.alias = alias;
+            this.topic = topic;
+            this.client = client;
+            this.from = from;
+            this.to = to;
+            this.limit = limit;
+            this.readCompacted = readCompacted;
+            this.processor = processor;
+            this.writer = writer;
+            this.body = body;
+        }
+
+        private void run() throws IOException, PulsarClientException, InterruptedException {
+            MessageHandler decoding = MessageHandler.decoding(processor, writer);
+            MessageHandler handler = message -> {
+                try {
+                    return decoding.handle(message) && (limit <= 0 || writer.getWrittenCount() < limit);
+                } catch (IOException e) {
+                    // the client went away, there is nobody to stream to
+                    disconnected.set(true);
+                    return false;
+                }
+            };
+            new RangeScanner(client, handler)
+                    .readCompacted(readCompacted)
+                    .scan(topic, PulsarConsumer.scanFrom(processor, from), PulsarConsumer.scanTo(processor, to),
+                            () -> running.getAsBoolean() && !disconnected.get());
+            if (!running.getAsBoolean()) {
+                throw new IOException("Server sa ukončuje, výsledok je neúplný");
+            }
+            Aggregator aggregator = processor.getAggregator();
+            if (aggregator != null) {
+                aggregator.write(body);
+            } else {
+                writer.close();
+            }
+        }
+
+        /**
+         * Ends the already started response with the error line; a client that went away gets nothing.
+         */
+        private void fail(String message) {
+            if (disconnected.get()) {
+                return;
+            }
+            String line = "{\"queryError\": \""
+                    + new String(JsonStringEncoder.getInstance().quoteAsString(message)) + "\"}\n";
+            try {
+                if (processor.getAggregator() == null) {
+                    writer.flush();
+                }
+                body.write(line.getBytes(StandardCharsets.UTF_8));
+                body.flush();
+            } catch (IOException e) {
+                log.debug("Chybu dotazu sa nepodarilo odoslať", e);
+            }
+        }
+    }
+}
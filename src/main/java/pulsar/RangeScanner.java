@@ -0,0 +1,211 @@
+package pulsar;
+
+import cache.CachedMessage;
+import cache.PartitionCache;
+import cache.SegmentCache;
+import metrics.ConsumerMetrics;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.PulsarClient;
+import org.apache.pulsar.client.api.PulsarClientException;
+import org.apache.pulsar.client.api.Reader;
+import org.apache.pulsar.client.api.TopicMessageId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import source.PulsarMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Bounded time-range scan: one non-durable {@link Reader} per partition, all partitions read in parallel.
+ * <p>
+ * Every reader seeks to {@code fromTimestamp} and stops as soon as it passes {@code toTimestamp} or reaches
+ * the last message id captured when the scan started, so a historical query ends when its data is read
+ * instead of after a receive timeout. Messages from all partitions go to the shared {@link MessageHandler} as
+ * they arrive; the order within each partition is kept.
+ * <p>
+ * With a {@link SegmentCache}, a partition whose cached run covers {@code fromTimestamp} is replayed from disk
+ * and the reader continues on the broker right after the last cached message; everything read from the broker
+ * is appended to the cache.
+ * <p>
+ * With {@link #readCompacted(boolean)}, the compacted part of a topic yields only the latest message per key,
+ * which makes a lookup by key on a compacted topic cheap.
+ * <p>
+ * With a {@link Checkpoint}, a partition that has a saved position is read from the message right after it
+ * (ignoring {@code fromTimestamp} and the cache), and the last written message of every partition is recorded.
+ */
+public class RangeScanner {
+    private static final Logger log = LoggerFactory.getLogger(RangeScanner.class);
+    private static final int READ_TIMEOUT_MS = 1000;
+
+    private final PulsarClient client;
+    private final MessageHandler handler;
+    private final ConsumerMetrics metrics = ConsumerMetrics.get();
+    private final SegmentCache cache;
+    private final String topicAlias;
+    private final Checkpoint checkpoint;
+    private boolean readCompacted;
+
+    public RangeScanner(PulsarClient client, MessageHandler handler) {
+        this(client, handler, null, null, null);
+    }
+
+    public RangeScanner(PulsarClient client, MessageHandler handler, SegmentCache cache, String topicAlias,
+                        Checkpoint checkpoint) {
+        this.client = client;
+        this.handler = handler;
+        this.cache = cache;
+        this.topicAlias = topicAlias;
+        this.checkpoint = checkpoint;
+    }
+
+    public RangeScanner readCompacted(boolean readCompacted) {
+        this.readCompacted = readCompacted;
+        return this;
+    }
+
+    /**
+     * Scans {@code [fromMillis, toMillis]} on every partition of the topic. Either bound may be {@code null}.
+     * A partition that fails does not stop the others; once they are done the failure is thrown, so the caller
+     * knows the result is incomplete.
+     */
+    public void scan(String topic, Long fromMillis, Long toMillis, BooleanSupplier running)
+            throws PulsarClientException, InterruptedException {
+        List<String> partitions;
+        try {
+            partitions = client.getPartitionsForTopic(topic, true).get();
+        } catch (ExecutionException e) {
+            throw PulsarClientException.unwrap(e.getCause());
+        }
+        log.info("📡 Topic {} má {} partícií, spúšťam paralelné čítanie.", topic, partitions.size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(partitions.size(), r -> {
+            Thread thread = new Thread(r, "pulsar-range-scan");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (String partition : partitions) {
+                results.add(executor.submit(() -> scanPartition(partition, fromMillis, toMillis, running)));
+            }
+            long total = 0;
+            int failed = 0;
+            Throwable failure = null;
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    total += results.get(i).get();
+                } catch (ExecutionException e) {
+                    log.error("❌ Chyba pri čítaní partície {}", partitions.get(i), e.getCause());
+                    failed++;
+                    failure = failure == null ? e.getCause() : failure;
+                }
+            }
+            if (failed > 0) {
+                throw new PulsarClientException("Čítanie " + failed + " z " + partitions.size()
+                        + " partícií topicu " + topic + " zlyhalo, prečítaných len " + total + " správ", failure);
+            }
+            log.info("✅ Range scan dokončený, prečítaných {} správ.", total);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long scanPartition(String partition, Long fromMillis, Long toMillis, BooleanSupplier running) throws Exception {
+        byte[] resumeAfter = checkpoint == null ? null : checkpoint.get(partition);
+        if (resumeAfter != null) {
+            log.info("📌 Partícia {} pokračuje za checkpointom.", partition);
+            return readPartition(partition, MessageId.fromByteArray(resumeAfter), fromMillis, toMillis, running, null);
+        }
+        PartitionCache cached = cache == null ? null : cache.partition(topicAlias, partition);
+        if (cached == null) {
+            return readPartition(partition, null, fromMillis, toMillis, running, null);
+        }
+        try {
+            MessageId startAfter = null;
+            if (cached.covers(fromMillis)) {
+                long[] replayed = {0};
+                boolean completed = cached.replay(fromMillis, toMillis, message -> {
+                    replayed[0]++;
+                    metrics.received(message.getPayload().length);
+                    if (!running.getAsBoolean() || !handler.handle(message)) {
+                        return false;
+                    }
+                    if (checkpoint != null) {
+                        checkpoint.update(partition, message.getMessageId());
+                    }
+                    return true;
+                });
+                log.info("🗄️ Partícia {}: {} správ z lokálnej cache.", partition, replayed[0]);
+                if (!completed || toMillis != null && cached.getLastPublishTime() > toMillis) {
+                    return replayed[0];
+                }
+                startAfter = MessageId.fromByteArray(cached.getLastMessageId());
+                return replayed[0] + readPartition(partition, startAfter, fromMillis, toMillis, running, cached);
+            }
+            cached.reset(fromMillis);
+            return readPartition(partition, null, fromMillis, toMillis, running, cached);
+        } finally {
+            cached.commit();
+            cached.close();
+        }
+    }
+
+    /**
+     * Reads the partition from the broker, either right after {@code startAfter} or from {@code fromMillis},
+     * appending to {@code cached} when given.
+     */
+    private long readPartition(String partition, MessageId startAfter, Long fromMillis, Long toMillis,
+                               BooleanSupplier running, PartitionCache cached) throws Exception {
+        long read = 0;
+        MessageId lastProcessed = null;
+        try (Reader<byte[]> reader = client.newReader()
+                .topic(partition)
+                .startMessageId(startAfter != null ? startAfter : MessageId.earliest)
+                .readCompacted(readCompacted)
+                .create()) {
+            MessageId lastMessageId = lastMessageId(reader);
+            if (startAfter == null && fromMillis != null) {
+                reader.seek(fromMillis);
+            }
+            while (running.getAsBoolean() && reader.hasMessageAvailable()) {
+                Message<byte[]> msg = reader.readNext(READ_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (msg == null) {
+                    continue;
+                }
+                metrics.received(msg);
+                if (cached != null) {
+                    cached.append(CachedMessage.of(msg));
+                }
+                if (toMillis != null && msg.getPublishTime() > toMillis) {
+                    log.debug("⏹️ Partícia {} prekročila toTimestamp.", partition);
+                    break;
+                }
+                read++;
+                if (!handler.handle(new PulsarMessage(msg))) {
+                    break;
+                }
+                lastProcessed = msg.getMessageId();
+                if (lastMessageId != null && msg.getMessageId().compareTo(lastMessageId) >= 0) {
+                    log.debug("⏹️ Partícia {} dosiahla poslednú správu zo začiatku behu.", partition);
+                    break;
+                }
+            }
+        } finally {
+            if (checkpoint != null && lastProcessed != null) {
+                checkpoint.update(partition, lastProcessed.toByteArray());
+            }
+        }
+        log.info("📥 Partícia {}: prečítaných {} správ.", partition, read);
+        return read;
+    }
+
+    private MessageId lastMessageId(Reader<byte[]> reader) throws PulsarClientException {
+        List<TopicMessageId> lastMessageIds = reader.getLastMessageIds();
+        metrics.lastMessageIds(lastMessageIds);
+        return lastMessageIds.isEmpty() ? null : lastMessageIds.get(0);
+    }
+}
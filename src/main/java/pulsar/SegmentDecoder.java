@@ -0,0 +1,123 @@
+package pulsar;
+
+import cache.CachedMessage;
+import cache.SegmentReader;
+import metrics.ConsumerMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.MessageWriter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Offline decode of a raw dump: segment files are cut into chunks of whole records and every chunk is read,
+ * decoded and filtered by a {@link ForkJoinPool} task straight from the memory map.
+ * <p>
+ * Results are written in segment order, like {@link BatchPipeline} does for batches. At most a few chunks per
+ * worker are in flight, so memory stays bounded however large the dump is.
+ */
+public class SegmentDecoder {
+    private static final Logger log = LoggerFactory.getLogger(SegmentDecoder.class);
+
+    private final MessageProcessor processor;
+    private final MessageWriter writer;
+    private final ConsumerMetrics metrics = ConsumerMetrics.get();
+    private final int parallelism;
+    private final int chunkMessages;
+
+    public SegmentDecoder(MessageProcessor processor, MessageWriter writer, int parallelism, int chunkMessages) {
+        this.processor = processor;
+        this.writer = writer;
+        this.parallelism = Math.max(1, parallelism);
+        this.chunkMessages = Math.max(1, chunkMessages);
+    }
+
+    public static SegmentDecoder fromConfig(Properties configProps, MessageProcessor processor, MessageWriter writer) {
+        int workerThreads = Integer.parseInt(configProps.getProperty("workerThreads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())).trim());
+        int batchMaxMessages = Integer.parseInt(configProps.getProperty("batchMaxMessages", "500").trim());
+        return new SegmentDecoder(processor, writer, workerThreads, batchMaxMessages);
+    }
+
+    /**
+     * Decodes every segment under the path (a directory or a single file). Returns the number of messages read.
+     */
+    public long decode(Path input, BooleanSupplier running) throws IOException, InterruptedException {
+        List<Path> segments = SegmentReader.findSegments(input);
+        log.info("🧩 Dekódujem {} segmentov z {} na {} vláknach.", segments.size(), input.toAbsolutePath(), parallelism);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        Deque<ForkJoinTask<Object[]>> inFlight = new ArrayDeque<>();
+        long read = 0;
+        try {
+            for (Path segment : segments) {
+                for (SegmentReader chunk : SegmentReader.chunks(segment, chunkMessages)) {
+                    if (!running.getAsBoolean()) {
+                        return read;
+                    }
+                    inFlight.addLast(pool.submit(() -> decodeChunk(chunk)));
+                    if (inFlight.size() >= 4 * parallelism) {
+                        long written = drain(inFlight, 4 * parallelism - 1);
+                        if (written < 0) {
+                            return read;
+                        }
+                        read += written;
+                    }
+                }
+            }
+            long written = drain(inFlight, 0);
+            read += Math.max(0, written);
+            log.info("✅ Dekódovanie dokončené, prečítaných {} správ.", read);
+            return read;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Object[] decodeChunk(SegmentReader reader) {
+        List<Object> results = new ArrayList<>(chunkMessages);
+        while (reader.hasNext()) {
+            CachedMessage message = reader.next();
+            metrics.received(message.getPayload().length);
+            try {
+                results.add(BatchPipeline.render(processor, writer, message));
+            } catch (Exception e) {
+                log.error("Failed to parse message {}", message, e);
+                results.add(null);
+            }
+        }
+        return results.toArray();
+    }
+
+    /**
+     * Writes finished chunks in order until at most {@code keep} remain. Returns the number of messages
+     * read from them, or {@code -1} once the writer has been closed.
+     */
+    private long drain(Deque<ForkJoinTask<Object[]>> inFlight, int keep) throws IOException, InterruptedException {
+        long read = 0;
+        while (inFlight.size() > keep) {
+            Object[] results;
+            try {
+                results = inFlight.removeFirst().get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Decode worker failed", e.getCause());
+            }
+            read += results.length;
+            for (Object result : results) {
+                if (result != null && !BatchPipeline.write(processor, writer, result)) {
+                    return -1;
+                }
+            }
+        }
+        return read;
+    }
+}
@@ -0,0 +1,165 @@
+package snapshot;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Map from the 128-bit hash of a key to the spill file offset and publish time of its latest version, in
+ * open-addressing tables outside the Java heap.
+ * <p>
+ * Each slot is four longs (hash, offset, publish time; 32 bytes, no object per key), found by linear probing;
+ * the all-zero hash marks an empty slot. The keys are split into stripes by the top bits of the hash, so no
+ * single table outgrows a direct buffer, and each stripe doubles its table when it is 70 % full. That keeps the
+ * cost between 46 and 92 bytes per key. Not thread-safe, {@link SnapshotStore} serializes the calls.
+ */
+final class KeyIndex {
+    /**
+     * Offset of a key whose latest version is a tombstone.
+     */
+    static final long DELETED = -1;
+    private static final int STRIPE_BITS = 6;
+    private static final int SLOT_BYTES = 32;
+    private static final int MIN_SLOTS = 1024;
+    // a direct buffer is addressed by int, so a stripe holds at most 2^25 slots (1 GiB)
+    private static final int MAX_SLOTS = 1 << 25;
+    private static final double MAX_LOAD = 0.7;
+
+    private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+    private long size;
+    private long live;
+
+    KeyIndex(long expectedKeys) {
+        long perStripe = (long) Math.ceil(expectedKeys / (double) stripes.length / MAX_LOAD);
+        int slots = MIN_SLOTS;
+        while (slots < perStripe && slots < MAX_SLOTS) {
+            slots <<= 1;
+        }
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(slots);
+        }
+    }
+
+    /**
+     * Records a version of the key at {@code offset} ({@link #DELETED} for a tombstone). With {@code newerOnly} a
+     * version published before the one already recorded is ignored; returns {@code false} in that case.
+     */
+    boolean put(long high, long low, long offset, long publishTime, boolean newerOnly) {
+        if (high == 0 && low == 0) {
+            // the all-zero hash marks an empty slot
+            low = 1;
+        }
+        Stripe stripe = stripes[(int) (high >>> (64 - STRIPE_BITS))];
+        ByteBuffer table = stripe.table;
+        int slot = (int) low & stripe.mask;
+        while (true) {
+            int position = slot * SLOT_BYTES;
+            long slotHigh = table.getLong(position);
+            long slotLow = table.getLong(position + 8);
+            if (slotHigh == 0 && slotLow == 0) {
+                table.putLong(position, high);
+                table.putLong(position + 8, low);
+                table.putLong(position + 16, offset);
+                table.putLong(position + 24, publishTime);
+                size++;
+                if (offset != DELETED) {
+                    live++;
+                }
+                if (++stripe.size > stripe.resizeAt) {
+                    stripe.grow();
+                }
+                return true;
+            }
+            if (slotHigh == high && slotLow == low) {
+                if (newerOnly && publishTime < table.getLong(position + 24)) {
+                    return false;
+                }
+                long previous = table.getLong(position + 16);
+                live += (offset != DELETED ? 1 : 0) - (previous != DELETED ? 1 : 0);
+                table.putLong(position + 16, offset);
+                table.putLong(position + 24, publishTime);
+                return true;
+            }
+            slot = (slot + 1) & stripe.mask;
+        }
+    }
+
+    /**
+     * Keys seen, including those deleted by a tombstone.
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Keys whose latest version is a record.
+     */
+    long live() {
+        return live;
+    }
+
+    long memoryBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            bytes += stripe.table.capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * Spill file offsets of the latest versions in ascending order, so they are read back sequentially.
+     */
+    long[] liveOffsets() {
+        long[] offsets = new long[Math.toIntExact(live)];
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            for (int slot = 0; slot <= stripe.mask; slot++) {
+                int position = slot * SLOT_BYTES;
+                long offset = stripe.table.getLong(position + 16);
+                if ((stripe.table.getLong(position) != 0 || stripe.table.getLong(position + 8) != 0) && offset != DELETED) {
+                    offsets[count++] = offset;
+                }
+            }
+        }
+        Arrays.sort(offsets);
+        return offsets;
+    }
+
+    private static final class Stripe {
+        private ByteBuffer table;
+        private int mask;
+        private int size;
+        private int resizeAt;
+
+        private Stripe(int slots) {
+            allocate(slots);
+        }
+
+        private void grow() {
+            if (mask + 1 >= MAX_SLOTS) {
+                throw new IllegalStateException("Index snapshotu je plný (" + size + " kľúčov v jednom pruhu)");
+            }
+            ByteBuffer old = table;
+            int oldSlots = mask + 1;
+            allocate(oldSlots << 1);
+            for (int slot = 0; slot < oldSlots; slot++) {
+                int position = slot * SLOT_BYTES;
+                long high = old.getLong(position);
+                long low = old.getLong(position + 8);
+                if (high != 0 || low != 0) {
+                    int target = (int) low & mask;
+                    while (table.getLong(target * SLOT_BYTES) != 0 || table.getLong(target * SLOT_BYTES + 8) != 0) {
+                        target = (target + 1) & mask;
+                    }
+                    table.put(target * SLOT_BYTES, old, position, SLOT_BYTES);
+                }
+            }
+        }
+
+        private void allocate(int slots) {
+            table = ByteBuffer.allocateDirect(slots * SLOT_BYTES).order(ByteOrder.nativeOrder());
+            mask = slots - 1;
+            resizeAt = (int) (slots * MAX_LOAD);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package snapshot;
+
+import cache.CachedMessage;
+import cache.MessageVisitor;
+import filter.FieldAccessor;
+import org.apache.avro.generic.GenericData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import source.RawMessage;
+import utils.AvroParser;
+import utils.MurmurHash3;
+import utils.SchemaVersions;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Latest version of every key of a topic ({@code mode=snapshot}), e.g. the current state of each customer
+ * instead of its whole history.
+ * <p>
+ * Versions are appended to a spill file next to the output and an off-heap {@link KeyIndex} keeps, per 128-bit
+ * MurmurHash3 of the key, the offset of the latest one, so neither payloads nor keys stay on the heap. The key is
+ * the message key, the one topic compaction keeps; on a message key the last version read wins and an empty
+ * payload is a tombstone that removes the key, as in compaction. With {@code snapshotKey} it is a field of the
+ * payload instead (for producers that set no key), and the version with the latest publish time wins. Once the
+ * topic has been read, {@link #emit} hands the latest versions on in the order they were read.
+ */
+public final class SnapshotStore implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(SnapshotStore.class);
+    private static final int HEADER_BYTES = Long.BYTES + Integer.BYTES;
+
+    private final FieldAccessor field;
+    private final AvroParser.RecordDecoder decoder;
+    private final KeyIndex index;
+    private final Path file;
+    private final DataOutputStream out;
+    private final ThreadLocal<long[]> hash = ThreadLocal.withInitial(() -> new long[2]);
+    private long position;
+    private long versions;
+    private long keyless;
+
+    private SnapshotStore(FieldAccessor field, AvroParser.RecordDecoder decoder, long expectedKeys, Path file) throws IOException {
+        this.field = field;
+        this.decoder = decoder;
+        this.index = new KeyIndex(expectedKeys);
+        this.file = file;
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE), 1 << 16));
+    }
+
+    /**
+     * Store configured by {@code snapshotKey} and {@code snapshotExpectedKeys}, spilling to {@code file}.
+     */
+    public static SnapshotStore fromConfig(Properties props, String topicInput, String pojoSchema, Path file) throws IOException {
+        long expectedKeys = Long.parseLong(props.getProperty("snapshotExpectedKeys", "100000").trim());
+        String path = keyField(props);
+        if (path == null) {
+            return new SnapshotStore(null, null, expectedKeys, file);
+        }
+        // only the key field is decoded while reading, the rest waits until the latest version is emitted
+        AvroParser.RecordDecoder decoder = AvroParser.decoder(pojoSchema, List.of(path));
+        SchemaVersions schemaVersions = SchemaVersions.forAlias(topicInput);
+        if (schemaVersions != null) {
+            decoder = decoder.withWriterVersions(schemaVersions);
+        }
+        return new SnapshotStore(FieldAccessor.compile(path, decoder.getReaderSchema()), decoder, expectedKeys, file);
+    }
+
+    /**
+     * Payload field holding the key, or {@code null} when the snapshot is keyed by the message key.
+     */
+    public static String keyField(Properties props) {
+        String path = props.getProperty("snapshotKey", "").trim();
+        return path.isEmpty() ? null : path;
+    }
+
+    /**
+     * Records the message as the latest version of its key; messages without a key are counted and skipped.
+     * Safe to call from several partition threads.
+     */
+    public boolean put(RawMessage message) throws IOException {
+        byte[] payload = message.getPayload();
+        byte[] key = key(message, payload);
+        if (key == null) {
+            synchronized (this) {
+                keyless++;
+            }
+            return true;
+        }
+        long[] hash = this.hash.get();
+        MurmurHash3.hash128(key, key.length, hash);
+        long publishTime = message.getPublishTime();
+        synchronized (this) {
+            versions++;
+            if (field == null && payload.length == 0) {
+                index.put(hash[0], hash[1], KeyIndex.DELETED, publishTime, false);
+            } else if (index.put(hash[0], hash[1], position, publishTime, field != null)) {
+                out.writeLong(publishTime);
+                out.writeInt(payload.length);
+                out.write(payload);
+                position += HEADER_BYTES + payload.length;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hands the latest version of every live key to the visitor, as a message with its payload and publish time,
+     * until the visitor returns {@code false}. Returns the number of versions handed on.
+     */
+    public long emit(MessageVisitor visitor) throws Exception {
+        long[] offsets;
+        synchronized (this) {
+            out.flush();
+            offsets = index.liveOffsets();
+        }
+        log.info("📸 Snapshot: {} kľúčov ({} zmazaných), {} verzií, {} správ bez kľúča, index {} KB, spill {} MB",
+                offsets.length, index.size() - offsets.length, versions, keyless, index.memoryBytes() / 1024,
+                position / (1024 * 1024));
+        long emitted = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (long offset : offsets) {
+                header.clear();
+                read(channel, header, offset);
+                long publishTime = header.getLong(0);
+                ByteBuffer payload = ByteBuffer.allocate(header.getInt(Long.BYTES));
+                read(channel, payload, offset + HEADER_BYTES);
+                emitted++;
+                if (!visitor.visit(new CachedMessage(publishTime, 0, new byte[0], null, Map.of(), payload.array()))) {
+                    break;
+                }
+            }
+        }
+        return emitted;
+    }
+
+    /**
+     * Closes and deletes the spill file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            out.close();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    private byte[] key(RawMessage message, byte[] payload) {
+        if (field == null) {
+            String key = message.getKey();
+            return key == null ? null : key.getBytes(StandardCharsets.UTF_8);
+        }
+        GenericData.Record record;
+        try {
+            record = decoder.decode(payload);
+        } catch (RuntimeException e) {
+            log.debug("Správu sa nepodarilo dekódovať, kľúč snapshotu chýba", e);
+            return null;
+        }
+        Object value = field.first(record);
+        return value == null ? null : value.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void read(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Spill súbor snapshotu je neúplný");
+            }
+        }
+    }
+}
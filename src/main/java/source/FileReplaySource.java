@@ -0,0 +1,51 @@
+package source;
+
+import cache.SegmentCache;
+import cache.SegmentReader;
+import metrics.ConsumerMetrics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays raw messages from segment files (the layout of the segment cache) as fast as the disk delivers them.
+ * <p>
+ * {@code replayPath} may point at a single {@code .seg} file or a directory; by default it is the cache
+ * directory of the topic alias in the configured environment, i.e. whatever earlier range scans with
+ * {@code segmentCache=true} stored there.
+ */
+public class FileReplaySource implements MessageSource {
+    private final SegmentReader reader;
+    private final ConsumerMetrics metrics = ConsumerMetrics.get();
+
+    public FileReplaySource(Path path) throws IOException {
+        this.reader = new SegmentReader(SegmentReader.findSegments(path));
+    }
+
+    public static FileReplaySource fromConfig(Properties configProps, String topicAlias) throws IOException {
+        String defaultPath = SegmentCache.root(configProps).resolve(topicAlias).toString();
+        return new FileReplaySource(Path.of(configProps.getProperty("replayPath", defaultPath).trim()));
+    }
+
+    @Override
+    public RawMessage receive(long timeout, TimeUnit unit) {
+        if (!reader.hasNext()) {
+            return null;
+        }
+        RawMessage message = reader.next();
+        metrics.received(message.getPayload().length);
+        return message;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return !reader.hasNext();
+    }
+
+    @Override
+    public void close() {
+        reader.close();
+    }
+}
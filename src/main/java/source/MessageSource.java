@@ -0,0 +1,57 @@
+package source;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where the consume loop and {@code BatchPipeline} take their messages from: a Pulsar subscription, a replay of
+ * local segment files or a synthetic generator. Sources count the messages they hand out in the consumer
+ * metrics.
+ */
+public interface MessageSource extends Closeable {
+    /**
+     * Returns the next message, or {@code null} when none arrived within the timeout. A finite source keeps
+     * returning {@code null} once it is exhausted.
+     */
+    RawMessage receive(long timeout, TimeUnit unit) throws IOException, InterruptedException;
+
+    /**
+     * Waits up to the timeout for the first message and then adds whatever is available right away, up to
+     * {@code maxMessages}. An empty list means nothing arrived.
+     */
+    default List<RawMessage> receiveBatch(int maxMessages, long timeout, TimeUnit unit) throws IOException, InterruptedException {
+        List<RawMessage> batch = new ArrayList<>();
+        RawMessage message = receive(timeout, unit);
+        while (message != null) {
+            batch.add(message);
+            if (batch.size() >= maxMessages) {
+                break;
+            }
+            message = receive(0, unit);
+        }
+        return batch;
+    }
+
+    /**
+     * Returns {@code true} once a finite source has delivered everything, so the caller can stop without
+     * waiting for a receive timeout. Pulsar subscriptions never finish.
+     */
+    default boolean isFinished() {
+        return false;
+    }
+
+    /**
+     * Confirms that the message has been written. Offline sources have nothing to confirm.
+     */
+    default void acknowledge(RawMessage message) throws IOException {
+    }
+
+    /**
+     * Confirms a written batch, in receive order.
+     */
+    default void acknowledge(List<RawMessage> batch) {
+    }
+}
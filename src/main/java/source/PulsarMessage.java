@@ -0,0 +1,55 @@
+package source;
+
+import org.apache.pulsar.client.api.Message;
+
+import java.util.Map;
+
+/**
+ * {@link RawMessage} view of a received Pulsar message; the message id is serialized only when asked for.
+ */
+public final class PulsarMessage implements RawMessage {
+    private final Message<byte[]> message;
+
+    public PulsarMessage(Message<byte[]> message) {
+        this.message = message;
+    }
+
+    public Message<byte[]> getMessage() {
+        return message;
+    }
+
+    @Override
+    public byte[] getPayload() {
+        return message.getData();
+    }
+
+    @Override
+    public long getPublishTime() {
+        return message.getPublishTime();
+    }
+
+    @Override
+    public long getEventTime() {
+        return message.getEventTime();
+    }
+
+    @Override
+    public byte[] getMessageId() {
+        return message.getMessageId().toByteArray();
+    }
+
+    @Override
+    public String getKey() {
+        return message.hasKey() ? message.getKey() : null;
+    }
+
+    @Override
+    public Map<String, String> getProperties() {
+        return message.getProperties();
+    }
+
+    @Override
+    public String toString() {
+        return message.getMessageId().toString();
+    }
+}
@@ -0,0 +1,83 @@
+package source;
+
+import metrics.ConsumerMetrics;
+import org.apache.pulsar.client.api.Consumer;
+import org.apache.pulsar.client.api.Message;
+import org.apache.pulsar.client.api.MessageId;
+import org.apache.pulsar.client.api.Messages;
+import org.apache.pulsar.client.api.PulsarClientException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Messages of a Pulsar subscription. The consumer stays owned by the caller and is not closed here.
+ */
+public class PulsarSource implements MessageSource {
+    private static final Logger log = LoggerFactory.getLogger(PulsarSource.class);
+
+    private final Consumer<byte[]> consumer;
+    private final ConsumerMetrics metrics = ConsumerMetrics.get();
+
+    public PulsarSource(Consumer<byte[]> consumer) {
+        this.consumer = consumer;
+    }
+
+    @Override
+    public RawMessage receive(long timeout, TimeUnit unit) throws PulsarClientException {
+        Message<byte[]> message = consumer.receive((int) unit.toMillis(timeout), TimeUnit.MILLISECONDS);
+        if (message == null) {
+            return null;
+        }
+        metrics.received(message);
+        return new PulsarMessage(message);
+    }
+
+    /**
+     * Uses {@link Consumer#batchReceive()}, so size and wait time come from the consumer's
+     * {@code BatchReceivePolicy} rather than the arguments.
+     */
+    @Override
+    public List<RawMessage> receiveBatch(int maxMessages, long timeout, TimeUnit unit) throws PulsarClientException {
+        Messages<byte[]> messages = consumer.batchReceive();
+        List<RawMessage> batch = new ArrayList<>(messages.size());
+        for (Message<byte[]> message : messages) {
+            metrics.received(message);
+            batch.add(new PulsarMessage(message));
+        }
+        return batch;
+    }
+
+    @Override
+    public void acknowledge(RawMessage message) throws PulsarClientException {
+        consumer.acknowledge(((PulsarMessage) message).getMessage());
+    }
+
+    /**
+     * Acknowledges the last message of each partition in the batch cumulatively.
+     */
+    @Override
+    public void acknowledge(List<RawMessage> batch) {
+        Map<String, MessageId> lastPerPartition = new LinkedHashMap<>();
+        for (RawMessage message : batch) {
+            Message<byte[]> pulsarMessage = ((PulsarMessage) message).getMessage();
+            lastPerPartition.put(pulsarMessage.getTopicName(), pulsarMessage.getMessageId());
+        }
+        for (MessageId messageId : lastPerPartition.values()) {
+            consumer.acknowledgeCumulativeAsync(messageId)
+                    .exceptionally(e -> {
+                        log.warn("⚠️ Nepodarilo sa potvrdiť správu {}", messageId, e);
+                        return null;
+                    });
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
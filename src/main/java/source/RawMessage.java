@@ -0,0 +1,32 @@
+package source;
+
+import java.util.Map;
+
+/**
+ * Undecoded message with the metadata every {@link MessageSource} can provide.
+ */
+public interface RawMessage {
+    byte[] getPayload();
+
+    long getPublishTime();
+
+    /**
+     * Event time set by the producer, {@code 0} when it set none or the message comes from a segment written
+     * before segments recorded it.
+     */
+    default long getEventTime() {
+        return 0;
+    }
+
+    /**
+     * Serialized message id; for Pulsar the output of {@code MessageId.toByteArray()}.
+     */
+    byte[] getMessageId();
+
+    /**
+     * Message key, or {@code null} when the message has none.
+     */
+    String getKey();
+
+    Map<String, String> getProperties();
+}
@@ -0,0 +1,81 @@
+package source;
+
+import cache.CachedMessage;
+import metrics.ConsumerMetrics;
+import org.apache.avro.Schema;
+import utils.SyntheticData;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates valid random Avro payloads for a schema, optionally throttled to a fixed rate.
+ * <p>
+ * A pool of distinct payloads is generated up front (see {@link SyntheticData}) and handed out round robin,
+ * so generation never limits the measured throughput. Message ids are the sequence number as 8 bytes and the
+ * publish time is the time of receive.
+ */
+public class SyntheticSource implements MessageSource {
+    private static final int POOL_SIZE = 10_000;
+
+    private final List<byte[]> payloads;
+    private final long count;
+    private final double ratePerSecond;
+    private final ConsumerMetrics metrics = ConsumerMetrics.get();
+    private long sequence;
+    private long startNanos;
+
+    /**
+     * @param ratePerSecond messages per second, {@code 0} for as fast as possible
+     */
+    public SyntheticSource(Schema schema, long count, double ratePerSecond, long seed) {
+        this.payloads = SyntheticData.payloads(schema, (int) Math.min(count, POOL_SIZE), seed);
+        this.count = count;
+        this.ratePerSecond = ratePerSecond;
+    }
+
+    public static SyntheticSource fromConfig(Properties configProps, Schema schema) {
+        long count = Long.parseLong(configProps.getProperty("syntheticCount", "1000000").trim());
+        double rate = Double.parseDouble(configProps.getProperty("syntheticRate", "0").trim());
+        long seed = Long.parseLong(configProps.getProperty("syntheticSeed", "42").trim());
+        return new SyntheticSource(schema, count, rate, seed);
+    }
+
+    @Override
+    public RawMessage receive(long timeout, TimeUnit unit) throws InterruptedException {
+        if (sequence >= count) {
+            return null;
+        }
+        if (ratePerSecond > 0) {
+            long now = System.nanoTime();
+            if (sequence == 0) {
+                startNanos = now;
+            }
+            long wait = startNanos + (long) (sequence * 1_000_000_000d / ratePerSecond) - now;
+            if (wait > unit.toNanos(timeout)) {
+                TimeUnit.NANOSECONDS.sleep(unit.toNanos(timeout));
+                return null;
+            }
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+        byte[] payload = payloads.get((int) (sequence % payloads.size()));
+        byte[] messageId = ByteBuffer.allocate(Long.BYTES).putLong(sequence).array();
+        sequence++;
+        metrics.received(payload.length);
+        return new CachedMessage(System.currentTimeMillis(), 0, messageId, null, Map.of(), payload);
+    }
+
+    @Override
+    public boolean isFinished() {
+        return sequence >= count;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,36 @@
+package token;
+
+import java.time.Instant;
+
+/**
+ * Access token together with the instant it expires at. {@link #toString()} never contains the token value.
+ */
+public final class AccessToken {
+    private final String value;
+    private final Instant expiresAt;
+
+    public AccessToken(String value, Instant expiresAt) {
+        this.value = value;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Whether the token is still valid for at least {@code marginSeconds}.
+     */
+    public boolean isValidFor(long marginSeconds) {
+        return Instant.now().plusSeconds(marginSeconds).isBefore(expiresAt);
+    }
+
+    @Override
+    public String toString() {
+        return "AccessToken{expiresAt=" + expiresAt + "}";
+    }
+}
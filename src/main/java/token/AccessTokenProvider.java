@@ -0,0 +1,162 @@
+package token;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a valid access token for the Pulsar client.
+ * <p>
+ * The token is taken from the encrypted {@link TokenCache} when one is still valid, so repeated runs start
+ * without a round trip to the token endpoint. Once the client is connected, a daemon thread refreshes the
+ * token {@code tokenRefreshMarginSeconds} before it expires, but at most half of its lifetime before and never
+ * sooner than {@value #MIN_DELAY_SECONDS} s after the previous refresh, so short-lived tokens do not make it
+ * loop against the token endpoint. The provider is passed to {@code AuthenticationFactory.token(Supplier)}, so
+ * reconnects and broker auth challenges always get the current token and long tails survive token expiry;
+ * those calls come from Pulsar IO threads and request a token themselves only once the current one has expired.
+ */
+public class AccessTokenProvider implements Supplier<String>, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(AccessTokenProvider.class);
+    private static final long RETRY_SECONDS = 30;
+    private static final long MIN_DELAY_SECONDS = 30;
+
+    private final TokenCache cache;
+    private final long refreshMarginSeconds;
+    private ScheduledExecutorService scheduler;
+    private AccessToken current;
+    // refresh margin of the current token, capped at half of its lifetime
+    private long currentMarginSeconds;
+
+    private AccessTokenProvider(TokenCache cache, long refreshMarginSeconds) {
+        this.cache = cache;
+        this.refreshMarginSeconds = refreshMarginSeconds;
+    }
+
+    /**
+     * Creates a provider configured by the {@code tokenCache} (default true), {@code tokenCacheFile} and
+     * {@code tokenRefreshMarginSeconds} (default 300) properties.
+     */
+    public static AccessTokenProvider fromConfig(Properties configProps) throws TokenGenerationException {
+        long refreshMarginSeconds = Long.parseLong(configProps.getProperty("tokenRefreshMarginSeconds", "300").trim());
+        TokenCache cache = null;
+        if (Boolean.parseBoolean(configProps.getProperty("tokenCache", "true").trim())) {
+            String cacheFile = configProps.getProperty("tokenCacheFile", "").trim();
+            Path path = cacheFile.isEmpty()
+                    ? Path.of(System.getProperty("user.home"), ".pulsar-consumer", "token.cache")
+                    : Path.of(cacheFile);
+            cache = new TokenCache(path, JwtAndAccessTokenGenerator.cacheKey(), JwtAndAccessTokenGenerator.cacheContext());
+        }
+        return new AccessTokenProvider(cache, refreshMarginSeconds);
+    }
+
+    /**
+     * Returns the current token. Before the background refresh runs, a token closer to expiry than the refresh
+     * margin is replaced; afterwards a new one is requested here only when the current one has expired, the
+     * scheduler renews it ahead of time.
+     */
+    public synchronized AccessToken getToken() throws TokenGenerationException {
+        if (current == null && cache != null) {
+            AccessToken cached = cache.read();
+            if (cached != null && cached.isValidFor(0)) {
+                use(cached);
+                log.info("♻️ Použitý access token z cache, platný do {}.", current.getExpiresAt());
+            }
+        }
+        if (current == null || !current.isValidFor(scheduler == null ? currentMarginSeconds : 0)) {
+            use(request());
+        }
+        return current;
+    }
+
+    /**
+     * Token for the Pulsar client. Falls back to the last known token when a refresh fails, leaving the
+     * broker to decide whether it is still acceptable.
+     */
+    @Override
+    public String get() {
+        try {
+            return getToken().getValue();
+        } catch (TokenGenerationException e) {
+            synchronized (this) {
+                if (current != null) {
+                    log.warn("⚠️ Obnova tokenu zlyhala, použijem posledný známy token.", e);
+                    return current.getValue();
+                }
+            }
+            throw new IllegalStateException("Access token is not available", e);
+        }
+    }
+
+    /**
+     * Starts refreshing the token in the background ahead of its expiry.
+     */
+    public synchronized void startBackgroundRefresh() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "token-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduleNext();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private AccessToken request() throws TokenGenerationException {
+        AccessToken token = JwtAndAccessTokenGenerator.requestAccessToken();
+        if (cache != null) {
+            cache.write(token);
+        }
+        return token;
+    }
+
+    private synchronized void use(AccessToken token) {
+        current = token;
+        currentMarginSeconds = Math.min(refreshMarginSeconds, secondsLeft(token) / 2);
+    }
+
+    private static long secondsLeft(AccessToken token) {
+        return Math.max(0, Duration.between(Instant.now(), token.getExpiresAt()).getSeconds());
+    }
+
+    private synchronized void scheduleNext() {
+        if (scheduler == null) {
+            return;
+        }
+        long delay = current == null ? 0 : Math.max(MIN_DELAY_SECONDS, secondsLeft(current) - currentMarginSeconds);
+        scheduler.schedule(this::refreshInBackground, delay, TimeUnit.SECONDS);
+        log.debug("⏰ Ďalšia obnova tokenu o {} s.", delay);
+    }
+
+    private void refreshInBackground() {
+        try {
+            // requested outside the lock, so IO threads asking for the token are not held up by the HTTP call
+            use(request());
+            scheduleNext();
+        } catch (TokenGenerationException | RuntimeException e) {
+            log.warn("⚠️ Obnova tokenu na pozadí zlyhala, ďalší pokus o {} s.", RETRY_SECONDS, e);
+            synchronized (this) {
+                if (scheduler != null) {
+                    scheduler.schedule(this::refreshInBackground, RETRY_SECONDS, TimeUnit.SECONDS);
+                }
+            }
+        }
+    }
+}
@@ -12,7 +12,10 @@ import com.nimbusds.jwt.JWTClaimsSet;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
+import java.time.Duration;
 import java.util.Scanner;
 import java.time.Instant;
 import java.util.Date;
@@ -42,6 +45,16 @@ public class JwtAndAccessTokenGenerator {
     private static final String PROP_CLIENT_ASSERTION_TYPE = "CLIENT_ASSERTION_TYPE";
     private static final String PROP_JWK_RESOURCE = "JWK_RESOURCE";
 
+    // Used when the token endpoint does not return expires_in
+    private static final long DEFAULT_EXPIRES_IN_SECONDS = 3600;
+
+    private static final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static RSAKey rsaKey;
+    private static JWSSigner signer;
+
     static Properties props = PropertyLoader.load("env.properties");
     static {
         log.debug("🔑 Loaded properties: {}", props);
@@ -64,38 +77,13 @@ public class JwtAndAccessTokenGenerator {
         }
     }
 
-    public static String generateAccessToken() throws TokenGenerationException {
-        ClassLoader classLoader = JwtAndAccessTokenGenerator.class.getClassLoader();
-
-        String jwkJson;
-        try (InputStream inputStream = classLoader.getResourceAsStream(jwkResource);
-             Scanner scanner = inputStream != null ? new Scanner(inputStream, StandardCharsets.UTF_8) : null) {
-            if (inputStream == null || scanner == null) {
-                log.error("❌ File {} not found in resources.", jwkResource);
-                throw new TokenGenerationException(String.format("File %s does not exist.", jwkResource));
-            }
-            if (!scanner.hasNext()) {
-                log.error("❌ JWK file {} is empty.", jwkResource);
-                throw new TokenGenerationException(String.format("JWK file %s is empty.", jwkResource));
-            }
-            jwkJson = scanner.useDelimiter("\\A").next();
-        } catch (IOException e) {
-            log.error("❌ Error reading JWK file", e);
-            throw new TokenGenerationException("Error reading JWK file", e);
-        }
-
-        RSAKey rsaKey;
-        try {
-            JWK jwk = JWK.parse(jwkJson);
-            rsaKey = jwk.toRSAKey();
-        } catch (ParseException e) {
-            log.error("❌ Error parsing JWK to RSAKey", e);
-            throw new TokenGenerationException("Error parsing JWK to RSAKey", e);
-        }
-
+    /**
+     * Requests a new access token from the token endpoint. The JWK is read and parsed only on the first call;
+     * the signer and the HTTP client are reused afterwards.
+     */
+    public static AccessToken requestAccessToken() throws TokenGenerationException {
         String jwt;
         try {
-            JWSSigner signer = new RSASSASigner(rsaKey);
             Instant now = Instant.now();
 
             JWTClaimsSet claimsSet = new JWTClaimsSet.Builder()
@@ -112,7 +100,7 @@ public class JwtAndAccessTokenGenerator {
                     claimsSet
             );
 
-            signedJWT.sign(signer);
+            signedJWT.sign(signer());
             jwt = signedJWT.serialize();
             log.debug("🔐 JWT generated successfully (token value not logged).");
         } catch (JOSEException e) {
@@ -133,14 +121,15 @@ public class JwtAndAccessTokenGenerator {
 
         HttpRequest request = HttpRequest.newBuilder()
                 .uri(URI.create(tokenEndpoint))
+                .timeout(Duration.ofSeconds(30))
                 .header("Content-Type", "application/x-www-form-urlencoded")
                 .POST(HttpRequest.BodyPublishers.ofString(body))
                 .build();
 
-        HttpClient client = HttpClient.newHttpClient();
+        Instant requestedAt = Instant.now();
         HttpResponse<String> response;
         try {
-            response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
         } catch (IOException | InterruptedException e) {
             if (e instanceof InterruptedException) {
                 Thread.currentThread().interrupt();
@@ -149,15 +138,12 @@ public class JwtAndAccessTokenGenerator {
             throw new TokenGenerationException("Error sending HTTP request", e);
         }
 
-        log.debug("📨 Response from token endpoint: {}", response.body());
-
         if (response.statusCode() != 200) {
             log.error("❌ Token endpoint returned error: {} - {}", response.statusCode(), response.body());
             throw new TokenGenerationException(
                     String.format("Token endpoint error: %d - %s", response.statusCode(), response.body()));
         }
 
-        ObjectMapper mapper = new ObjectMapper();
         JsonNode jsonNode;
         try {
             jsonNode = mapper.readTree(response.body());
@@ -167,11 +153,84 @@ public class JwtAndAccessTokenGenerator {
         }
         String accessToken = jsonNode.has("access_token") ? jsonNode.get("access_token").asText() : null;
         if (accessToken == null) {
-            log.error("❌ Access token not found in response: {}", response.body());
+            log.error("❌ Access token not found in token endpoint response.");
             throw new TokenGenerationException("Access token not found in response.");
         }
+        long expiresIn = jsonNode.has("expires_in") ? jsonNode.get("expires_in").asLong(DEFAULT_EXPIRES_IN_SECONDS) : DEFAULT_EXPIRES_IN_SECONDS;
+        // measured from the request, so the estimate errs on the early side
+        Instant expiresAt = requestedAt.plusSeconds(expiresIn);
+
+        log.info("✅ Access token obtained successfully, valid until {} (token value not logged).", expiresAt);
+        return new AccessToken(accessToken, expiresAt);
+    }
+
+    /**
+     * Secret for encrypting the on-disk token cache, derived from the private key. Whoever can read the
+     * cache key can sign a token request anyway, so the cache is no weaker than the JWK file.
+     */
+    static byte[] cacheKey() throws TokenGenerationException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update("pulsar-consumer-token-cache".getBytes(StandardCharsets.UTF_8));
+            digest.update(rsaKey().getPrivateExponent().decode());
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new TokenGenerationException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Identifies the token request, so a cached token is never reused for another endpoint, subject or scope.
+     */
+    static String cacheContext() {
+        return String.join("|", tokenEndpoint, audience, subject, issuer, scope);
+    }
+
+    private static synchronized JWSSigner signer() throws TokenGenerationException {
+        if (signer == null) {
+            try {
+                signer = new RSASSASigner(rsaKey());
+            } catch (JOSEException e) {
+                log.error("❌ Error creating JWT signer", e);
+                throw new TokenGenerationException("Error creating JWT signer", e);
+            }
+        }
+        return signer;
+    }
+
+    private static synchronized RSAKey rsaKey() throws TokenGenerationException {
+        if (rsaKey != null) {
+            return rsaKey;
+        }
+        ClassLoader classLoader = JwtAndAccessTokenGenerator.class.getClassLoader();
 
-        log.info("✅ Access token obtained successfully (token value not logged).");
-        return accessToken;
+        String jwkJson;
+        try (InputStream inputStream = classLoader.getResourceAsStream(jwkResource);
+             Scanner scanner = inputStream != null ? new Scanner(inputStream, StandardCharsets.UTF_8) : null) {
+            if (inputStream == null || scanner == null) {
+                log.error("❌ File {} not found in resources.", jwkResource);
+                throw new TokenGenerationException(String.format("File %s does not exist.", jwkResource));
+            }
+            if (!scanner.hasNext()) {
+                log.error("❌ JWK file {} is empty.", jwkResource);
+                throw new TokenGenerationException(String.format("JWK file %s is empty.", jwkResource));
+            }
+            jwkJson = scanner.useDelimiter("\\A").next();
+        } catch (IOException e) {
+            log.error("❌ Error reading JWK file", e);
+            throw new TokenGenerationException("Error reading JWK file", e);
+        }
+
+        try {
+            JWK jwk = JWK.parse(jwkJson);
+            rsaKey = jwk.toRSAKey();
+        } catch (ParseException e) {
+            log.error("❌ Error parsing JWK to RSAKey", e);
+            throw new TokenGenerationException("Error parsing JWK to RSAKey", e);
+        }
+        if (!rsaKey.isPrivate()) {
+            throw new TokenGenerationException(String.format("JWK %s does not contain a private key.", jwkResource));
+        }
+        return rsaKey;
     }
-}
\ No newline at end of file
+}
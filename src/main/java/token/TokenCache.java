@@ -0,0 +1,110 @@
+package token;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Access token cached on disk between runs, encrypted with AES-GCM.
+ * <p>
+ * File layout: magic, 12-byte IV, then the ciphertext of {@code expiresAt millis (8 bytes) + token UTF-8}.
+ * The request context (endpoint, subject, scope...) is authenticated as associated data, so a cache written for
+ * a different configuration fails to decrypt and is ignored. Writes go to a temporary file that is atomically
+ * moved into place.
+ */
+final class TokenCache {
+    private static final Logger log = LoggerFactory.getLogger(TokenCache.class);
+    private static final byte[] MAGIC = {'P', 'C', 'T', '1'};
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final SecureRandom random = new SecureRandom();
+
+    private final Path file;
+    private final SecretKeySpec key;
+    private final byte[] context;
+
+    TokenCache(Path file, byte[] key, String context) {
+        this.file = file;
+        this.key = new SecretKeySpec(key, "AES");
+        this.context = context.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the cached token, or {@code null} when there is none or it cannot be read.
+     */
+    AccessToken read() {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            byte[] data = Files.readAllBytes(file);
+            if (data.length <= MAGIC.length + IV_LENGTH || !Arrays.equals(MAGIC, Arrays.copyOf(data, MAGIC.length))) {
+                log.warn("⚠️ Neplatný formát cache tokenu: {}", file);
+                return null;
+            }
+            Cipher cipher = cipher(Cipher.DECRYPT_MODE, Arrays.copyOfRange(data, MAGIC.length, MAGIC.length + IV_LENGTH));
+            byte[] plain = cipher.doFinal(data, MAGIC.length + IV_LENGTH, data.length - MAGIC.length - IV_LENGTH);
+            ByteBuffer buffer = ByteBuffer.wrap(plain);
+            Instant expiresAt = Instant.ofEpochMilli(buffer.getLong());
+            String value = new String(plain, Long.BYTES, plain.length - Long.BYTES, StandardCharsets.UTF_8);
+            return new AccessToken(value, expiresAt);
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            log.warn("⚠️ Cache tokenu sa nepodarilo prečítať, bude vyžiadaný nový token: {}", e.toString());
+            return null;
+        }
+    }
+
+    void write(AccessToken token) {
+        try {
+            byte[] value = token.getValue().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer plain = ByteBuffer.allocate(Long.BYTES + value.length);
+            plain.putLong(token.getExpiresAt().toEpochMilli()).put(value);
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+            byte[] encrypted = cipher(Cipher.ENCRYPT_MODE, iv).doFinal(plain.array());
+
+            Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try {
+                restrictToOwner(temp);
+                ByteBuffer out = ByteBuffer.allocate(MAGIC.length + IV_LENGTH + encrypted.length);
+                out.put(MAGIC).put(iv).put(encrypted);
+                Files.write(temp, out.array());
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            log.debug("💾 Access token uložený do cache: {}", file);
+        } catch (IOException | GeneralSecurityException e) {
+            log.warn("⚠️ Access token sa nepodarilo uložiť do cache: {}", e.toString());
+        }
+    }
+
+    private Cipher cipher(int mode, byte[] iv) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(mode, key, new GCMParameterSpec(TAG_BITS, iv));
+        cipher.updateAAD(context);
+        return cipher;
+    }
+
+    private static void restrictToOwner(Path path) throws IOException {
+        try {
+            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            // not a POSIX file system (Windows): rely on the user profile ACLs
+        }
+    }
+}
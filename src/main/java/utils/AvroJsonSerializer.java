@@ -0,0 +1,225 @@
+package utils;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.PrettyPrinter;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import org.apache.avro.Conversions;
+import org.apache.avro.LogicalType;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericFixed;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.util.Utf8;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Writes decoded Avro data straight into a Jackson {@link JsonGenerator}, without building an intermediate
+ * String per message.
+ * <p>
+ * The layout follows {@code GenericData.Record.toString()} ({@code {"a": 1, "b": [1, 2]}}), so existing
+ * regexes keep matching. Unlike {@code toString()} the output is always valid JSON: unions are written as
+ * their value, bytes and fixed as base64, decimals as numbers and NaN/Infinity as strings. Temporal logical
+ * types stay numeric unless ISO rendering is enabled.
+ */
+public final class AvroJsonSerializer {
+    private static final Conversions.DecimalConversion DECIMAL_CONVERSION = new Conversions.DecimalConversion();
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_CONTENT)
+            .build();
+
+    private final boolean isoTemporals;
+
+    public AvroJsonSerializer(boolean isoTemporals) {
+        this.isoTemporals = isoTemporals;
+    }
+
+    /**
+     * Generator writing UTF-8 straight to the stream; Avro strings are copied as bytes without decoding.
+     */
+    public static JsonGenerator createGenerator(OutputStream out) throws IOException {
+        return JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8).setPrettyPrinter(new RecordPrettyPrinter());
+    }
+
+    public static JsonGenerator createGenerator(Writer out) throws IOException {
+        return JSON_FACTORY.createGenerator(out).setPrettyPrinter(new RecordPrettyPrinter());
+    }
+
+    public void write(IndexedRecord record, JsonGenerator generator) throws IOException {
+        write(record, record.getSchema(), generator);
+    }
+
+    public void write(Object datum, Schema schema, JsonGenerator generator) throws IOException {
+        LogicalType logicalType = schema.getLogicalType();
+        switch (schema.getType()) {
+            case RECORD: {
+                IndexedRecord record = (IndexedRecord) datum;
+                generator.writeStartObject();
+                for (Schema.Field field : schema.getFields()) {
+                    generator.writeFieldName(field.name());
+                    write(record.get(field.pos()), field.schema(), generator);
+                }
+                generator.writeEndObject();
+                break;
+            }
+            case UNION:
+                write(datum, schema.getTypes().get(GenericData.get().resolveUnion(schema, datum)), generator);
+                break;
+            case ARRAY:
+                generator.writeStartArray();
+                for (Object item : (Collection<?>) datum) {
+                    write(item, schema.getElementType(), generator);
+                }
+                generator.writeEndArray();
+                break;
+            case MAP:
+                generator.writeStartObject();
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) datum).entrySet()) {
+                    generator.writeFieldName(entry.getKey().toString());
+                    write(entry.getValue(), schema.getValueType(), generator);
+                }
+                generator.writeEndObject();
+                break;
+            case STRING:
+                if (datum instanceof Utf8 && generator.getOutputTarget() instanceof OutputStream) {
+                    Utf8 utf8 = (Utf8) datum;
+                    generator.writeUTF8String(utf8.getBytes(), 0, utf8.getByteLength());
+                } else {
+                    generator.writeString(datum.toString());
+                }
+                break;
+            case ENUM:
+                generator.writeString(datum.toString());
+                break;
+            case BYTES: {
+                ByteBuffer buffer = (ByteBuffer) datum;
+                if (logicalType instanceof LogicalTypes.Decimal) {
+                    // an empty unscaled value is how some producers write zero
+                    generator.writeNumber(buffer.hasRemaining()
+                            ? DECIMAL_CONVERSION.fromBytes(buffer.duplicate(), schema, logicalType)
+                            : BigDecimal.ZERO);
+                } else if (buffer.hasArray()) {
+                    generator.writeBinary(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                } else {
+                    byte[] bytes = new byte[buffer.remaining()];
+                    buffer.duplicate().get(bytes);
+                    generator.writeBinary(bytes);
+                }
+                break;
+            }
+            case FIXED: {
+                GenericFixed fixed = (GenericFixed) datum;
+                if (logicalType instanceof LogicalTypes.Decimal) {
+                    BigDecimal decimal = DECIMAL_CONVERSION.fromFixed(fixed, schema, logicalType);
+                    generator.writeNumber(decimal);
+                } else {
+                    generator.writeBinary(fixed.bytes());
+                }
+                break;
+            }
+            case INT: {
+                int value = (Integer) datum;
+                if (isoTemporals && logicalType instanceof LogicalTypes.Date) {
+                    generator.writeString(LocalDate.ofEpochDay(value).toString());
+                } else if (isoTemporals && logicalType instanceof LogicalTypes.TimeMillis) {
+                    generator.writeString(LocalTime.ofNanoOfDay(value * 1_000_000L).toString());
+                } else {
+                    generator.writeNumber(value);
+                }
+                break;
+            }
+            case LONG: {
+                long value = (Long) datum;
+                if (isoTemporals && logicalType instanceof LogicalTypes.TimestampMillis) {
+                    generator.writeString(Instant.ofEpochMilli(value).toString());
+                } else if (isoTemporals && logicalType instanceof LogicalTypes.TimestampMicros) {
+                    generator.writeString(Instant.ofEpochSecond(0, value * 1_000L).toString());
+                } else if (isoTemporals && logicalType instanceof LogicalTypes.TimeMicros) {
+                    generator.writeString(LocalTime.ofNanoOfDay(value * 1_000L).toString());
+                } else {
+                    generator.writeNumber(value);
+                }
+                break;
+            }
+            case FLOAT:
+                generator.writeNumber((Float) datum);
+                break;
+            case DOUBLE:
+                generator.writeNumber((Double) datum);
+                break;
+            case BOOLEAN:
+                generator.writeBoolean((Boolean) datum);
+                break;
+            case NULL:
+                generator.writeNull();
+                break;
+            default:
+                throw new IllegalArgumentException("Nepodporovaný Avro typ: " + schema.getType());
+        }
+    }
+
+    /**
+     * Pretty printer reproducing the spacing of {@code GenericData.toString()} on a single line. Root values
+     * get no separator; {@link MessageWriter} writes its own between messages.
+     */
+    public static final class RecordPrettyPrinter implements PrettyPrinter {
+        @Override
+        public void writeRootValueSeparator(JsonGenerator generator) {
+        }
+
+        @Override
+        public void writeStartObject(JsonGenerator generator) throws IOException {
+            generator.writeRaw('{');
+        }
+
+        @Override
+        public void writeEndObject(JsonGenerator generator, int nrOfEntries) throws IOException {
+            generator.writeRaw('}');
+        }
+
+        @Override
+        public void writeObjectEntrySeparator(JsonGenerator generator) throws IOException {
+            generator.writeRaw(", ");
+        }
+
+        @Override
+        public void writeObjectFieldValueSeparator(JsonGenerator generator) throws IOException {
+            generator.writeRaw(": ");
+        }
+
+        @Override
+        public void writeStartArray(JsonGenerator generator) throws IOException {
+            generator.writeRaw('[');
+        }
+
+        @Override
+        public void writeEndArray(JsonGenerator generator, int nrOfValues) throws IOException {
+            generator.writeRaw(']');
+        }
+
+        @Override
+        public void writeArrayValueSeparator(JsonGenerator generator) throws IOException {
+            generator.writeRaw(", ");
+        }
+
+        @Override
+        public void beforeArrayValues(JsonGenerator generator) {
+        }
+
+        @Override
+        public void beforeObjectEntries(JsonGenerator generator) {
+        }
+    }
+}
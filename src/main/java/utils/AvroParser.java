@@ -1,24 +1,192 @@
 package utils;
 
+import decoders.GeneratedDecoders;
 import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
 import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericData;
-import org.apache.avro.io.Decoder;
+import org.apache.avro.io.BinaryDecoder;
 import org.apache.avro.io.DecoderFactory;
-import org.apache.avro.io.DatumReader;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decodes Avro binary payloads against the .avsc text loaded by {@link SchemaLoader}.
+ * <p>
+ * Each schema text is parsed only once and cached together with its parsing fingerprint; resolving decoders
+ * are cached by the (writer, reader) fingerprint pair, so messages of several writer versions (see
+ * {@link SchemaVersions}) never parse or resolve a schema per message. A bundled schema read without projection
+ * is decoded by the {@link GeneratedDecoder} generated for it at build time. Projections and resolutions depend on
+ * the query, so their caches keep only the 256 most recently used decoders each; a long-running
+ * server would otherwise add one per new set of fields.
+ * Datum readers, the {@link BinaryDecoder} and the decoded record are reused per thread,
+ * so a record returned by {@link #decode(byte[], String)} is only valid until the next
+ * decode on the same thread.
+ */
 public class AvroParser {
+    private static final Map<String, RecordDecoder> schemaCache = new ConcurrentHashMap<>();
+    private static final int DECODER_CACHE_SIZE = 256;
+    private static final Map<String, RecordDecoder> projectionCache = lruCache(DECODER_CACHE_SIZE);
+    private static final Map<String, RecordDecoder> resolvingCache = lruCache(DECODER_CACHE_SIZE);
+    private static final ThreadLocal<BinaryDecoder> decoderCache = new ThreadLocal<>();
+
     public static String parse(byte[] bytes, String pojoSchema) throws Exception {
-        try {
-            Schema.Parser parser = new Schema.Parser();
-            parser.setValidate(true);
-            Schema schema = parser.parse(pojoSchema);
-            DatumReader<GenericData.Record> reader = new GenericDatumReader<>(schema);
-            Decoder decoder = DecoderFactory.get().binaryDecoder(bytes, null);
-            GenericData.Record record = reader.read(null, decoder);
-            return record.toString();
-        } catch (Exception e) {
-            throw new RuntimeException("Error while parsing message", e);
+        return decode(bytes, pojoSchema).toString();
+    }
+
+    public static GenericData.Record decode(byte[] bytes, String pojoSchema) {
+        return decoder(pojoSchema).decode(bytes);
+    }
+
+    public static Schema schema(String pojoSchema) {
+        return decoder(pojoSchema).getWriterSchema();
+    }
+
+    public static long fingerprint(String pojoSchema) {
+        return decoder(pojoSchema).getWriterFingerprint();
+    }
+
+    public static RecordDecoder decoder(String pojoSchema) {
+        RecordDecoder decoder = schemaCache.get(pojoSchema);
+        if (decoder == null) {
+            decoder = schemaCache.computeIfAbsent(pojoSchema, text -> {
+                Schema.Parser parser = new Schema.Parser();
+                parser.setValidate(true);
+                Schema schema = parser.parse(text);
+                return new RecordDecoder(schema, schema, null);
+            });
+        }
+        return decoder;
+    }
+
+    /**
+     * Decoder reading only the given field paths (see {@link SchemaProjection}); an empty collection
+     * returns the full decoder.
+     */
+    public static RecordDecoder decoder(String pojoSchema, Collection<String> fields) {
+        if (fields == null || fields.isEmpty()) {
+            return decoder(pojoSchema);
+        }
+        Schema writerSchema = schema(pojoSchema);
+        String key = decoder(pojoSchema).getWriterFingerprint() + "|" + String.join(",", new TreeSet<>(fields));
+        return projectionCache.computeIfAbsent(key,
+                k -> new RecordDecoder(writerSchema, SchemaProjection.project(writerSchema, fields), null));
+    }
+
+    /**
+     * Decoder resolving data written with {@code writerSchema} to {@code readerSchema}.
+     */
+    public static RecordDecoder decoder(Schema writerSchema, Schema readerSchema) {
+        String key = SchemaNormalization.parsingFingerprint64(writerSchema) + "|" + SchemaNormalization.parsingFingerprint64(readerSchema);
+        return resolvingCache.computeIfAbsent(key, k -> new RecordDecoder(writerSchema, readerSchema, null));
+    }
+
+    private static <V> Map<String, V> lruCache(int maxSize) {
+        return Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    static BinaryDecoder binaryDecoder(byte[] bytes) {
+        BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(bytes, decoderCache.get());
+        decoderCache.set(decoder);
+        return decoder;
+    }
+
+    /**
+     * Decoder for one writer schema, optionally resolved to a different (e.g. projected) reader schema.
+     * With {@link SchemaVersions}, each message is decoded with its own writer schema instead.
+     * Safe to share between threads; the datum reader and the reused record are kept per thread.
+     */
+    public static final class RecordDecoder {
+        private final Schema writerSchema;
+        private final Schema readerSchema;
+        private final long writerFingerprint;
+        // null for projections, other writer versions and schemas the build did not know
+        private final GeneratedDecoder generated;
+        private final ThreadLocal<ReaderState> state;
+        private final SchemaVersions versions;
+        // per writer version, looked up by schema identity so no fingerprint is computed per message
+        private final Map<Schema, RecordDecoder> resolved = new ConcurrentHashMap<>();
+
+        private RecordDecoder(Schema writerSchema, Schema readerSchema, SchemaVersions versions) {
+            this.writerSchema = writerSchema;
+            this.readerSchema = readerSchema;
+            this.writerFingerprint = SchemaNormalization.parsingFingerprint64(writerSchema);
+            this.generated = writerSchema == readerSchema ? GeneratedDecoders.forSchema(writerFingerprint, writerSchema) : null;
+            this.state = ThreadLocal.withInitial(() -> new ReaderState(writerSchema, readerSchema, generated == null));
+            this.versions = versions;
+        }
+
+        /**
+         * Same reader schema, but every message is decoded with the writer version it declares.
+         */
+        public RecordDecoder withWriterVersions(SchemaVersions versions) {
+            return new RecordDecoder(writerSchema, readerSchema, versions);
+        }
+
+        /**
+         * {@code true} when a payload is already the binary encoding of the decoded record in the reader schema.
+         */
+        public boolean isPassThrough() {
+            return readerSchema == writerSchema && versions == null;
+        }
+
+        public Schema getWriterSchema() {
+            return writerSchema;
+        }
+
+        public Schema getReaderSchema() {
+            return readerSchema;
+        }
+
+        public long getWriterFingerprint() {
+            return writerFingerprint;
+        }
+
+        /**
+         * {@code true} when payloads are decoded by the decoder generated for the schema at build time.
+         */
+        public boolean isGenerated() {
+            return generated != null;
+        }
+
+        /**
+         * Decodes the payload into the record reused by the current thread.
+         */
+        public GenericData.Record decode(byte[] bytes) {
+            if (versions != null) {
+                Schema messageWriter = versions.writerSchema(bytes);
+                if (messageWriter != writerSchema) {
+                    return resolved.computeIfAbsent(messageWriter, schema -> decoder(schema, readerSchema)).decode(bytes);
+                }
+            }
+            try {
+                ReaderState readerState = state.get();
+                readerState.record = generated != null
+                        ? generated.read(readerState.record, binaryDecoder(bytes))
+                        : readerState.reader.read(readerState.record, binaryDecoder(bytes));
+                return readerState.record;
+            } catch (Exception e) {
+                throw new RuntimeException("Error while parsing message", e);
+            }
+        }
+    }
+
+    private static final class ReaderState {
+        private final GenericDatumReader<GenericData.Record> reader;
+        private GenericData.Record record;
+
+        private ReaderState(Schema writerSchema, Schema readerSchema, boolean generic) {
+            this.reader = generic ? new GenericDatumReader<>(writerSchema, readerSchema) : null;
         }
     }
 }
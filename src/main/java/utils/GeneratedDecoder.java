@@ -0,0 +1,109 @@
+package utils;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericArray;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericFixed;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.util.Utf8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decoder of one bundled schema, generated at build time by {@code src/build/java/codegen/DecoderGenerator.java}
+ * into {@code decoders.GeneratedDecoders}. Where {@link org.apache.avro.generic.GenericDatumReader} walks the
+ * schema and a resolver for every value, the generated code is a method per type with the reads in field order,
+ * so the JIT sees monomorphic straight-line code. The records are the same: {@link GenericData.Record} with the
+ * runtime schema instances, reusing the previous record, strings, arrays and buffers the same way.
+ * <p>
+ * Used only where writer and reader schema are the same; projections and other writer versions are resolved
+ * by the generic reader.
+ */
+public abstract class GeneratedDecoder {
+    public abstract GenericData.Record read(GenericData.Record reuse, BinaryDecoder in) throws IOException;
+
+    protected static Object readNull(BinaryDecoder in) throws IOException {
+        in.readNull();
+        return null;
+    }
+
+    protected static Utf8 readString(Object old, BinaryDecoder in) throws IOException {
+        return in.readString(old instanceof Utf8 ? (Utf8) old : null);
+    }
+
+    protected static ByteBuffer readBytes(Object old, BinaryDecoder in) throws IOException {
+        return in.readBytes(old instanceof ByteBuffer ? (ByteBuffer) old : null);
+    }
+
+    protected static GenericData.Record newRecord(Object old, Schema schema) {
+        if (old instanceof GenericData.Record && ((GenericData.Record) old).getSchema() == schema) {
+            return (GenericData.Record) old;
+        }
+        return new GenericData.Record(schema);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static Collection<Object> newArray(Object old, int size, Schema schema) {
+        if (old instanceof GenericArray) {
+            ((GenericArray<?>) old).reset();
+            return (Collection<Object>) old;
+        }
+        if (old instanceof Collection) {
+            ((Collection<?>) old).clear();
+            return (Collection<Object>) old;
+        }
+        return new GenericData.Array<>(size, schema);
+    }
+
+    /**
+     * Element left over from the previous decode at the next position, to be reused.
+     */
+    protected static Object peek(Collection<Object> array) {
+        return array instanceof GenericArray ? ((GenericArray<?>) array).peek() : null;
+    }
+
+    protected static Collection<Object> prune(Collection<Object> array) {
+        if (array instanceof GenericArray) {
+            ((GenericArray<?>) array).prune();
+        }
+        return array;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static Map<Object, Object> newMap(Object old, int size) {
+        if (old instanceof Map) {
+            ((Map<?, ?>) old).clear();
+            return (Map<Object, Object>) old;
+        }
+        return new HashMap<>(size);
+    }
+
+    protected static GenericFixed createFixed(Object old, Schema schema) {
+        if (old instanceof GenericFixed && ((GenericFixed) old).bytes().length == schema.getFixedSize()) {
+            return (GenericFixed) old;
+        }
+        return new GenericData.Fixed(schema);
+    }
+
+    /**
+     * Symbols of the enum by ordinal; immutable, so shared by all records instead of created per value.
+     */
+    protected static GenericData.EnumSymbol[] symbols(Schema schema) {
+        List<String> names = schema.getEnumSymbols();
+        GenericData.EnumSymbol[] symbols = new GenericData.EnumSymbol[names.size()];
+        for (int i = 0; i < symbols.length; i++) {
+            symbols[i] = new GenericData.EnumSymbol(schema, names.get(i));
+        }
+        return symbols;
+    }
+
+    protected static AvroRuntimeException invalidUnionIndex(int index) {
+        return new AvroRuntimeException("Neplatný index vetvy unionu: " + index);
+    }
+}
@@ -1,10 +1,25 @@
 package utils;
 
-import java.util.List;
+import java.util.Properties;
 
 public class MessageSaver {
-    public static void writeMessages(List<String> messages, String outputFilePath) {
-        // Write messages to the output file in JSON format.
-        MessageWriter.writeMessagesToFile(messages, outputFilePath, messages.size(), true);
+    /**
+     * Creates a streaming writer configured by the {@code outputFormat} ({@code json}, {@code ndjson} or
+     * {@code avro}), {@code outputCompression} ({@code none}, {@code gzip} or {@code zstd}),
+     * {@code flushEveryMessages}, {@code fsyncOnFlush} and {@code jsonTemporalFormat} ({@code epoch} or
+     * {@code iso}) properties. The file suffix is derived from the output format and compression.
+     */
+    public static MessageWriter openWriter(Properties configProps, String outputFileBase) {
+        MessageWriter.Format format = MessageWriter.Format.fromProperty(configProps.getProperty("outputFormat"));
+        MessageWriter.Compression compression = MessageWriter.Compression.fromProperty(configProps.getProperty("outputCompression"));
+        int flushEveryMessages = Integer.parseInt(configProps.getProperty("flushEveryMessages", "100").trim());
+        boolean fsyncOnFlush = Boolean.parseBoolean(configProps.getProperty("fsyncOnFlush", "false").trim());
+        String temporalFormat = configProps.getProperty("jsonTemporalFormat", "epoch").trim();
+        if (!temporalFormat.equals("epoch") && !temporalFormat.equals("iso")) {
+            throw new IllegalArgumentException("Neplatná hodnota jsonTemporalFormat: " + temporalFormat + " (epoch alebo iso)");
+        }
+        AvroJsonSerializer serializer = new AvroJsonSerializer(temporalFormat.equals("iso"));
+        String suffix = format.getFileSuffix() + (format == MessageWriter.Format.AVRO ? "" : compression.getFileSuffix());
+        return new MessageWriter(outputFileBase + suffix, format, compression, flushEveryMessages, fsyncOnFlush, serializer);
     }
 }
@@ -1,37 +1,357 @@
 package utils;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.github.luben.zstd.ZstdOutputStream;
+import metrics.ConsumerMetrics;
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.IndexedRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPOutputStream;
 
-public class MessageWriter {
+/**
+ * Streams matched messages to the output file as they arrive.
+ * <p>
+ * The file is opened lazily on the first message, so a run without matches leaves no file behind.
+ * {@link Format#JSON} produces the {@code {"messages": [...]}} document once the writer is closed,
+ * {@link Format#NDJSON} writes one message per line and is valid after every flush.
+ * Text goes through one Jackson {@link JsonGenerator} on the (optionally gzip or zstd compressed) file stream,
+ * so decoded records are serialized straight into its UTF-8 buffer by {@link AvroJsonSerializer} without an
+ * intermediate String. {@link Format#AVRO} writes an Avro object container file in the schema of the first
+ * record, with the compression mapped to the container codec; already encoded records are appended as is.
+ * All methods are synchronized because the shutdown hook may close the writer while the consume loop
+ * is still writing.
+ */
+public class MessageWriter implements Closeable {
     private static final Logger log = LoggerFactory.getLogger(MessageWriter.class);
-    private static final AtomicInteger totalMessagesWritten = new AtomicInteger(0);
-
-    public static void writeMessagesToFile(List<String> messages, String outputFilePath, int batchSize, boolean isLastBatch) {
-        File outputFile = new File(outputFilePath);
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile))) {
-            writer.write("{\"messages\": [\n");
-            for (int i = 0; i < messages.size(); i++) {
-                writer.write(messages.get(i));
-                if ((i + 1) % 100 == 0 || i == messages.size() - 1) {
-                    log.info("🔢 Written {} messages...", i + 1);
-                }
-                if (i < messages.size() - 1) {
-                    writer.write(",\n");
+
+    public enum Format {
+        JSON(Constants.OUTPUT_FILE_SUFFIX),
+        NDJSON(".ndjson"),
+        AVRO(".avro");
+
+        private final String fileSuffix;
+
+        Format(String fileSuffix) {
+            this.fileSuffix = fileSuffix;
+        }
+
+        public String getFileSuffix() {
+            return fileSuffix;
+        }
+
+        public static Format fromProperty(String value) {
+            if (value == null || value.isBlank()) {
+                return JSON;
+            }
+            return Format.valueOf(value.trim().toUpperCase());
+        }
+    }
+
+    public enum Compression {
+        NONE(""),
+        GZIP(".gz"),
+        ZSTD(".zst");
+
+        private final String fileSuffix;
+
+        Compression(String fileSuffix) {
+            this.fileSuffix = fileSuffix;
+        }
+
+        /**
+         * Suffix appended to text output; Avro container files compress internally and keep {@code .avro}.
+         */
+        public String getFileSuffix() {
+            return fileSuffix;
+        }
+
+        public static Compression fromProperty(String value) {
+            if (value == null || value.isBlank()) {
+                return NONE;
+            }
+            String name = value.trim().toUpperCase();
+            return "DEFLATE".equals(name) ? GZIP : Compression.valueOf(name);
+        }
+
+        OutputStream wrap(OutputStream out) throws IOException {
+            switch (this) {
+                case GZIP:
+                    // sync flush, so every flush leaves a decompressible prefix behind
+                    return new GZIPOutputStream(out, 64 * 1024, true);
+                case ZSTD:
+                    return new BufferedOutputStream(new ZstdOutputStream(out), 64 * 1024);
+                default:
+                    return out;
+            }
+        }
+
+        CodecFactory avroCodec() {
+            switch (this) {
+                case GZIP:
+                    return CodecFactory.deflateCodec(CodecFactory.DEFAULT_DEFLATE_LEVEL);
+                case ZSTD:
+                    return CodecFactory.zstandardCodec(CodecFactory.DEFAULT_ZSTANDARD_LEVEL);
+                default:
+                    return CodecFactory.nullCodec();
+            }
+        }
+    }
+
+    private final File outputFile;
+    private final Format format;
+    private final Compression compression;
+    private final int flushEveryMessages;
+    private final boolean fsyncOnFlush;
+    private final AvroJsonSerializer serializer;
+    private final ConsumerMetrics metrics = ConsumerMetrics.get();
+
+    private final OutputStream target;
+    private OutputStream sink;
+    private FileOutputStream fileStream;
+    private JsonGenerator generator;
+    private DataFileWriter<IndexedRecord> avroWriter;
+    private int written;
+    private int unflushed;
+    private boolean closed;
+
+    public MessageWriter(String outputFilePath, Format format, int flushEveryMessages, boolean fsyncOnFlush) {
+        this(outputFilePath, format, flushEveryMessages, fsyncOnFlush, new AvroJsonSerializer(false));
+    }
+
+    public MessageWriter(String outputFilePath, Format format, int flushEveryMessages, boolean fsyncOnFlush,
+                         AvroJsonSerializer serializer) {
+        this(outputFilePath, format, Compression.NONE, flushEveryMessages, fsyncOnFlush, serializer);
+    }
+
+    public MessageWriter(String outputFilePath, Format format, Compression compression, int flushEveryMessages,
+                         boolean fsyncOnFlush, AvroJsonSerializer serializer) {
+        this(new File(outputFilePath), null, format, compression, flushEveryMessages, fsyncOnFlush, serializer);
+    }
+
+    /**
+     * Writer streaming into {@code out} instead of a file, e.g. an HTTP response; {@code name} only appears in
+     * logs. Closing the writer closes the stream.
+     */
+    public MessageWriter(OutputStream out, String name, Format format, int flushEveryMessages, AvroJsonSerializer serializer) {
+        this(new File(name), out, format, Compression.NONE, flushEveryMessages, false, serializer);
+    }
+
+    private MessageWriter(File outputFile, OutputStream target, Format format, Compression compression,
+                          int flushEveryMessages, boolean fsyncOnFlush, AvroJsonSerializer serializer) {
+        this.outputFile = outputFile;
+        this.target = target;
+        this.format = format;
+        this.compression = compression;
+        this.flushEveryMessages = Math.max(1, flushEveryMessages);
+        this.fsyncOnFlush = fsyncOnFlush;
+        this.serializer = serializer;
+    }
+
+    /**
+     * Appends one already rendered message. Returns {@code false} when the writer has already been closed.
+     */
+    public synchronized boolean write(String message) throws IOException {
+        long start = System.nanoTime();
+        if (!beginText()) {
+            return false;
+        }
+        generator.writeRaw(message);
+        return endMessage(start);
+    }
+
+    /**
+     * Appends rendered text straight from the reused buffer, without turning it into a String first.
+     */
+    public synchronized boolean write(TextBuffer message) throws IOException {
+        long start = System.nanoTime();
+        if (!beginText()) {
+            return false;
+        }
+        generator.writeRaw(message.array(), 0, message.length());
+        return endMessage(start);
+    }
+
+    /**
+     * Serializes a decoded record directly into the output buffer.
+     */
+    public synchronized boolean write(IndexedRecord record) throws IOException {
+        long start = System.nanoTime();
+        if (format == Format.AVRO) {
+            if (!beginAvro(record.getSchema())) {
+                return false;
+            }
+            avroWriter.append(record);
+            return endMessage(start);
+        }
+        if (!beginText()) {
+            return false;
+        }
+        serializer.write(record, generator);
+        return endMessage(start);
+    }
+
+    /**
+     * Appends a record that is already Avro binary in the given schema, without decoding it again. Only for
+     * {@link Format#AVRO}; the schema must be the same for every call.
+     */
+    public synchronized boolean writeEncoded(Schema schema, byte[] encoded) throws IOException {
+        long start = System.nanoTime();
+        if (!beginAvro(schema)) {
+            return false;
+        }
+        avroWriter.appendEncoded(ByteBuffer.wrap(encoded));
+        return endMessage(start);
+    }
+
+    public AvroJsonSerializer getSerializer() {
+        return serializer;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    private boolean beginText() throws IOException {
+        if (format == Format.AVRO) {
+            throw new IllegalStateException("Formát avro zapisuje len Avro záznamy, nie text");
+        }
+        if (closed) {
+            return false;
+        }
+        if (generator == null) {
+            generator = AvroJsonSerializer.createGenerator(compression.wrap(openFile()));
+            if (format == Format.JSON) {
+                generator.writeRaw("{\"messages\": [\n");
+            }
+        } else if (format == Format.JSON) {
+            generator.writeRaw(",\n");
+        }
+        return true;
+    }
+
+    private boolean beginAvro(Schema schema) throws IOException {
+        if (format != Format.AVRO) {
+            throw new IllegalStateException("Zakódované záznamy sa dajú zapísať len vo formáte avro");
+        }
+        if (closed) {
+            return false;
+        }
+        if (avroWriter == null) {
+            avroWriter = new DataFileWriter<IndexedRecord>(new GenericDatumWriter<>(schema))
+                    .setCodec(compression.avroCodec());
+            avroWriter.create(schema, openFile());
+        }
+        return true;
+    }
+
+    private boolean endMessage(long start) throws IOException {
+        if (format == Format.NDJSON) {
+            generator.writeRaw('\n');
+        }
+        written++;
+        metrics.written(System.nanoTime() - start);
+        if (written % 100 == 0) {
+            log.info("🔢 Written {} messages...", written);
+        }
+        if (++unflushed >= flushEveryMessages) {
+            flush();
+        }
+        return true;
+    }
+
+    public synchronized void flush() throws IOException {
+        if (sink == null || closed) {
+            return;
+        }
+        if (avroWriter != null) {
+            avroWriter.flush();
+        } else {
+            generator.flush();
+        }
+        if (fsyncOnFlush && fileStream != null) {
+            fileStream.getChannel().force(false);
+        }
+        unflushed = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (sink == null) {
+            return;
+        }
+        // closing the generator or container finishes the compression and then closes the FileSink
+        if (avroWriter != null) {
+            avroWriter.close();
+        } else {
+            try {
+                if (format == Format.JSON) {
+                    generator.writeRaw("\n]}");
                 }
+            } finally {
+                generator.close();
             }
-            writer.write("\n]}");
-            totalMessagesWritten.addAndGet(batchSize);
-            if (isLastBatch) {
-                log.info("🔢 Written {} messages...", totalMessagesWritten.get());
-                log.info("📁 Správy uložené do súboru: {}", outputFile.getAbsolutePath());
+        }
+        log.info("🔢 Written {} messages...", written);
+        if (target == null) {
+            log.info("📁 Správy uložené do súboru: {}", outputFile.getAbsolutePath());
+        }
+    }
+
+    public synchronized int getWrittenCount() {
+        return written;
+    }
+
+    public String getOutputFilePath() {
+        return outputFile.getPath();
+    }
+
+    private OutputStream openFile() throws IOException {
+        if (target != null) {
+            sink = target;
+            return sink;
+        }
+        fileStream = new FileOutputStream(outputFile);
+        sink = new FileSink(fileStream, fsyncOnFlush);
+        return sink;
+    }
+
+    /**
+     * Bottom of the output stream chain: forces the file to disk on close when fsync is enabled, after every
+     * layer above has written its trailer.
+     */
+    private static final class FileSink extends FilterOutputStream {
+        private final FileOutputStream file;
+        private final boolean fsyncOnClose;
+
+        private FileSink(FileOutputStream file, boolean fsyncOnClose) {
+            super(file);
+            this.file = file;
+            this.fsyncOnClose = fsyncOnClose;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            file.write(bytes, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (file) {
+                if (fsyncOnClose) {
+                    file.getChannel().force(true);
+                }
             }
-        } catch (IOException e) {
-            log.error("❌ Chyba pri zápise do súboru", e);
         }
     }
-}
\ No newline at end of file
+}
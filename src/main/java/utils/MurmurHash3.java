@@ -0,0 +1,75 @@
+package utils;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * MurmurHash3 x64 128 with seed 0, over raw bytes such as the UTF-8 of a {@link org.apache.avro.util.Utf8}.
+ */
+public final class MurmurHash3 {
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private MurmurHash3() {
+    }
+
+    /**
+     * Stores the two halves of the hash of the first {@code length} bytes in {@code out[0]} and {@code out[1]}.
+     */
+    public static void hash128(byte[] bytes, int length, long[] out) {
+        long h1 = 0;
+        long h2 = 0;
+        int blocks = length / 16;
+        for (int i = 0; i < blocks; i++) {
+            long k1 = (long) LONG_LE.get(bytes, i * 16);
+            long k2 = (long) LONG_LE.get(bytes, i * 16 + 8);
+            h1 ^= Long.rotateLeft(k1 * C1, 31) * C2;
+            h1 = (Long.rotateLeft(h1, 27) + h2) * 5 + 0x52dce729;
+            h2 ^= Long.rotateLeft(k2 * C2, 33) * C1;
+            h2 = (Long.rotateLeft(h2, 31) + h1) * 5 + 0x38495ab5;
+        }
+        int tail = blocks * 16;
+        int remaining = length & 15;
+        long k1 = 0;
+        long k2 = 0;
+        for (int i = remaining - 1; i >= 8; i--) {
+            k2 ^= (bytes[tail + i] & 0xffL) << ((i - 8) * 8);
+        }
+        for (int i = Math.min(remaining, 8) - 1; i >= 0; i--) {
+            k1 ^= (bytes[tail + i] & 0xffL) << (i * 8);
+        }
+        if (remaining > 8) {
+            h2 ^= Long.rotateLeft(k2 * C2, 33) * C1;
+        }
+        if (remaining > 0) {
+            h1 ^= Long.rotateLeft(k1 * C1, 31) * C2;
+        }
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        out[0] = h1;
+        out[1] = h2;
+    }
+
+    /**
+     * First half of {@link #hash128}.
+     */
+    public static long hash64(byte[] bytes, int length) {
+        long[] out = new long[2];
+        hash128(bytes, length, out);
+        return out[0];
+    }
+
+    private static long fmix(long k) {
+        k = (k ^ (k >>> 33)) * 0xff51afd7ed558ccdL;
+        k = (k ^ (k >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return k ^ (k >>> 33);
+    }
+}
@@ -3,12 +3,20 @@ package utils;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class SchemaLoader {
 
     private static final Properties schemaMap = new Properties();
     private static final String SCHEMA_DIRECTORY = "avro/";
+    private static final String VERSIONS_SUFFIX = ".versions";
+    private static final Pattern FILE_VERSION = Pattern.compile("_v(\\d+(?:\\.\\d+)*)\\.avsc$");
 
     static {
         try (InputStream input = SchemaLoader.class.getClassLoader().getResourceAsStream("schema-aliases.properties")) {
@@ -22,12 +30,60 @@ public class SchemaLoader {
         }
     }
 
+    /**
+     * Every schema alias of {@code schema-aliases.properties}, without the {@code .versions} entries.
+     */
+    public static Set<String> aliases() {
+        Set<String> aliases = new TreeSet<>();
+        for (String key : schemaMap.stringPropertyNames()) {
+            if (!key.endsWith(VERSIONS_SUFFIX)) {
+                aliases.add(key);
+            }
+        }
+        return aliases;
+    }
+
     public static String loadSchema(String alias) {
+        return loadFile(schemaFile(alias));
+    }
+
+    /**
+     * Schema file the alias is pinned to, e.g. {@code CorporateAction_v1.1.20.avsc}.
+     */
+    public static String schemaFile(String alias) {
         String fileName = schemaMap.getProperty(alias);
         if (fileName == null) {
             throw new IllegalArgumentException("Alias schémy '" + alias + "' nie je definovaný.");
         }
+        return fileName.trim();
+    }
+
+    /**
+     * Other writer versions of the alias listed in {@code <alias>.versions} (comma separated .avsc files),
+     * as schema text keyed by the version in the file name. Empty when the alias has none.
+     */
+    public static Map<String, String> loadWriterVersions(String alias) {
+        Map<String, String> versions = new LinkedHashMap<>();
+        for (String fileName : schemaMap.getProperty(alias + VERSIONS_SUFFIX, "").split(",")) {
+            if (!fileName.isBlank()) {
+                versions.put(fileVersion(fileName.trim()), loadFile(fileName.trim()));
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Version in a schema file name, e.g. {@code 1.1.20} for {@code CorporateAction_v1.1.20.avsc}.
+     */
+    public static String fileVersion(String fileName) {
+        Matcher matcher = FILE_VERSION.matcher(fileName);
+        if (!matcher.find()) {
+            throw new IllegalArgumentException("Názov schémy '" + fileName + "' neobsahuje verziu (_v<verzia>.avsc).");
+        }
+        return matcher.group(1);
+    }
 
+    private static String loadFile(String fileName) {
         String fullPath = SCHEMA_DIRECTORY + fileName;
 
         try (InputStream schemaStream = SchemaLoader.class.getClassLoader().getResourceAsStream(fullPath)) {
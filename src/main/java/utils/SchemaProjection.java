@@ -0,0 +1,153 @@
+package utils;
+
+import org.apache.avro.Schema;
+
+import java.util.*;
+
+/**
+ * Builds a pruned reader schema that keeps only the requested field paths, e.g.
+ * {@code metadata.eventName,payload.taskId}.
+ * <p>
+ * Decoding with the pruned schema as reader schema lets Avro schema resolution skip every other field in the
+ * binary stream instead of materializing it. Pruning works per named record type: a record type keeps the
+ * union of the fields requested through any path that reaches it, and a type that is requested as a whole
+ * anywhere is kept whole everywhere, so the result never defines one name twice. Record types on a union
+ * branch that no path enters are kept as empty records, so they still resolve.
+ */
+public final class SchemaProjection {
+    private final Map<String, Set<String>> requiredFields = new HashMap<>();
+    private final Set<String> fullTypes = new HashSet<>();
+    private final Map<String, Schema> pruned = new HashMap<>();
+
+    private SchemaProjection() {
+    }
+
+    public static Schema project(Schema schema, Collection<String> paths) {
+        SchemaProjection projection = new SchemaProjection();
+        for (String path : paths) {
+            projection.require(schema, path);
+        }
+        return projection.prune(schema);
+    }
+
+    private void require(Schema root, String path) {
+        String[] names = path.trim().split("\\.");
+        List<Schema> current = List.of(root);
+        for (int i = 0; i < names.length; i++) {
+            boolean last = i == names.length - 1;
+            boolean found = false;
+            List<Schema> next = new ArrayList<>();
+            for (Schema record : records(current)) {
+                Schema.Field field = record.getField(names[i]);
+                if (field == null) {
+                    continue;
+                }
+                found = true;
+                requiredFields.computeIfAbsent(record.getFullName(), k -> new LinkedHashSet<>()).add(field.name());
+                if (last) {
+                    markFull(field.schema());
+                } else {
+                    next.add(field.schema());
+                }
+            }
+            if (!found) {
+                throw new IllegalArgumentException("Pole '" + names[i] + "' z cesty '" + path + "' neexistuje v schéme " + root.getFullName());
+            }
+            current = next;
+        }
+    }
+
+    private void markFull(Schema schema) {
+        switch (schema.getType()) {
+            case RECORD:
+                if (fullTypes.add(schema.getFullName())) {
+                    for (Schema.Field field : schema.getFields()) {
+                        markFull(field.schema());
+                    }
+                }
+                break;
+            case UNION:
+                schema.getTypes().forEach(this::markFull);
+                break;
+            case ARRAY:
+                markFull(schema.getElementType());
+                break;
+            case MAP:
+                markFull(schema.getValueType());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private Schema prune(Schema schema) {
+        switch (schema.getType()) {
+            case RECORD:
+                return pruneRecord(schema);
+            case UNION: {
+                List<Schema> branches = new ArrayList<>();
+                for (Schema branch : schema.getTypes()) {
+                    branches.add(prune(branch));
+                }
+                return Schema.createUnion(branches);
+            }
+            case ARRAY:
+                return copyProps(schema, Schema.createArray(prune(schema.getElementType())));
+            case MAP:
+                return copyProps(schema, Schema.createMap(prune(schema.getValueType())));
+            default:
+                return schema;
+        }
+    }
+
+    private Schema pruneRecord(Schema record) {
+        if (fullTypes.contains(record.getFullName())) {
+            return record;
+        }
+        Schema existing = pruned.get(record.getFullName());
+        if (existing != null) {
+            return existing;
+        }
+        Schema result = Schema.createRecord(record.getName(), record.getDoc(), record.getNamespace(), record.isError());
+        pruned.put(record.getFullName(), result);
+        Set<String> keep = requiredFields.getOrDefault(record.getFullName(), Set.of());
+        List<Schema.Field> fields = new ArrayList<>();
+        for (Schema.Field field : record.getFields()) {
+            if (keep.contains(field.name())) {
+                fields.add(new Schema.Field(field, prune(field.schema())));
+            }
+        }
+        result.setFields(fields);
+        return result;
+    }
+
+    private static Schema copyProps(Schema source, Schema target) {
+        source.getObjectProps().forEach(target::addProp);
+        return target;
+    }
+
+    private static List<Schema> records(List<Schema> schemas) {
+        List<Schema> result = new ArrayList<>();
+        Deque<Schema> pending = new ArrayDeque<>(schemas);
+        while (!pending.isEmpty()) {
+            Schema schema = pending.poll();
+            switch (schema.getType()) {
+                case RECORD:
+                    result.add(schema);
+                    break;
+                case UNION:
+                    pending.addAll(schema.getTypes());
+                    break;
+                case ARRAY:
+                    pending.add(schema.getElementType());
+                    break;
+                case MAP:
+                    pending.add(schema.getValueType());
+                    break;
+                default:
+                    break;
+            }
+        }
+        return result;
+    }
+}
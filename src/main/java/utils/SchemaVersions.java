@@ -0,0 +1,184 @@
+package utils;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.util.Utf8;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds the writer schema of each message among the versions of one alias, by the {@code metadata.schemaVersion}
+ * the producer embedded in the record.
+ * <p>
+ * The version is probed straight from the binary payload: the metadata fields in front of
+ * {@code schemaVersion} are skipped and only the version string is read. This requires {@code metadata} to be
+ * the first field and its leading fields to be the same in every version, which is checked when the versions
+ * are loaded. Messages with an unknown or unreadable version fall back to the pinned schema.
+ */
+public final class SchemaVersions {
+    private static final Logger log = LoggerFactory.getLogger(SchemaVersions.class);
+    private static final ThreadLocal<Utf8> versionBuffer = ThreadLocal.withInitial(Utf8::new);
+
+    private final Schema pinned;
+    private final Map<Utf8, Schema> byVersion;
+    private final Schema[] prefix;
+    private final Set<String> unknownVersions = ConcurrentHashMap.newKeySet();
+
+    private SchemaVersions(Schema pinned, Map<Utf8, Schema> byVersion, Schema[] prefix) {
+        this.pinned = pinned;
+        this.byVersion = byVersion;
+        this.prefix = prefix;
+    }
+
+    /**
+     * Versions of the alias from {@code schema-aliases.properties}, or {@code null} when the alias lists no
+     * other writer versions than the pinned one.
+     */
+    public static SchemaVersions forAlias(String alias) {
+        Map<String, String> writerVersions = SchemaLoader.loadWriterVersions(alias);
+        if (writerVersions.isEmpty()) {
+            return null;
+        }
+        String pinnedFile = SchemaLoader.schemaFile(alias);
+        Schema pinned = AvroParser.schema(SchemaLoader.loadSchema(alias));
+        Schema[] prefix = versionPrefix(pinned);
+        Map<Utf8, Schema> byVersion = new HashMap<>();
+        putVersion(byVersion, SchemaLoader.fileVersion(pinnedFile), pinned);
+        for (Map.Entry<String, String> version : writerVersions.entrySet()) {
+            Schema schema = AvroParser.schema(version.getValue());
+            if (!layout(versionPrefix(schema)).equals(layout(prefix))) {
+                throw new IllegalArgumentException("Verzia " + version.getKey() + " aliasu '" + alias
+                        + "' má iné polia metadata pred schemaVersion ako " + pinnedFile);
+            }
+            putVersion(byVersion, version.getKey(), schema);
+        }
+        return new SchemaVersions(pinned, byVersion, prefix);
+    }
+
+    /**
+     * Writer schema of the payload; the returned instances are stable, so they can be used as cache keys.
+     */
+    public Schema writerSchema(byte[] payload) {
+        Utf8 version = versionBuffer.get();
+        try {
+            BinaryDecoder in = AvroParser.binaryDecoder(payload);
+            for (Schema skipped : prefix) {
+                GenericDatumReader.skip(skipped, in);
+            }
+            in.readString(version);
+        } catch (Exception e) {
+            return pinned;
+        }
+        Schema schema = byVersion.get(version);
+        if (schema == null) {
+            String unknown = version.toString();
+            if (unknownVersions.add(unknown)) {
+                log.warn("⚠️ Neznáma schemaVersion '{}', dekódujem pripnutou schémou {}", unknown, pinned.getFullName());
+            }
+            return pinned;
+        }
+        return schema;
+    }
+
+    public Schema getPinned() {
+        return pinned;
+    }
+
+    /**
+     * Known writer schemas, the pinned one included.
+     */
+    public Collection<Schema> getSchemas() {
+        return new LinkedHashSet<>(byVersion.values());
+    }
+
+    public Set<String> getVersions() {
+        Set<String> versions = new TreeSet<>();
+        for (Utf8 version : byVersion.keySet()) {
+            if (!version.toString().startsWith("v")) {
+                versions.add(version.toString());
+            }
+        }
+        return versions;
+    }
+
+    private static void putVersion(Map<Utf8, Schema> byVersion, String version, Schema schema) {
+        // producers write the version both with and without the leading "v"
+        byVersion.put(new Utf8(version), schema);
+        byVersion.put(new Utf8("v" + version), schema);
+    }
+
+    /**
+     * Schemas of the fields in front of {@code metadata.schemaVersion}, in binary order.
+     */
+    private static Schema[] versionPrefix(Schema schema) {
+        Schema.Field first = schema.getFields().isEmpty() ? null : schema.getFields().get(0);
+        if (first == null || !first.name().equals("metadata") || first.schema().getType() != Schema.Type.RECORD) {
+            throw new IllegalArgumentException("Schéma " + schema.getFullName() + " nezačína záznamom metadata");
+        }
+        List<Schema> prefix = new ArrayList<>();
+        for (Schema.Field field : first.schema().getFields()) {
+            if (field.name().equals("schemaVersion")) {
+                if (field.schema().getType() != Schema.Type.STRING) {
+                    throw new IllegalArgumentException("metadata.schemaVersion v " + schema.getFullName() + " nie je string");
+                }
+                return prefix.toArray(new Schema[0]);
+            }
+            prefix.add(field.schema());
+        }
+        throw new IllegalArgumentException("Schéma " + schema.getFullName() + " nemá pole metadata.schemaVersion");
+    }
+
+    /**
+     * Binary layout of the fields, which is all skipping depends on: names, enum symbols and logical types
+     * may differ between versions.
+     */
+    private static String layout(Schema[] schemas) {
+        StringBuilder layout = new StringBuilder();
+        for (Schema schema : schemas) {
+            layout(schema, layout);
+            layout.append(';');
+        }
+        return layout.toString();
+    }
+
+    private static void layout(Schema schema, StringBuilder layout) {
+        switch (schema.getType()) {
+            case RECORD:
+                layout.append('{');
+                for (Schema.Field field : schema.getFields()) {
+                    layout(field.schema(), layout);
+                    layout.append(',');
+                }
+                layout.append('}');
+                break;
+            case UNION:
+                layout.append('(');
+                for (Schema branch : schema.getTypes()) {
+                    layout(branch, layout);
+                    layout.append('|');
+                }
+                layout.append(')');
+                break;
+            case ARRAY:
+                layout.append('[');
+                layout(schema.getElementType(), layout);
+                layout.append(']');
+                break;
+            case MAP:
+                layout.append("map<");
+                layout(schema.getValueType(), layout);
+                layout.append('>');
+                break;
+            case FIXED:
+                layout.append("fixed").append(schema.getFixedSize());
+                break;
+            default:
+                layout.append(schema.getType().getName());
+                break;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package utils;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.util.RandomData;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deterministic records generated from an Avro schema: the same schema, count and seed always give the same
+ * records and payload bytes. Used by the benchmarks to exercise the real schemas without broker data.
+ */
+public final class SyntheticData {
+    private SyntheticData() {
+    }
+
+    public static List<GenericRecord> records(Schema schema, int count, long seed) {
+        List<GenericRecord> records = new ArrayList<>(count);
+        for (Object datum : new RandomData(schema, count, seed)) {
+            records.add((GenericRecord) datum);
+        }
+        return records;
+    }
+
+    /**
+     * Avro binary payloads as they would arrive from Pulsar (no header, no schema id).
+     */
+    public static List<byte[]> payloads(Schema schema, int count, long seed) {
+        GenericDatumWriter<GenericRecord> writer = new GenericDatumWriter<>(schema);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryEncoder encoder = null;
+        List<byte[]> payloads = new ArrayList<>(count);
+        for (GenericRecord record : records(schema, count, seed)) {
+            out.reset();
+            encoder = EncoderFactory.get().binaryEncoder(out, encoder);
+            try {
+                writer.write(record, encoder);
+                encoder.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            payloads.add(out.toByteArray());
+        }
+        return payloads;
+    }
+}
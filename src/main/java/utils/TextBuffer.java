@@ -0,0 +1,86 @@
+package utils;
+
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Reused per-thread buffer for a rendered message: a {@link Writer} for the JSON generator and a
+ * {@link CharSequence} for the regex, over one unsynchronized, growing {@code char[]} (unlike
+ * {@link java.io.StringWriter}, whose {@link StringBuffer} locks on every {@code charAt}). The output takes
+ * the characters in bulk through {@link #array()}.
+ */
+public final class TextBuffer extends Writer implements CharSequence {
+    private char[] chars = new char[4096];
+    private int length;
+
+    /**
+     * Empties the buffer, keeping its capacity.
+     */
+    public void reset() {
+        length = 0;
+    }
+
+    /**
+     * Backing array; valid up to {@link #length()} until the next write.
+     */
+    public char[] array() {
+        return chars;
+    }
+
+    @Override
+    public void write(char[] source, int offset, int count) {
+        ensureCapacity(count);
+        System.arraycopy(source, offset, chars, length, count);
+        length += count;
+    }
+
+    @Override
+    public void write(String source, int offset, int count) {
+        ensureCapacity(count);
+        source.getChars(offset, offset + count, chars, length);
+        length += count;
+    }
+
+    @Override
+    public void write(int c) {
+        ensureCapacity(1);
+        chars[length++] = (char) c;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index >= length) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return chars[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new String(chars, start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+
+    private void ensureCapacity(int count) {
+        if (length + count > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length << 1, length + count));
+        }
+    }
+}
@@ -2,9 +2,17 @@ package utils;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
 
 public class TopicAliasResolver {
     private static final Map<String, String> aliases = new HashMap<>();
@@ -28,4 +36,30 @@ public class TopicAliasResolver {
     public static String resolve(String input) {
         return aliases.getOrDefault(input, input);
     }
+
+    /**
+     * Expands the {@code topic} property: a comma separated list of aliases, where an entry with {@code *} or
+     * {@code ?} is a glob over the aliases of {@code topic-aliases.properties} (e.g. {@code CORPORATE_ACTION_*}).
+     * Aliases keep the order of the list, a glob adds its matches sorted; duplicates are dropped.
+     */
+    public static List<String> expand(String input) {
+        Set<String> expanded = new LinkedHashSet<>();
+        for (String entry : input.split(",")) {
+            String alias = entry.trim();
+            if (alias.isEmpty()) {
+                continue;
+            }
+            if (alias.indexOf('*') < 0 && alias.indexOf('?') < 0) {
+                expanded.add(alias);
+                continue;
+            }
+            PathMatcher glob = FileSystems.getDefault().getPathMatcher("glob:" + alias);
+            for (String key : new TreeSet<>(aliases.keySet())) {
+                if (glob.matches(Path.of(key))) {
+                    expanded.add(key);
+                }
+            }
+        }
+        return new ArrayList<>(expanded);
+    }
 }
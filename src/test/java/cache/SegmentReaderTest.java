@@ -0,0 +1,97 @@
+package cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentReaderTest {
+
+    private static CachedMessage message(int i) {
+        return new CachedMessage(1000 + i, i % 2 == 0 ? 0 : 5000 + i, new byte[]{(byte) i}, i % 3 == 0 ? null : "k" + i,
+                i % 4 == 0 ? Map.of() : Map.of("source", "s" + i), ("payload " + i).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertSameMessage(CachedMessage expected, CachedMessage actual) {
+        assertEquals(expected.getPublishTime(), actual.getPublishTime());
+        assertEquals(expected.getEventTime(), actual.getEventTime());
+        assertArrayEquals(expected.getMessageId(), actual.getMessageId());
+        assertEquals(expected.getKey(), actual.getKey());
+        assertEquals(expected.getProperties(), actual.getProperties());
+        assertArrayEquals(expected.getPayload(), actual.getPayload());
+    }
+
+    @Test
+    void dumpIsReadBackWithEventTime(@TempDir Path dir) throws IOException {
+        List<CachedMessage> written = new ArrayList<>();
+        try (SegmentWriter writer = new SegmentWriter(dir, 200)) {
+            for (int i = 0; i < 25; i++) {
+                written.add(message(i));
+                assertTrue(writer.append(written.get(i)));
+            }
+        }
+        List<Path> segments = SegmentReader.findSegments(dir);
+        assertTrue(segments.size() > 1);
+
+        List<CachedMessage> read = new ArrayList<>();
+        new SegmentReader(segments).forEachRemaining(read::add);
+        assertEquals(written.size(), read.size());
+        for (int i = 0; i < written.size(); i++) {
+            assertSameMessage(written.get(i), read.get(i));
+        }
+
+        List<CachedMessage> chunked = new ArrayList<>();
+        for (Path segment : segments) {
+            for (SegmentReader chunk : SegmentReader.chunks(segment, 2)) {
+                chunk.forEachRemaining(chunked::add);
+            }
+        }
+        assertEquals(written.size(), chunked.size());
+        for (int i = 0; i < written.size(); i++) {
+            assertSameMessage(written.get(i), chunked.get(i));
+        }
+    }
+
+    @Test
+    void segmentWithoutHeaderIsReadWithoutEventTime(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve(Segment.fileName(0));
+        byte[] payload = "old".getBytes(StandardCharsets.UTF_8);
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            // format 1 record: no header and no event time
+            out.writeInt(Long.BYTES + Integer.BYTES + 1 + Integer.BYTES + Integer.BYTES + Integer.BYTES + payload.length);
+            out.writeLong(42);
+            out.writeInt(1);
+            out.writeByte(7);
+            out.writeInt(-1);
+            out.writeInt(0);
+            out.writeInt(payload.length);
+            out.write(payload);
+        }
+        CachedMessage expected = new CachedMessage(42, 0, new byte[]{7}, null, Map.of(), payload);
+        SegmentReader reader = new SegmentReader(List.of(file));
+        assertSameMessage(expected, reader.next());
+        assertFalse(reader.hasNext());
+        SegmentReader chunk = SegmentReader.chunks(file, 10).get(0);
+        assertSameMessage(expected, chunk.next());
+        assertFalse(chunk.hasNext());
+    }
+
+    @Test
+    void unknownFormatIsRejected(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve(Segment.fileName(0));
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(Segment.MAGIC);
+            out.writeInt(Segment.FORMAT + 1);
+        }
+        assertThrows(IOException.class, () -> SegmentReader.chunks(file, 10));
+    }
+}
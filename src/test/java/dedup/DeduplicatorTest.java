@@ -0,0 +1,69 @@
+package dedup;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.util.Utf8;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeduplicatorTest {
+    private static final Schema SCHEMA = new Schema.Parser().parse("{\"type\": \"record\", \"name\": \"Event\", \"fields\": ["
+            + "{\"name\": \"eventId\", \"type\": [\"null\", \"string\"], \"default\": null}]}");
+
+    private static GenericData.Record event(String id) {
+        GenericData.Record record = new GenericData.Record(SCHEMA);
+        record.put("eventId", id == null ? null : new Utf8(id));
+        return record;
+    }
+
+    private static Deduplicator deduplicator(Path file) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("dedup", "exact");
+        props.setProperty("dedupField", "eventId");
+        props.setProperty("dedupFile", file.toString());
+        return Deduplicator.fromConfig(props, SCHEMA);
+    }
+
+    @Test
+    void savesTheSetWhenEveryEventWasExported(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("ids.bin");
+        Deduplicator deduplicator = deduplicator(file);
+        for (String id : new String[]{"3f2504e0-4f89-11d3-9a0c-0305e82c3301", "a", "a", null}) {
+            if (deduplicator.firstSeen(event(id))) {
+                deduplicator.exported();
+            }
+        }
+        deduplicator.save();
+
+        Deduplicator next = deduplicator(file);
+        assertEquals(2, next.size());
+        assertFalse(next.firstSeen(event("a")));
+        assertTrue(next.firstSeen(event("b")));
+    }
+
+    @Test
+    void keepsThePreviousFileWhenAnEventWasNotExported(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("ids.bin");
+        Deduplicator first = deduplicator(file);
+        assertTrue(first.firstSeen(event("a")));
+        first.exported();
+        first.save();
+        byte[] saved = Files.readAllBytes(file);
+
+        Deduplicator cut = deduplicator(file);
+        assertTrue(cut.firstSeen(event("b")));
+        cut.exported();
+        // let through but never written, e.g. dropped when the output was closed
+        assertTrue(cut.firstSeen(event("c")));
+        cut.save();
+        assertArrayEquals(saved, Files.readAllBytes(file));
+        assertTrue(deduplicator(file).firstSeen(event("c")));
+    }
+}
@@ -0,0 +1,95 @@
+package dedup;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static dedup.UuidHashSetTest.input;
+import static dedup.UuidHashSetTest.write;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScalableBloomFilterTest {
+
+    @Test
+    void neverMissesAnAddedIdAcrossStages() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.001);
+        long initialBytes = filter.memoryBytes();
+        long accepted = 0;
+        for (int i = 1; i <= 100_000; i++) {
+            if (filter.add(i, i * 31L)) {
+                accepted++;
+            }
+        }
+        assertTrue(filter.memoryBytes() > initialBytes * 50, "stages added: " + filter.memoryBytes());
+        assertEquals(accepted, filter.size());
+        for (int i = 1; i <= 100_000; i++) {
+            assertFalse(filter.add(i, i * 31L), "id " + i);
+        }
+        assertEquals(accepted, filter.size());
+        assertTrue(filter.isApproximate());
+    }
+
+    @Test
+    void falsePositiveRateStaysBelowTheConfiguredOne() {
+        double rate = 0.01;
+        ScalableBloomFilter filter = new ScalableBloomFilter(1000, rate);
+        Random random = new Random(5);
+        for (int i = 0; i < 100_000; i++) {
+            filter.add(random.nextLong(), random.nextLong());
+        }
+        int falseDuplicates = 0;
+        int probes = 100_000;
+        for (int i = 0; i < probes; i++) {
+            if (!filter.add(random.nextLong(), random.nextLong())) {
+                falseDuplicates++;
+            }
+        }
+        // with every stage full the rates add up to just under the configured one; allow for sampling noise
+        assertTrue(falseDuplicates < probes * rate * 1.2, "false duplicates: " + falseDuplicates);
+    }
+
+    @Test
+    void allZeroIdIsAnOrdinaryMember() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(100, 0.001);
+        assertTrue(filter.add(0, 0));
+        assertFalse(filter.add(0, 0));
+        assertTrue(filter.add(0, 1));
+        assertTrue(filter.add(1, 0));
+        assertEquals(3, filter.size());
+    }
+
+    @Test
+    void writeAndReadRoundTrip() throws IOException {
+        ScalableBloomFilter filter = new ScalableBloomFilter(500, 0.001);
+        filter.add(0, 0);
+        for (int i = 1; i <= 20_000; i++) {
+            filter.add(i, -i);
+        }
+
+        byte[] written = write(filter);
+        EventIdSet read = EventIdSet.read(input(written), 10);
+        assertInstanceOf(ScalableBloomFilter.class, read);
+        assertEquals(filter.size(), read.size());
+        assertEquals(filter.memoryBytes(), read.memoryBytes());
+        assertArrayEquals(written, write(read));
+        assertFalse(read.add(0, 0));
+        for (int i = 1; i <= 20_000; i++) {
+            assertFalse(read.add(i, -i), "id " + i);
+        }
+    }
+
+    @Test
+    void readRejectsFilterWithoutStages() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(EventIdSet.MAGIC);
+            out.writeByte(ScalableBloomFilter.TYPE);
+            out.writeDouble(0.001);
+            out.writeInt(0);
+        }
+        assertThrows(IOException.class, () -> EventIdSet.read(input(bytes.toByteArray()), 10));
+    }
+}
@@ -0,0 +1,140 @@
+package dedup;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UuidHashSetTest {
+
+    @Test
+    void addReportsDuplicates() {
+        UuidHashSet set = new UuidHashSet(100);
+        assertTrue(set.add(1, 2));
+        assertFalse(set.add(1, 2));
+        assertTrue(set.add(2, 1));
+        assertTrue(set.add(1, 3));
+        assertEquals(3, set.size());
+        assertFalse(set.isApproximate());
+    }
+
+    @Test
+    void keepsEveryIdAcrossResizes() {
+        UuidHashSet set = new UuidHashSet(0);
+        long initialBytes = set.memoryBytes();
+        int count = 200_000;
+        // sequence numbers and ids differing only in the high half, the worst case for the table
+        for (int i = 1; i <= count; i++) {
+            assertTrue(set.add(0, i), "low " + i);
+            assertTrue(set.add(i, 0), "high " + i);
+        }
+        assertTrue(set.memoryBytes() > initialBytes);
+        assertEquals(2L * count, set.size());
+        for (int i = 1; i <= count; i++) {
+            assertFalse(set.add(0, i), "low " + i);
+            assertFalse(set.add(i, 0), "high " + i);
+        }
+        assertEquals(2L * count, set.size());
+    }
+
+    @Test
+    void allZeroIdIsAnOrdinaryMember() {
+        UuidHashSet set = new UuidHashSet(10);
+        assertTrue(set.add(0, 0));
+        assertFalse(set.add(0, 0));
+        assertTrue(set.add(0, 1));
+        assertTrue(set.add(1, 0));
+        assertEquals(3, set.size());
+    }
+
+    @Test
+    void writeAndReadRoundTrip() throws IOException {
+        UuidHashSet set = new UuidHashSet(1000);
+        Random random = new Random(3);
+        List<long[]> ids = new ArrayList<>();
+        ids.add(new long[]{0, 0});
+        set.add(0, 0);
+        for (int i = 0; i < 50_000; i++) {
+            long[] id = {random.nextLong(), random.nextLong()};
+            ids.add(id);
+            set.add(id[0], id[1]);
+        }
+
+        EventIdSet read = EventIdSet.read(input(write(set)), 10);
+        assertInstanceOf(UuidHashSet.class, read);
+        assertEquals(set.size(), read.size());
+        for (long[] id : ids) {
+            assertFalse(read.add(id[0], id[1]));
+        }
+        assertTrue(read.add(random.nextLong(), random.nextLong()));
+    }
+
+    @Test
+    void readSizesForExpectedIds() throws IOException {
+        UuidHashSet small = new UuidHashSet(0);
+        small.add(1, 1);
+        EventIdSet read = EventIdSet.read(input(write(small)), 1_000_000);
+        assertTrue(read.memoryBytes() >= new UuidHashSet(1_000_000).memoryBytes());
+        assertFalse(read.add(1, 1));
+    }
+
+    @Test
+    void readRejectsForeignData() {
+        assertThrows(IOException.class, () -> EventIdSet.read(input(new byte[]{1, 2, 3, 4, 1}), 10));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(EventIdSet.MAGIC);
+            out.writeByte(9);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        assertThrows(IOException.class, () -> EventIdSet.read(input(bytes.toByteArray()), 10));
+    }
+
+    @Test
+    void concurrentAddsAcceptEachIdOnce() throws Exception {
+        UuidHashSet set = new UuidHashSet(0);
+        int threads = 4;
+        int ids = 50_000;
+        AtomicLong accepted = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    // every thread adds the same ids
+                    for (int i = 0; i < ids; i++) {
+                        if (set.add(i, ~i)) {
+                            accepted.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(ids, accepted.get());
+        assertEquals(ids, set.size());
+    }
+
+    static byte[] write(EventIdSet set) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            set.write(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    static DataInputStream input(byte[] bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+}
@@ -0,0 +1,105 @@
+package filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AhoCorasickTest {
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void reportsOverlappingPatterns() {
+        AhoCorasick automaton = new AhoCorasick(List.of("he", "she", "his", "hers"));
+        Set<Integer> found = new TreeSet<>();
+        automaton.forEachMatch(utf8("ushers"), found::add);
+        assertEquals(Set.of(0, 1, 3), found);
+        assertEquals(4, automaton.getPatternCount());
+    }
+
+    @Test
+    void patternInsideAnotherIsFoundThroughFailureLinks() {
+        AhoCorasick automaton = new AhoCorasick(List.of("abcd", "bc"));
+        assertTrue(automaton.containsAny(utf8("xabcx")));
+        assertTrue(automaton.containsAny(utf8("abd bc")));
+        assertFalse(automaton.containsAny(utf8("abdcb")));
+    }
+
+    @Test
+    void matchesAtBothEnds() {
+        AhoCorasick automaton = new AhoCorasick(List.of("start", "end"));
+        assertTrue(automaton.containsAny(utf8("start of text")));
+        assertTrue(automaton.containsAny(utf8("text at the end")));
+        assertTrue(automaton.containsAny(utf8("end")));
+        assertFalse(automaton.containsAny(utf8("en")));
+        assertFalse(automaton.containsAny(new byte[0]));
+    }
+
+    @Test
+    void respectsOffsetAndLength() {
+        AhoCorasick automaton = new AhoCorasick(List.of("needle"));
+        byte[] data = utf8("needle in a haystack");
+        assertTrue(automaton.containsAny(data, 0, 6));
+        assertFalse(automaton.containsAny(data, 0, 5));
+        assertFalse(automaton.containsAny(data, 1, data.length - 1));
+    }
+
+    @Test
+    void matchesUtf8AndHighBytes() {
+        AhoCorasick automaton = new AhoCorasick(List.of("čaj", "ß"));
+        assertTrue(automaton.containsAny(utf8("zelený čaj")));
+        assertTrue(automaton.containsAny(utf8("Straße")));
+        assertFalse(automaton.containsAny(utf8("caj")));
+        assertTrue(automaton.containsAny(new byte[]{(byte) 0xFF, (byte) 0xC3, (byte) 0x9F}));
+    }
+
+    @Test
+    void duplicatePatternsAreReportedByIndex() {
+        AhoCorasick automaton = new AhoCorasick(List.of("ab", "ab"));
+        Set<Integer> found = new TreeSet<>();
+        automaton.forEachMatch(utf8("xab"), found::add);
+        assertEquals(Set.of(0, 1), found);
+    }
+
+    @Test
+    void rejectsEmptyPattern() {
+        assertThrows(IllegalArgumentException.class, () -> new AhoCorasick(List.of("a", "")));
+    }
+
+    @Test
+    void agreesWithNaiveSearch() {
+        Random random = new Random(7);
+        for (int round = 0; round < 500; round++) {
+            List<String> patterns = new ArrayList<>();
+            for (int p = 1 + random.nextInt(6); p > 0; p--) {
+                patterns.add(randomText(random, 1 + random.nextInt(4)));
+            }
+            AhoCorasick automaton = new AhoCorasick(patterns);
+            String text = randomText(random, random.nextInt(40));
+            Set<Integer> expected = new TreeSet<>();
+            for (int p = 0; p < patterns.size(); p++) {
+                if (text.contains(patterns.get(p))) {
+                    expected.add(p);
+                }
+            }
+            Set<Integer> found = new TreeSet<>();
+            automaton.forEachMatch(utf8(text), found::add);
+            assertEquals(expected, found, patterns + " in " + text);
+            assertEquals(!expected.isEmpty(), automaton.containsAny(utf8(text)), patterns + " in " + text);
+        }
+    }
+
+    // small alphabet, so patterns share prefixes and suffixes
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append("abcá".charAt(random.nextInt(4)));
+        }
+        return text.toString();
+    }
+}
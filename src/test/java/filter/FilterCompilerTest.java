@@ -0,0 +1,218 @@
+package filter;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.util.Utf8;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilterCompilerTest {
+    private static final Schema SCHEMA = new Schema.Parser().parse("{\"type\": \"record\", \"name\": \"Event\", \"fields\": ["
+            + "{\"name\": \"name\", \"type\": \"string\"},"
+            + "{\"name\": \"kind\", \"type\": {\"type\": \"enum\", \"name\": \"Kind\", \"symbols\": [\"CREATED\", \"DELETED\"]}},"
+            + "{\"name\": \"count\", \"type\": \"long\"},"
+            + "{\"name\": \"score\", \"type\": \"double\"},"
+            + "{\"name\": \"active\", \"type\": \"boolean\"},"
+            + "{\"name\": \"createdAt\", \"type\": {\"type\": \"long\", \"logicalType\": \"timestamp-millis\"}},"
+            + "{\"name\": \"owner\", \"type\": [\"null\", \"string\"], \"default\": null},"
+            + "{\"name\": \"tags\", \"type\": {\"type\": \"array\", \"items\": \"string\"}},"
+            + "{\"name\": \"party\", \"type\": {\"type\": \"record\", \"name\": \"Party\", \"fields\": ["
+            + "{\"name\": \"id\", \"type\": \"string\"}]}}]}");
+
+    private static GenericData.Record event(String name, String kind, long count, String owner, String... tags) {
+        GenericData.Record party = new GenericData.Record(SCHEMA.getField("party").schema());
+        party.put("id", new Utf8("p-" + name));
+        GenericData.Record record = new GenericData.Record(SCHEMA);
+        record.put("name", new Utf8(name));
+        record.put("kind", new GenericData.EnumSymbol(SCHEMA.getField("kind").schema(), kind));
+        record.put("count", count);
+        record.put("score", count / 2.0);
+        record.put("active", count % 2 == 0);
+        record.put("createdAt", Instant.parse("2025-08-01T00:00:00Z").toEpochMilli() + count);
+        record.put("owner", owner == null ? null : new Utf8(owner));
+        record.put("tags", List.of((Object[]) tags));
+        record.put("party", party);
+        return record;
+    }
+
+    private static boolean matches(String expression, GenericData.Record record) {
+        return FilterCompiler.compile(expression, SCHEMA).getExpression().matches(record);
+    }
+
+    @Test
+    void comparesStringsEnumsAndNumbers() {
+        GenericData.Record record = event("alpha", "CREATED", 10, "bob", "a");
+        assertTrue(matches("name == \"alpha\"", record));
+        assertTrue(matches("name == 'alpha'", record));
+        assertFalse(matches("name == \"alph\"", record));
+        assertTrue(matches("kind == \"CREATED\"", record));
+        assertTrue(matches("count == 10 && count >= 10 && count <= 10 && count > 9 && count < 11", record));
+        assertFalse(matches("count > 10", record));
+        assertTrue(matches("score == 5.0 && score < 5.5", record));
+        assertTrue(matches("count == 10.0 && count < 1e2", record));
+        assertTrue(matches("active == true", record));
+        assertTrue(matches("party.id == \"p-alpha\"", record));
+    }
+
+    @Test
+    void inAndNotIn() {
+        GenericData.Record record = event("alpha", "DELETED", 3, null);
+        assertTrue(matches("kind in (\"CREATED\", \"DELETED\")", record));
+        assertFalse(matches("kind not in (\"CREATED\", \"DELETED\")", record));
+        assertTrue(matches("count in (1, 2, 3)", record));
+        assertTrue(matches("name not in ('beta')", record));
+    }
+
+    @Test
+    void nullLiteralMatchesMissingValue() {
+        assertTrue(matches("owner == null", event("alpha", "CREATED", 1, null)));
+        assertFalse(matches("owner == null", event("alpha", "CREATED", 1, "bob")));
+        assertTrue(matches("owner != null", event("alpha", "CREATED", 1, "bob")));
+    }
+
+    @Test
+    void orderingNeverMatchesNull() {
+        GenericData.Record record = event("alpha", "CREATED", 1, null);
+        assertFalse(matches("owner > \"a\"", record));
+        assertFalse(matches("owner < \"z\"", record));
+    }
+
+    @Test
+    void arrayMatchesAnyElement() {
+        GenericData.Record record = event("alpha", "CREATED", 1, null, "red", "green");
+        assertTrue(matches("tags == \"green\"", record));
+        assertFalse(matches("tags == \"blue\"", record));
+        assertFalse(matches("tags == \"red\"", event("alpha", "CREATED", 1, null)));
+    }
+
+    @Test
+    void andBindsTighterThanOr() {
+        GenericData.Record record = event("alpha", "CREATED", 1, null);
+        assertTrue(matches("name == \"alpha\" || name == \"beta\" && count == 2", record));
+        assertFalse(matches("(name == \"alpha\" || name == \"beta\") && count == 2", record));
+        assertFalse(matches("!(name == \"alpha\") || count == 2", record));
+        assertTrue(matches("!!(name == \"alpha\")", record));
+    }
+
+    @Test
+    void keywordsAreCaseInsensitive() {
+        GenericData.Record record = event("alpha", "CREATED", 1, null);
+        assertTrue(matches("name == \"alpha\" AND NOT count == 2 Or count == 3", record));
+        assertTrue(matches("name == \"alpha\" and not (count == 2 or count == 3)", record));
+        assertTrue(matches("kind NOT IN (\"DELETED\")", record));
+    }
+
+    @Test
+    void escapedQuoteInString() {
+        assertTrue(matches("name == \"say \\\"hi\\\"\"", event("say \"hi\"", "CREATED", 1, null)));
+        assertTrue(matches("name == 'it\\'s'", event("it's", "CREATED", 1, null)));
+    }
+
+    @Test
+    void timestampAcceptsDateStrings() {
+        GenericData.Record record = event("alpha", "CREATED", 1000, null);
+        assertTrue(matches("createdAt >= \"2025-08-01T00:00:00Z\"", record));
+        assertTrue(matches("createdAt > \"2025-08-01\"", record));
+        assertTrue(matches("createdAt < \"2025-08-01T00:00:01.001\"", record));
+        assertFalse(matches("createdAt >= \"2025-08-01T02:00:00+02:00\" && createdAt < \"2025-08-01T00:00:00.999Z\"", record));
+        assertEquals(Instant.parse("2025-08-01T00:00:00Z").toEpochMilli(),
+                FilterCompiler.parseTemporal("2025-08-01", "timestamp-millis"));
+        assertEquals(Instant.parse("2025-08-01T00:00:00Z").getEpochSecond() / 86400,
+                FilterCompiler.parseTemporal("2025-08-01", "date"));
+    }
+
+    @Test
+    void rejectsMalformedExpressions() {
+        for (String expression : List.of(
+                "",
+                "name",
+                "name ==",
+                "name == \"alpha",
+                "name == \"alpha\" count == 1",
+                "name = \"alpha\"",
+                "(name == \"alpha\"",
+                "name == \"alpha\")",
+                "name not == \"alpha\"",
+                "kind in ()",
+                "kind in (\"CREATED\"",
+                "name == \"alpha\" &&",
+                "missing == 1",
+                "party.missing == \"x\"",
+                "count == \"ten\"",
+                "count == ten",
+                "count == 1.5",
+                "count in (1, 2.5)",
+                "name == alpha",
+                "active == 1",
+                "createdAt > \"yesterday\"",
+                "owner > null",
+                "name == \"a\" # 1",
+                "== \"alpha\"")) {
+            assertThrows(IllegalArgumentException.class, () -> FilterCompiler.compile(expression, SCHEMA), expression);
+        }
+    }
+
+    @Test
+    void collectsFieldPaths() {
+        assertEquals(Set.of("name", "party.id", "count"),
+                FilterCompiler.compile("name == \"a\" || party.id == \"b\" && !(count > 1)", SCHEMA).getFieldPaths());
+    }
+
+    @Test
+    void requiredLiteralsOfStringEquality() {
+        assertEquals(Set.of("alpha"), literals("name == \"alpha\""));
+        assertEquals(Set.of("alpha", "beta"), literals("name in (\"alpha\", \"beta\")"));
+        assertEquals(Set.of("alpha", "beta"), literals("name == \"alpha\" || party.id == \"beta\""));
+        // a conjunction needs only one side, the one with fewer literals
+        assertEquals(Set.of("gamma"), literals("name in (\"alpha\", \"beta\") && party.id == \"gamma\""));
+        assertEquals(Set.of("alpha"), literals("name == \"alpha\" && count > 1"));
+        assertEquals(Set.of("red"), literals("tags == \"red\""));
+    }
+
+    @Test
+    void noRequiredLiteralsWhenAMatchNeedsNone() {
+        assertEquals(Set.of(), literals("name == \"alpha\" || count == 1"));
+        assertEquals(Set.of(), literals("name != \"alpha\""));
+        assertEquals(Set.of(), literals("!(name == \"alpha\")"));
+        assertEquals(Set.of(), literals("name not in (\"alpha\")"));
+        assertEquals(Set.of(), literals("name > \"alpha\""));
+        assertEquals(Set.of(), literals("name == \"\""));
+        // enums are stored as indexes and null has no bytes
+        assertEquals(Set.of(), literals("kind == \"CREATED\""));
+        assertEquals(Set.of(), literals("owner == null"));
+    }
+
+    @Test
+    void boundsOfIntegerFields() {
+        assertArrayEquals(new long[]{5, 9}, bounds("count >= 5 && count < 10", "count"));
+        assertArrayEquals(new long[]{6, Long.MAX_VALUE}, bounds("count > 5", "count"));
+        assertArrayEquals(new long[]{Long.MIN_VALUE, 5}, bounds("count <= 5", "count"));
+        assertArrayEquals(new long[]{2, 7}, bounds("count in (7, 2, 4)", "count"));
+        assertArrayEquals(new long[]{1, 20}, bounds("count == 1 || count >= 10 && count <= 20", "count"));
+        long from = Instant.parse("2025-08-01T00:00:00Z").toEpochMilli();
+        assertArrayEquals(new long[]{from, Long.MAX_VALUE}, bounds("createdAt >= \"2025-08-01\"", "createdAt"));
+    }
+
+    @Test
+    void noBoundsWhenAMatchIsUnbounded() {
+        assertNull(bounds("count == 1 || name == \"alpha\"", "count"));
+        assertNull(bounds("!(count > 5)", "count"));
+        assertNull(bounds("count != 5", "count"));
+        assertNull(bounds("count not in (1, 2)", "count"));
+        assertNull(bounds("score > 1.5", "score"));
+        assertNull(bounds("count > " + Long.MAX_VALUE, "count"));
+    }
+
+    private static Set<String> literals(String expression) {
+        return FilterCompiler.compile(expression, SCHEMA).getRequiredLiterals();
+    }
+
+    private static long[] bounds(String expression, String field) {
+        return FilterCompiler.compile(expression, SCHEMA).getBounds(field);
+    }
+}
@@ -0,0 +1,211 @@
+package filter;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import pulsar.MessageProcessor;
+import utils.AvroJsonSerializer;
+import utils.AvroParser;
+import utils.SchemaLoader;
+import utils.SyntheticData;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PayloadPrefilterTest {
+    private static final int RECORDS = 2000;
+
+    private static Schema schema;
+    private static List<byte[]> payloads;
+    private static List<GenericData.Record> records;
+    private static List<String> renderings;
+
+    @BeforeAll
+    static void generate() throws Exception {
+        String pojoSchema = SchemaLoader.loadSchema("TASK");
+        schema = new Schema.Parser().parse(pojoSchema);
+        payloads = SyntheticData.payloads(schema, RECORDS, 42);
+        AvroParser.RecordDecoder decoder = AvroParser.decoder(pojoSchema);
+        MessageProcessor renderer = new MessageProcessor(null, decoder, null, List.of(), new AvroJsonSerializer(false));
+        records = new ArrayList<>(RECORDS);
+        renderings = new ArrayList<>(RECORDS);
+        for (byte[] payload : payloads) {
+            // the decoder reuses its record
+            records.add(GenericData.get().deepCopy(schema, decoder.decode(payload)));
+            renderings.add(renderer.process(payload));
+        }
+    }
+
+    @Test
+    void rejectsUnusableLiteralSets() {
+        assertNull(PayloadPrefilter.forLiterals(null));
+        assertNull(PayloadPrefilter.forLiterals(Set.of()));
+        assertNull(PayloadPrefilter.forLiterals(Set.of("a", "")));
+    }
+
+    @Test
+    void needsAnyOfTheLiterals() {
+        PayloadPrefilter prefilter = PayloadPrefilter.forLiterals(new LinkedHashSet<>(List.of("foo", "bar")));
+        assertEquals(Set.of("foo", "bar"), prefilter.getLiterals());
+        assertTrue(prefilter.mightMatch("xxbarxx".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(prefilter.mightMatch("fo ba".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void regexLiteralsTheRenderingCanProduceAreRejected() {
+        for (String regex : List.of(
+                // enum symbols, field names and parts of them
+                "TASK_DELETED", "DELETED", "eventOwner", "Owner",
+                // numbers, dates and JSON keywords
+                "2025-08", "1.5E10", "null", "ru",
+                // JSON syntax and characters rendered escaped
+                "\"status\"", "a:b", "x, y", " spi", "čaj", "a\\\\b")) {
+            assertNull(PayloadPrefilter.forRegex(regex, schema), regex);
+        }
+        assertEquals(Set.of("kknjl"), PayloadPrefilter.forRegex("kknjl", schema).getLiterals());
+    }
+
+    @Test
+    void base64LiteralsAreRejectedOnlyWithBinaryFields() {
+        Schema binary = new Schema.Parser().parse("{\"type\": \"record\", \"name\": \"Blob\", \"fields\": ["
+                + "{\"name\": \"data\", \"type\": \"bytes\"}]}");
+        Schema decimal = new Schema.Parser().parse("{\"type\": \"record\", \"name\": \"Amount\", \"fields\": ["
+                + "{\"name\": \"value\", \"type\": {\"type\": \"bytes\", \"logicalType\": \"decimal\", \"precision\": 10, \"scale\": 2}}]}");
+        assertNull(PayloadPrefilter.forRegex("Zm9v", binary));
+        assertNotNull(PayloadPrefilter.forRegex("Zm9v_", binary));
+        assertNotNull(PayloadPrefilter.forRegex("Zm9v", decimal));
+    }
+
+    /**
+     * Every record whose rendering the regex finds must pass the prefilter derived from the regex.
+     */
+    @Test
+    void regexPrefilterNeverDropsAMatch() {
+        Random random = new Random(11);
+        List<String> regexes = new ArrayList<>(List.of("TASK_DELETED", "spi", "a|b", "\"eventOwner\": \"r", "TASK_.*ED",
+                "\\bspi\\b", "(?i)SPI", "IN_PROGRESS|spi"));
+        for (int i = 0; i < 200; i++) {
+            String first = sample(random);
+            String second = sample(random);
+            switch (i % 5) {
+                case 0:
+                    regexes.add(first);
+                    break;
+                case 1:
+                    regexes.add(first + "|" + second);
+                    break;
+                case 2:
+                    regexes.add(first + ".*" + second);
+                    break;
+                case 3:
+                    regexes.add(first + "[a-z]?" + second);
+                    break;
+                default:
+                    regexes.add("(" + first + ")?" + second + "+");
+            }
+        }
+        int prefiltered = 0;
+        int matched = 0;
+        for (String regex : regexes) {
+            PayloadPrefilter prefilter = PayloadPrefilter.forRegex(regex, schema);
+            if (prefilter == null) {
+                continue;
+            }
+            prefiltered++;
+            Pattern pattern = Pattern.compile(regex);
+            for (int i = 0; i < RECORDS; i++) {
+                if (pattern.matcher(renderings.get(i)).find()) {
+                    matched++;
+                    assertTrue(prefilter.mightMatch(payloads.get(i)), regex + " in " + renderings.get(i));
+                }
+            }
+        }
+        assertTrue(prefiltered > 100, "prefiltered regexes: " + prefiltered);
+        assertTrue(matched > 1000, "matched records: " + matched);
+    }
+
+    /**
+     * Every record the filter accepts must pass the prefilter built from its required literals.
+     */
+    @Test
+    void filterPrefilterNeverDropsAMatch() {
+        Random random = new Random(13);
+        List<String> paths = List.of("metadata.eventId", "metadata.eventOwner", "metadata.sourceUnit", "payload.taskId",
+                "payload.partyRole.party.firstName", "payload.partyRole.party.internationalIdentifications.value",
+                "payload.externalIds.externalId");
+        List<String> filters = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String path = paths.get(random.nextInt(paths.size()));
+            String other = paths.get(random.nextInt(paths.size()));
+            String value = quoted(value(random, path));
+            String otherValue = quoted(value(random, other));
+            switch (i % 5) {
+                case 0:
+                    filters.add(path + " == " + value);
+                    break;
+                case 1:
+                    filters.add(path + " == " + value + " || " + other + " == " + otherValue);
+                    break;
+                case 2:
+                    filters.add(path + " in (" + value + ", " + otherValue + ")");
+                    break;
+                case 3:
+                    filters.add("metadata.eventName != \"TASK_CREATED\" && " + path + " == " + value);
+                    break;
+                default:
+                    filters.add("(" + path + " == " + value + " || " + other + " == " + otherValue + ") && !(" + other + " == null)");
+            }
+        }
+        int prefiltered = 0;
+        int matched = 0;
+        for (String filter : filters) {
+            FilterCompiler.CompiledFilter compiled = FilterCompiler.compile(filter, schema);
+            PayloadPrefilter prefilter = PayloadPrefilter.forLiterals(compiled.getRequiredLiterals());
+            if (prefilter == null) {
+                continue;
+            }
+            prefiltered++;
+            for (int i = 0; i < RECORDS; i++) {
+                if (compiled.getExpression().matches(records.get(i))) {
+                    matched++;
+                    assertTrue(prefilter.mightMatch(payloads.get(i)), filter);
+                }
+            }
+        }
+        assertTrue(prefiltered > 100, "prefiltered filters: " + prefiltered);
+        assertTrue(matched > 100, "matched records: " + matched);
+    }
+
+    // a short piece of some rendered string value, so the regexes do match
+    private static String sample(Random random) {
+        String rendering = renderings.get(random.nextInt(RECORDS));
+        int start = rendering.indexOf(": \"", random.nextInt(rendering.length()));
+        if (start < 0 || rendering.charAt(start + 3) == '"') {
+            return sample(random);
+        }
+        int end = rendering.indexOf('"', start + 3);
+        String value = rendering.substring(start + 3, end);
+        int from = random.nextInt(value.length());
+        return value.substring(from, Math.min(value.length(), from + 3 + random.nextInt(3)));
+    }
+
+    // a value the field has in some record, or an absent one
+    private static String value(Random random, String path) {
+        FieldAccessor accessor = FieldAccessor.compile(path, schema);
+        for (int attempt = 0; attempt < 20; attempt++) {
+            Object value = accessor.first(records.get(random.nextInt(RECORDS)));
+            if (value != null && value.toString().length() > 0) {
+                return value.toString();
+            }
+        }
+        return "absent";
+    }
+
+    private static String quoted(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
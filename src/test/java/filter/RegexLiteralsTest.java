@@ -0,0 +1,99 @@
+package filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegexLiteralsTest {
+
+    @Test
+    void plainLiteral() {
+        assertEquals(Set.of("TASK_DELETED"), RegexLiterals.requiredLiterals("TASK_DELETED"));
+    }
+
+    @Test
+    void oneLiteralPerAlternative() {
+        assertEquals(List.of("foo", "bar", "baz"), List.copyOf(RegexLiterals.requiredLiterals("foo|bar|baz")));
+    }
+
+    @Test
+    void longestMandatoryRunWins() {
+        assertEquals(Set.of("customer"), RegexLiterals.requiredLiterals(".*id.*customer.*"));
+        assertEquals(Set.of("abc"), RegexLiterals.requiredLiterals("\\d+abc"));
+        assertEquals(Set.of("def"), RegexLiterals.requiredLiterals("[abc]def"));
+        assertEquals(Set.of("bc"), RegexLiterals.requiredLiterals("a{0,3}bc"));
+        assertEquals(Set.of("foo"), RegexLiterals.requiredLiterals("foo(bar)?baz"));
+        assertEquals(Set.of("middle"), RegexLiterals.requiredLiterals("^x.middle.y$"));
+    }
+
+    @Test
+    void optionalCharacterEndsTheRun() {
+        assertEquals(Set.of("def"), RegexLiterals.requiredLiterals("abc?def"));
+        assertEquals(Set.of("fgh"), RegexLiterals.requiredLiterals("ab*fgh"));
+        assertEquals(Set.of("hij"), RegexLiterals.requiredLiterals("abc??hij"));
+    }
+
+    @Test
+    void repeatedCharacterIsKeptOnce() {
+        assertEquals(Set.of("ab"), RegexLiterals.requiredLiterals("ab+c"));
+        assertEquals(Set.of("xyz"), RegexLiterals.requiredLiterals("xyz{2}a"));
+        assertEquals(Set.of("abc"), RegexLiterals.requiredLiterals("abc++d"));
+    }
+
+    @Test
+    void escapedPunctuationIsLiteral() {
+        assertEquals(Set.of("a.b(c)"), RegexLiterals.requiredLiterals("a\\.b\\(c\\)"));
+        assertEquals(Set.of("x|y"), RegexLiterals.requiredLiterals("x\\|y"));
+    }
+
+    @Test
+    void escapedLetterEndsTheRun() {
+        assertEquals(Set.of("name"), RegexLiterals.requiredLiterals("\\bname\\b"));
+        assertEquals(Set.of("efg"), RegexLiterals.requiredLiterals("ab\\x41efg"));
+    }
+
+    @Test
+    void escapeArgumentsAreNotLiterals() {
+        assertEquals(Set.of("a"), RegexLiterals.requiredLiterals("\\x41a"));
+        assertEquals(Set.of("b"), RegexLiterals.requiredLiterals("\\x{1F600}b"));
+        assertEquals(Set.of("c"), RegexLiterals.requiredLiterals("\\u0041c"));
+        assertEquals(Set.of("d"), RegexLiterals.requiredLiterals("\\0101d"));
+        assertEquals(Set.of("e"), RegexLiterals.requiredLiterals("\\cAe"));
+        assertEquals(Set.of("f", "g"), RegexLiterals.requiredLiterals("\\p{Lu}f|\\PLg"));
+        assertEquals(Set.of("h"), RegexLiterals.requiredLiterals("\\N{LATIN SMALL LETTER A}h"));
+        assertNull(RegexLiterals.requiredLiterals("(a)\\1bc"));
+    }
+
+    @Test
+    void classesAndGroupsAreSkippedWhole() {
+        assertEquals(Set.of("tail"), RegexLiterals.requiredLiterals("[]|(]tail"));
+        assertEquals(Set.of("end"), RegexLiterals.requiredLiterals("(a(b|c)[)]\\))end"));
+        assertEquals(Set.of("after"), RegexLiterals.requiredLiterals("(x|y)+after"));
+    }
+
+    @Test
+    void givesUpWithoutSafeSet() {
+        for (String regex : List.of(
+                "",
+                ".*",
+                "a|.*",
+                "foo|",
+                "|foo",
+                "(foo|bar)",
+                "[abc]+",
+                "\\d{4}",
+                "(?i)foo",
+                "foo(?=bar)",
+                "\\Qfoo\\E",
+                "*foo",
+                "foo)",
+                "foo\\",
+                "(foo")) {
+            assertNull(RegexLiterals.requiredLiterals(regex), regex);
+        }
+        assertNull(RegexLiterals.requiredLiterals(null));
+    }
+}
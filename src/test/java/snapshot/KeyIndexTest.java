@@ -0,0 +1,109 @@
+package snapshot;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyIndexTest {
+
+    @Test
+    void keepsTheLatestVersionOfEachKey() {
+        KeyIndex index = new KeyIndex(100);
+        assertTrue(index.put(1, 1, 0, 10, false));
+        assertTrue(index.put(2, 2, 100, 10, false));
+        assertTrue(index.put(1, 1, 200, 5, false));
+        assertEquals(2, index.size());
+        assertEquals(2, index.live());
+        assertArrayEquals(new long[]{100, 200}, index.liveOffsets());
+    }
+
+    @Test
+    void tombstoneRemovesTheKeyUntilItComesBack() {
+        KeyIndex index = new KeyIndex(100);
+        index.put(1, 1, 0, 10, false);
+        index.put(2, 2, 100, 10, false);
+        index.put(1, 1, KeyIndex.DELETED, 11, false);
+        assertEquals(2, index.size());
+        assertEquals(1, index.live());
+        assertArrayEquals(new long[]{100}, index.liveOffsets());
+
+        // deleting twice or deleting an unknown key keeps the counts consistent
+        index.put(1, 1, KeyIndex.DELETED, 12, false);
+        index.put(3, 3, KeyIndex.DELETED, 12, false);
+        assertEquals(3, index.size());
+        assertEquals(1, index.live());
+
+        index.put(1, 1, 300, 13, false);
+        assertEquals(2, index.live());
+        assertArrayEquals(new long[]{100, 300}, index.liveOffsets());
+    }
+
+    @Test
+    void newerOnlyIgnoresOlderVersions() {
+        KeyIndex index = new KeyIndex(100);
+        assertTrue(index.put(1, 1, 0, 10, true));
+        assertFalse(index.put(1, 1, 100, 9, true));
+        assertArrayEquals(new long[]{0}, index.liveOffsets());
+        // on equal publish times the later read wins
+        assertTrue(index.put(1, 1, 200, 10, true));
+        assertTrue(index.put(1, 1, 300, 11, true));
+        assertArrayEquals(new long[]{300}, index.liveOffsets());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void allZeroHashIsStored() {
+        KeyIndex index = new KeyIndex(100);
+        assertTrue(index.put(0, 0, 0, 1, false));
+        assertEquals(1, index.size());
+        assertArrayEquals(new long[]{0}, index.liveOffsets());
+        index.put(0, 0, 100, 2, false);
+        assertEquals(1, index.size());
+        assertArrayEquals(new long[]{100}, index.liveOffsets());
+    }
+
+    @Test
+    void keepsEveryKeyAcrossResizes() {
+        KeyIndex index = new KeyIndex(0);
+        long initialBytes = index.memoryBytes();
+        int count = 100_000;
+        Random random = new Random(17);
+        long[][] keys = new long[2 * count][];
+        for (int i = 0; i < count; i++) {
+            // random hashes spread over all stripes, small ones all land in the first stripe
+            keys[i] = new long[]{random.nextLong(), random.nextLong()};
+            keys[count + i] = new long[]{i, i + 1};
+        }
+        for (int i = 0; i < keys.length; i++) {
+            assertTrue(index.put(keys[i][0], keys[i][1], i, 1, true));
+        }
+        assertTrue(index.memoryBytes() > initialBytes);
+        assertEquals(keys.length, index.size());
+
+        // a newer version of every key moves it to a new offset, none is added twice
+        for (int i = 0; i < keys.length; i++) {
+            assertTrue(index.put(keys[i][0], keys[i][1], keys.length + i, 2, true));
+        }
+        assertEquals(keys.length, index.size());
+        assertEquals(keys.length, index.live());
+        long[] offsets = index.liveOffsets();
+        assertEquals(keys.length, offsets.length);
+        assertEquals(keys.length, offsets[0]);
+        assertEquals(2L * keys.length - 1, offsets[offsets.length - 1]);
+        assertTrue(isSortedAndDistinct(offsets));
+    }
+
+    private static boolean isSortedAndDistinct(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] == sorted[i - 1]) {
+                return false;
+            }
+        }
+        return Arrays.equals(sorted, values);
+    }
+}